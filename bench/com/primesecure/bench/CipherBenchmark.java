@@ -0,0 +1,129 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.bench;
+
+import com.primesecure.model.Message;
+import com.primesecure.security.PrimeDecoder;
+import com.primesecure.security.PrimeEncoder;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks de encriptacion y desencriptacion de texto.
+ * <p>
+ * Mide el rendimiento de PrimeEncoder y PrimeDecoder segun el tamaño del
+ * texto y la mezcla de caracteres, tanto reutilizando una instancia como
+ * a traves de {@link Message#encrypt()}, que crea un codificador por llamada.
+ * Los resultados se reportan en caracteres por segundo.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CipherBenchmark {
+    
+    /** Numero de textos distintos que se alternan en cada iteracion */
+    private static final int TEXT_COUNT = 64;
+    
+    /** El tamaño de cada texto en caracteres */
+    @Param({"16", "256", "4096", "65536"})
+    public int payloadSize;
+    
+    /** La mezcla de caracteres del texto */
+    @Param({"LETTERS", "ALPHANUMERIC", "UNICODE"})
+    public String charMix;
+    
+    /** El codigo primo usado como clave */
+    @Param({"541"})
+    public int primeCode;
+    
+    private String[] plainTexts;
+    private String[] encodedTexts;
+    private PrimeEncoder encoder;
+    private PrimeDecoder decoder;
+    private int next;
+    
+    /**
+    * Genera los textos de prueba de forma determinista.
+    */
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        encoder = new PrimeEncoder();
+        decoder = new PrimeDecoder();
+        plainTexts = new String[TEXT_COUNT];
+        encodedTexts = new String[TEXT_COUNT];
+        
+        for (int i = 0; i < TEXT_COUNT; i++) {
+            plainTexts[i] = randomText(random);
+            encodedTexts[i] = encoder.encode(plainTexts[i], primeCode);
+        }
+    }
+    
+    private String randomText(SplittableRandom random) {
+        String alphabet;
+        switch (charMix) {
+            case "LETTERS":
+                alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ ";
+                break;
+            case "ALPHANUMERIC":
+                alphabet = "abcdefghijklmnopqrstuvwxyz0123456789 .,;:!?-_()";
+                break;
+            default:
+                alphabet = "abcdefghijklmnñopqrstuvwxyzáéíóúü ¿¡€0123456789";
+                break;
+        }
+        
+        char[] chars = new char[payloadSize];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+    
+    /**
+    * Encripta un texto reutilizando la instancia del codificador.
+    * 
+    * @return El texto encriptado
+    */
+    @Benchmark
+    public String encode() {
+        next = (next + 1) & (TEXT_COUNT - 1);
+        return encoder.encode(plainTexts[next], primeCode);
+    }
+    
+    /**
+    * Desencripta un texto reutilizando la instancia del decodificador.
+    * 
+    * @return El texto desencriptado
+    */
+    @Benchmark
+    public String decode() {
+        next = (next + 1) & (TEXT_COUNT - 1);
+        return decoder.decode(encodedTexts[next], primeCode);
+    }
+    
+    /**
+    * Encripta un mensaje con Message.encrypt(), que crea un codificador por llamada.
+    * 
+    * @return El contenido encriptado
+    */
+    @Benchmark
+    public String messageEncrypt() {
+        next = (next + 1) & (TEXT_COUNT - 1);
+        Message message = new Message(plainTexts[next], primeCode);
+        message.encrypt();
+        return message.getContent();
+    }
+}
\ No newline at end of file
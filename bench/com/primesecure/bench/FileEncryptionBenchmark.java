@@ -0,0 +1,110 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.bench;
+
+import com.primesecure.security.FileEncryptor;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks de encriptacion de archivos con FileEncryptor.
+ * <p>
+ * Ademas de los archivos por segundo, cada invocacion suma los bytes procesados en
+ * un contador auxiliar, de modo que JMH reporta directamente los bytes por
+ * segundo (dividir entre 2^20 para obtener MB/s).
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileEncryptionBenchmark {
+    
+    /** El tamaño del archivo en KB */
+    @Param({"64", "1024", "16384"})
+    public int fileSizeKb;
+    
+    /** El numero de hilos usados por FileEncryptor */
+    @Param({"1", "4"})
+    public int threads;
+    
+    private Path inputFile;
+    private Path outputFile;
+    
+    /**
+    * Contador auxiliar de bytes procesados, reportado por JMH como tasa.
+    */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        /** Bytes procesados durante la iteracion */
+        public long bytes;
+        
+        /**
+        * Reinicia el contador al comenzar cada iteracion.
+        */
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+    
+    /**
+    * Crea el archivo de entrada con texto ASCII determinista.
+    * 
+    * @throws IOException Si falla la escritura del archivo
+    */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        inputFile = Files.createTempFile("primesecure-bench", ".txt");
+        outputFile = Files.createTempFile("primesecure-bench", ".enc");
+        
+        String alphabet = "abcdefghijklmnopqrstuvwxyz ABCDEFGHIJKLMNOPQRSTUVWXYZ 0123456789 .,\n";
+        SplittableRandom random = new SplittableRandom(7);
+        byte[] content = new byte[fileSizeKb * 1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        Files.write(inputFile, content);
+    }
+    
+    /**
+    * Elimina los archivos temporales.
+    * 
+    * @throws IOException Si falla la eliminacion
+    */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(inputFile);
+        Files.deleteIfExists(outputFile);
+    }
+    
+    /**
+    * Encripta el archivo de entrada completo.
+    * 
+    * @param bytes El contador de bytes procesados
+    * @return El reporte de FileEncryptor
+    * @throws IOException Si fallan las operaciones de archivo
+    */
+    @Benchmark
+    public String encryptFile(Bytes bytes) throws IOException {
+        String report = FileEncryptor.processFile(
+            inputFile.toString(), outputFile.toString(), 541, true, threads);
+        bytes.bytes += (long) fileSizeKb * 1024;
+        return report;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,142 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.bench;
+
+import com.primesecure.model.Message;
+import com.primesecure.util.MessageExporter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks de exportacion e importacion de mensajes.
+ * <p>
+ * Cada operacion corresponde a un registro, por lo que JMH reporta
+ * directamente registros por segundo para los formatos binario y de texto.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageExportBenchmark {
+    
+    /** El numero de mensajes por archivo, usado tambien como operaciones por invocacion */
+    public static final int MESSAGE_COUNT = 100_000;
+    
+    /** El numero de hilos usados para importar el formato de texto */
+    @Param({"1", "4"})
+    public int threads;
+    
+    private List<Message> messages;
+    private Path binaryFile;
+    private Path textFile;
+    private Path scratchFile;
+    
+    /**
+    * Genera los mensajes y los archivos usados por los benchmarks de importacion.
+    * 
+    * @throws IOException Si falla la escritura de los archivos
+    */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] contents = {
+            "Hola, necesito ayuda con un problema",
+            "Por favor revisa el informe adjunto",
+            "La reunion se ha reprogramado para mañana",
+            "Felicitaciones por tu ascenso",
+            "Necesitamos discutir el nuevo proyecto"
+        };
+        int[] primes = {101, 211, 307, 401, 503, 601, 701, 809, 907, 997};
+        
+        messages = new ArrayList<>(MESSAGE_COUNT);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            Message message = new Message(contents[i % contents.length],
+                "Remitente" + (i % 1000), "Destinatario" + (i % 100), primes[i % primes.length]);
+            if (i % 2 == 0) {
+                message.encrypt();
+            }
+            messages.add(message);
+        }
+        
+        binaryFile = Files.createTempFile("primesecure-bench", ".dat");
+        textFile = Files.createTempFile("primesecure-bench", ".txt");
+        scratchFile = Files.createTempFile("primesecure-bench", ".out");
+        MessageExporter.exportMessages(messages, binaryFile.toString());
+        MessageExporter.exportMessagesToText(messages, textFile.toString(), true);
+    }
+    
+    /**
+    * Elimina los archivos temporales.
+    * 
+    * @throws IOException Si falla la eliminacion
+    */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(binaryFile);
+        Files.deleteIfExists(textFile);
+        Files.deleteIfExists(scratchFile);
+    }
+    
+    /**
+    * Exporta todos los mensajes en formato binario.
+    * 
+    * @return El numero de mensajes exportados
+    * @throws IOException Si falla la escritura
+    */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    public int exportBinary() throws IOException {
+        return MessageExporter.exportMessages(messages, scratchFile.toString());
+    }
+    
+    /**
+    * Importa todos los mensajes desde el formato binario.
+    * 
+    * @return Los mensajes importados
+    * @throws IOException Si falla la lectura
+    * @throws ClassNotFoundException Si falla la deserializacion
+    */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    public List<Message> importBinary() throws IOException, ClassNotFoundException {
+        return MessageExporter.importMessages(binaryFile.toString());
+    }
+    
+    /**
+    * Exporta todos los mensajes en formato de texto.
+    * 
+    * @return El numero de mensajes exportados
+    * @throws IOException Si falla la escritura
+    */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    public int exportText() throws IOException {
+        return MessageExporter.exportMessagesToText(messages, scratchFile.toString(), true);
+    }
+    
+    /**
+    * Importa todos los mensajes desde el formato de texto.
+    * 
+    * @return Los mensajes importados
+    * @throws IOException Si falla la lectura
+    */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    public List<Message> importText() throws IOException {
+        return MessageExporter.importMessagesFromText(textFile.toString(), threads);
+    }
+}
\ No newline at end of file
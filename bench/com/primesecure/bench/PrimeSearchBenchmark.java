@@ -0,0 +1,68 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.bench;
+
+import com.primesecure.model.PrimesList;
+import com.primesecure.util.BatchProcessor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks de la busqueda de numeros primos.
+ * <p>
+ * Mide la busqueda en rangos de distintos tamaños y con distinto numero de
+ * hilos, ademas del costo de {@link PrimesList#isPrime} sobre un bloque fijo
+ * de candidatos.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrimeSearchBenchmark {
+    
+    /** El tamaño del rango a buscar */
+    @Param({"10000", "100000", "1000000"})
+    public int rangeSize;
+    
+    /** El numero de hilos usados en la busqueda */
+    @Param({"1", "2", "4"})
+    public int threads;
+    
+    /** El inicio del rango, alejado de cero para que isPrime haga trabajo real */
+    @Param({"1000000"})
+    public int rangeStart;
+    
+    /**
+    * Busca los primos de un rango con BatchProcessor.
+    * 
+    * @return La lista de primos encontrados
+    */
+    @Benchmark
+    public PrimesList findPrimesInRange() {
+        return BatchProcessor.findPrimesInRange(rangeStart, rangeStart + rangeSize - 1, threads);
+    }
+    
+    /**
+    * Verifica cada numero del rango con isPrime en un solo hilo.
+    * 
+    * @param blackhole Consumidor de resultados para evitar eliminacion de codigo
+    */
+    @Benchmark
+    public void isPrimeScan(Blackhole blackhole) {
+        int end = rangeStart + rangeSize;
+        for (int n = rangeStart; n < end; n++) {
+            blackhole.consume(PrimesList.isPrime(n));
+        }
+    }
+}
\ No newline at end of file
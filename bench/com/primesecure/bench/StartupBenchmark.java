@@ -0,0 +1,103 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mide el tiempo de arranque de PrimeSecureApp con y sin el archivo AppCDS.
+ * <p>
+ * El tiempo de arranque no se puede medir dentro de una JVM ya iniciada, por lo
+ * que este programa lanza la aplicacion como un proceso nuevo varias veces para
+ * cada configuracion y reporta el tiempo total de cada ejecucion, desde el
+ * lanzamiento hasta la salida. Se compara el arranque sin CDS, con el archivo
+ * CDS por defecto del JDK y con el archivo AppCDS generado por el build.
+ * </p>
+ * <p>
+ * Uso: {@code StartupBenchmark <jar> <archivo.jsa> <ejecuciones> [comando...]}
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public class StartupBenchmark {
+    
+    /** Comando ejecutado si no se indica otro: una operacion corta tipica */
+    private static final String[] DEFAULT_COMMAND = {"primes", "--to", "1000", "--threads", "1"};
+    
+    /**
+    * Punto de entrada del benchmark.
+    * 
+    * @param args El jar, el archivo CDS, el numero de ejecuciones y opcionalmente el comando
+    * @throws Exception Si falla alguna ejecucion
+    */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Uso: StartupBenchmark <jar> <archivo.jsa> <ejecuciones> [comando...]");
+            System.exit(2);
+        }
+        String jar = args[0];
+        String archive = args[1];
+        int runs = Integer.parseInt(args[2]);
+        String[] command = args.length > 3 ? Arrays.copyOfRange(args, 3, args.length) : DEFAULT_COMMAND;
+        
+        String[][] configurations = {
+            {"Sin CDS", "-Xshare:off"},
+            {"CDS del JDK", "-Xshare:auto"},
+            {"AppCDS", "-XX:SharedArchiveFile=" + archive, "-Xshare:auto"}
+        };
+        
+        System.out.println("Comando: " + String.join(" ", command));
+        System.out.println("Ejecuciones por configuracion: " + runs);
+        for (String[] configuration : configurations) {
+            long[] timings = new long[runs];
+            // Una ejecucion previa para que el sistema operativo tenga el jar en cache
+            launch(jar, configuration, command);
+            for (int i = 0; i < runs; i++) {
+                timings[i] = launch(jar, configuration, command);
+            }
+            Arrays.sort(timings);
+            long total = 0;
+            for (long timing : timings) {
+                total += timing;
+            }
+            System.out.printf("%-12s minimo %7.1f ms  mediana %7.1f ms  media %7.1f ms%n",
+                configuration[0], timings[0] / 1e6, timings[runs / 2] / 1e6, total / (double) runs / 1e6);
+        }
+    }
+    
+    /**
+    * Lanza la aplicacion una vez y mide su duracion.
+    * 
+    * @return La duracion en nanosegundos
+    */
+    private static long launch(String jar, String[] configuration, String[] command)
+            throws IOException, InterruptedException {
+        List<String> processCommand = new ArrayList<>();
+        processCommand.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        processCommand.addAll(Arrays.asList(configuration).subList(1, configuration.length));
+        processCommand.add("-jar");
+        processCommand.add(jar);
+        processCommand.addAll(Arrays.asList(command));
+        
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(processCommand)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        int exitCode = process.waitFor();
+        long elapsed = System.nanoTime() - start;
+        if (exitCode != 0) {
+            throw new IllegalStateException("La aplicacion termino con codigo " + exitCode);
+        }
+        return elapsed;
+    }
+}
\ No newline at end of file
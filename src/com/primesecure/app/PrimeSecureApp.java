@@ -3,10 +3,11 @@
  * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Main.java to edit this template
  */
 
-package com.primesecure;
+package com.primesecure.app;
 
+import com.primesecure.metrics.MetricsRegistry;
 import com.primesecure.model.Message;
-import com.primesecure.model.PrimesList;
+import com.primesecure.model.LongPrimesList;
 import com.primesecure.security.FileEncryptor;
 import com.primesecure.util.BatchProcessor;
 import com.primesecure.util.MessageExporter;
@@ -28,18 +29,40 @@ import java.util.Scanner;
  */
 public class PrimeSecureApp {
 
-    /** Scanner para entrada de usuario */
-    private static final Scanner scanner = new Scanner(System.in);
+    /**
+    * Scanner para entrada de usuario.
+    * <p>
+    * Se crea al iniciar el menu interactivo para que los subcomandos no paguen
+    * la carga de Scanner y de las expresiones regulares que utiliza.
+    * </p>
+    */
+    private static Scanner scanner;
     
     /**
     * Punto de entrada principal de la aplicacion.
+    * <p>
+    * Con argumentos se ejecuta el subcomando indicado mediante
+    * {@link PrimeSecureCli}; sin argumentos se inicia el menu interactivo.
+    * </p>
     * 
     * @param args Los argumentos de linea de comandos
     */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            MetricsRegistry.getDefault().configureFromSystemProperties();
+            int exitCode = PrimeSecureCli.run(args, System.out, System.err);
+            if (exitCode != PrimeSecureCli.EXIT_OK) {
+                System.exit(exitCode);
+            }
+            return;
+        }
+        
+        scanner = new Scanner(System.in);
         System.out.println("=== PrimeSecure App ===");
         System.out.println("Sistema de mensajeria segura basado en numeros primos");
         
+        MetricsRegistry.getDefault().configureFromSystemProperties();
+        
         boolean exit = false;
         
         while (!exit) {
@@ -48,7 +71,8 @@ public class PrimeSecureApp {
             System.out.println("2. Enviar un mensaje");
             System.out.println("3. Encriptar/Desencriptar un archivo");
             System.out.println("4. Generar mensajes de prueba");
-            System.out.println("5. Salir");
+            System.out.println("5. Ver metricas de rendimiento");
+            System.out.println("6. Salir");
             
             System.out.print("\nOpcion: ");
             int option = readInt();
@@ -68,6 +92,10 @@ public class PrimeSecureApp {
                         generateTestMessagesOption();
                         break;
                     case 5:
+                        System.out.println("\n=== Metricas de rendimiento ===");
+                        System.out.print(MetricsRegistry.getDefault().getStatistics());
+                        break;
+                    case 6:
                         exit = true;
                         System.out.println("Gracias por usar PrimeSecure App!");
                         break;
@@ -87,17 +115,17 @@ public class PrimeSecureApp {
         System.out.println("\n=== Busqueda de Numeros Primos ===");
         
         System.out.print("Ingrese el inicio del rango: ");
-        int start = readInt();
+        long start = readLong();
         
         System.out.print("Ingrese el fin del rango: ");
-        int end = readInt();
+        long end = readLong();
         
-        System.out.print("Ingrese el numero de hilos a utilizar: ");
+        System.out.print("Ingrese el numero de hilos a utilizar (0 = automatico): ");
         int threads = readInt();
         
         System.out.println("\nBuscando numeros primos...");
         
-        PrimesList primes = BatchProcessor.findPrimesInRange(start, end, threads);
+        LongPrimesList primes = BatchProcessor.findPrimesInRange(start, end, threads);
         
         System.out.println("\nSe encontraron " + primes.getPrimesCount() + " numeros primos.");
         
@@ -226,4 +254,18 @@ public class PrimeSecureApp {
             return readInt();
         }
     }
+    
+    /**
+    * Metodo auxiliar para leer un entero de 64 bits desde la entrada estandar.
+    * 
+    * @return El entero leido
+    */
+    private static long readLong() {
+        try {
+            return Long.parseLong(scanner.next());
+        } catch (NumberFormatException e) {
+            System.out.println("Por favor ingrese un numero valido.");
+            return readLong();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,1016 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.app;
+
+import com.primesecure.model.Message;
+import com.primesecure.model.OffHeapPrimesList;
+import com.primesecure.security.EncryptedSearch;
+import com.primesecure.security.FileChecksums;
+import com.primesecure.security.FileEncryptor;
+import com.primesecure.server.EncryptionClient;
+import com.primesecure.server.EncryptionServer;
+import com.primesecure.server.PrimeSearchCoordinator;
+import com.primesecure.server.PrimeSearchWorker;
+import com.primesecure.util.AutoTuner;
+import com.primesecure.util.BatchProcessor;
+import com.primesecure.util.MessageExporter;
+import com.primesecure.util.MessageLog;
+import com.primesecure.util.PrimeCalculator;
+import com.primesecure.util.ShardedArchive;
+import com.primesecure.util.WorkloadGenerator;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Interfaz de linea de comandos no interactiva de PrimeSecure.
+ * <p>
+ * Cada invocacion ejecuta un subcomando ({@code primes}, {@code count-primes},
+ * {@code nth-prime}, {@code encrypt-file}, {@code decrypt-file}, {@code rekey-file}, {@code verify-file},
+ * {@code grep-file}, {@code grep-messages}, {@code gen-messages}, {@code gen-text}, {@code rekey-messages},
+ * {@code export}, {@code import}, {@code export-shards}, {@code import-shards}, {@code log-append},
+ * {@code log-read}, {@code serve}, {@code worker} o {@code tune}) configurado con
+ * opciones {@code --nombre valor}, por lo que las
+ * operaciones pueden ejecutarse en scripts y pipelines sin el menu de consola.
+ * El comando {@code train} ejecuta todas las operaciones sobre datos temporales
+ * y sirve como corrida de entrenamiento al generar el archivo AppCDS.
+ * </p>
+ * <p>
+ * Con {@code --coordinator}, el comando {@code primes} reparte el rango entre
+ * procesos: abre un coordinador en esa direccion y los procesos iniciados con
+ * {@code worker --connect} en otras JVM o maquinas se suman a la busqueda.
+ * Con {@code --store}, los primos se escriben en binario (8 bytes little-endian
+ * por primo) a traves de un archivo mapeado, sin pasar por el heap.
+ * </p>
+ * <p>
+ * Sin {@code --threads}, {@code primes} elige los hilos con {@link AutoTuner}, y
+ * el motor {@code streaming} elige el tamaño de los bloques. El motor
+ * {@code chunked} cuenta las posiciones desde cada fragmento, asi que su
+ * resultado depende de {@code --threads} (por defecto, los nucleos); con
+ * {@code --positions file} las cuenta desde el inicio del archivo, el
+ * resultado es el de {@code streaming} y los hilos tambien se eligen solos.
+ * {@code tune} muestra el perfil de la maquina y, con {@code --force}, lo
+ * vuelve a medir.
+ * </p>
+ * <p>
+ * Las opciones {@code --warmup} y {@code --repeat} ejecutan la operacion varias
+ * veces para que las mediciones no incluyan el calentamiento de la JVM, y
+ * {@code --json} escribe los tiempos y resultados en una sola linea JSON. Los
+ * mensajes de progreso de las operaciones se suprimen salvo con {@code --verbose}.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public class PrimeSecureCli {
+    
+    /** Codigo de salida de una ejecucion correcta */
+    public static final int EXIT_OK = 0;
+    
+    /** Codigo de salida cuando la operacion falla */
+    public static final int EXIT_FAILURE = 1;
+    
+    /** Codigo de salida cuando los argumentos son invalidos */
+    public static final int EXIT_USAGE = 2;
+    
+    /** Opciones aceptadas por todos los subcomandos */
+    private static final List<String> COMMON_OPTIONS = Arrays.asList("repeat", "warmup", "json", "verbose");
+    
+    /** Texto de ayuda */
+    private static final String USAGE =
+        "Uso: PrimeSecureApp <comando> [opciones]\n" +
+        "\n" +
+        "Comandos:\n" +
+        "  primes        --to N [--from N] [--threads N] [--out ARCHIVO]\n" +
+        "                [--store ARCHIVO] [--coordinator DIRECCION [--unit-size N]\n" +
+        "                [--local-workers N]]\n" +
+        "  count-primes  --to N [--from N]\n" +
+        "  nth-prime     --n N\n" +
+        "  encrypt-file  --in ARCHIVO --out ARCHIVO --prime N [--threads N]\n" +
+        "                [--engine chunked|streaming|daemon] [--positions chunk|file]\n" +
+        "                [--buffer-size N]\n" +
+        "                [--connect DIRECCION] [--checksum none|crc32c|sha256]\n" +
+        "                [--verify]\n" +
+        "  decrypt-file  (mismas opciones que encrypt-file)\n" +
+        "  rekey-file    --in ARCHIVO --out ARCHIVO --prime N --new-prime N [--buffer-size N]\n" +
+        "                [--checksum none|crc32c|sha256] [--verify]\n" +
+        "  verify-file   --in ARCHIVO [--threads N]\n" +
+        "  grep-file     --in ARCHIVO --prime N --query TEXTO [--threads N] [--limit N]\n" +
+        "  grep-messages --in BINARIO --query TEXTO [--limit N]\n" +
+        "  gen-messages  --count N --out ARCHIVO [--format binary|text] [--no-content]\n" +
+        "                [--senders N] [--recipients N] [--encrypted-ratio X]\n" +
+        "                (y las opciones de generacion de gen-text)\n" +
+        "  gen-text      --size BYTES --out ARCHIVO [--seed N] [--threads N]\n" +
+        "                [--chars ascii|digits|unicode|mixed] [--sizes fixed|uniform|exponential]\n" +
+        "                [--min-length N] [--max-length N]\n" +
+        "  rekey-messages --in BINARIO --out BINARIO --new-prime N\n" +
+        "  export        --in BINARIO --out TEXTO [--no-content]\n" +
+        "  import        --in TEXTO [--threads N] [--process encrypt|decrypt|none]\n" +
+        "                [--engine pool|grouped|virtual] [--out BINARIO]\n" +
+        "  export-shards --in BINARIO --out MANIFIESTO [--shards N] [--partition recipient|prime]\n" +
+        "                [--threads N]\n" +
+        "  import-shards --in MANIFIESTO [--threads N] [--out BINARIO]\n" +
+        "  log-append    --dir DIRECTORIO --count N [--producers N] [--commit-interval MS]\n" +
+        "                [--segment-size BYTES] (y las opciones de generacion de gen-text)\n" +
+        "  log-read      --dir DIRECTORIO [--from N] [--out TEXTO] [--no-content]\n" +
+        "  serve         --listen DIRECCION [--max-connections N]\n" +
+        "  worker        --connect DIRECCION [--threads N]\n" +
+        "  train         [--dir DIRECTORIO]\n" +
+        "  tune          [--force]\n" +
+        "\n" +
+        "Una DIRECCION es un puerto local, host:puerto o unix:/ruta/al/socket.\n" +
+        "En primes y con --positions file, --threads 0 (por defecto) y, con\n" +
+        "--engine streaming, --buffer-size 0 eligen el valor segun la maquina.\n" +
+        "Un archivo se desencripta con el mismo --positions con que se encripto y,\n" +
+        "con --positions chunk (por defecto), con el mismo --threads.\n" +
+        "\n" +
+        "Opciones comunes:\n" +
+        "  --warmup N    Ejecuciones previas que no se miden (por defecto 0)\n" +
+        "  --repeat N    Ejecuciones medidas (por defecto 1)\n" +
+        "  --json        Escribe tiempos y resultados como JSON\n" +
+        "  --verbose     Muestra los mensajes de progreso de la operacion\n" +
+        "\n" +
+        "Sin argumentos se inicia el menu interactivo.";
+    
+    /**
+    * Una operacion ejecutable por la linea de comandos.
+    */
+    private interface Operation {
+        /**
+        * Ejecuta la operacion una vez.
+        * 
+        * @return Los resultados de la ejecucion, por nombre
+        * @throws Exception Si la operacion falla
+        */
+        Map<String, Object> run() throws Exception;
+    }
+    
+    /** Flujo donde se escriben los resultados */
+    private final PrintStream out;
+    
+    /** Flujo donde se escriben los errores */
+    private final PrintStream err;
+    
+    private PrimeSecureCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+    
+    /**
+    * Ejecuta un subcomando.
+    * 
+    * @param args Los argumentos de linea de comandos, empezando por el subcomando
+    * @param out El flujo donde se escriben los resultados
+    * @param err El flujo donde se escriben los errores
+    * @return El codigo de salida
+    */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        return new PrimeSecureCli(out, err).execute(args);
+    }
+    
+    private int execute(String[] args) {
+        if (args.length == 0 || "help".equals(args[0]) || "--help".equals(args[0])) {
+            out.println(USAGE);
+            return EXIT_OK;
+        }
+        
+        String command = args[0];
+        try {
+            Options options = new Options(Arrays.copyOfRange(args, 1, args.length));
+            if ("serve".equals(command)) {
+                return serve(options);
+            }
+            if ("train".equals(command)) {
+                return train(options);
+            }
+            if ("worker".equals(command)) {
+                return worker(options);
+            }
+            Operation operation = createOperation(command, options);
+            options.checkUnused();
+            return measure(command, operation, options);
+        } catch (IllegalArgumentException e) {
+            err.println("Error: " + e.getMessage());
+            err.println();
+            err.println(USAGE);
+            return EXIT_USAGE;
+        } catch (NoSuchFileException e) {
+            err.println("Error: no se encontro el archivo " + e.getFile());
+            return EXIT_FAILURE;
+        } catch (Exception e) {
+            err.println("Error: " + e.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+    
+    /**
+    * Crea la operacion de un subcomando leyendo sus opciones.
+    */
+    private Operation createOperation(String command, Options options) {
+        int defaultThreads = Runtime.getRuntime().availableProcessors();
+        
+        switch (command) {
+            case "primes": {
+                long from = options.getLong("from", 2);
+                long to = options.getRequiredLong("to");
+                int threads = options.getInt("threads", AutoTuner.AUTO);
+                String outFile = options.get("out", null);
+                String coordinator = options.get("coordinator", null);
+                long unitSize = options.getLong("unit-size", PrimeSearchCoordinator.DEFAULT_UNIT_SIZE);
+                int localWorkers = options.getInt("local-workers", threads > 0 ? threads : defaultThreads);
+                String storeFile = options.get("store", null);
+                if (outFile != null && storeFile != null) {
+                    throw new IllegalArgumentException("Use --out o --store, no ambas");
+                }
+                return () -> {
+                    // Los primos se escriben a medida que se encuentran, sin guardarlos en memoria
+                    long found;
+                    if (storeFile != null) {
+                        // Formato binario: el archivo mapeado es la propia lista, fuera del heap
+                        try (OffHeapPrimesList store = OffHeapPrimesList.createMapped(Paths.get(storeFile))) {
+                            if (coordinator != null) {
+                                found = searchPrimes(from, to, threads, coordinator, unitSize, localWorkers, prime -> {
+                                    try {
+                                        store.append(prime);
+                                    } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                    }
+                                });
+                            } else {
+                                found = BatchProcessor.findPrimesInRange(from, to, threads, store);
+                            }
+                        } catch (UncheckedIOException e) {
+                            throw e.getCause();
+                        }
+                    } else if (outFile != null) {
+                        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outFile))) {
+                            found = searchPrimes(from, to, threads, coordinator, unitSize, localWorkers, prime -> {
+                                try {
+                                    writer.write(Long.toString(prime));
+                                    writer.newLine();
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            });
+                        } catch (UncheckedIOException e) {
+                            throw e.getCause();
+                        }
+                    } else {
+                        found = searchPrimes(from, to, threads, coordinator, unitSize, localWorkers, null);
+                    }
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("from", from);
+                    result.put("to", to);
+                    result.put("threads", threads);
+                    if (coordinator != null) {
+                        result.put("coordinator", coordinator);
+                        result.put("unitSize", unitSize);
+                    }
+                    result.put("primesFound", found);
+                    return result;
+                };
+            }
+            case "count-primes": {
+                long from = options.getLong("from", 2);
+                long to = options.getRequiredLong("to");
+                return () -> {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("from", from);
+                    result.put("to", to);
+                    result.put("primesFound", PrimeCalculator.countPrimes(from, to));
+                    return result;
+                };
+            }
+            case "tune": {
+                boolean force = options.getFlag("force");
+                return () -> {
+                    AutoTuner tuner = force ? AutoTuner.recalibrate() : AutoTuner.getDefault();
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("profile", AutoTuner.getProfilePath().toString());
+                    result.put("cores", tuner.getCores());
+                    result.put("cipherNanosPerChar", tuner.getCipherNanosPerChar());
+                    result.put("sieveNanosPerNumber", tuner.getSieveNanosPerNumber());
+                    result.put("l2CacheBytes", tuner.getL2CacheBytes());
+                    result.put("streamBufferChars", tuner.streamBufferChars());
+                    return result;
+                };
+            }
+            case "nth-prime": {
+                long n = options.getRequiredLong("n");
+                return () -> {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("n", n);
+                    result.put("prime", PrimeCalculator.nthPrime(n));
+                    return result;
+                };
+            }
+            case "encrypt-file":
+            case "decrypt-file": {
+                boolean encrypt = "encrypt-file".equals(command);
+                String in = options.getRequired("in");
+                String outFile = options.getRequired("out");
+                int prime = options.getRequiredInt("prime");
+                String engine = options.getChoice("engine", "chunked", "chunked", "streaming", "daemon");
+                // Con posiciones por fragmento el resultado depende de los hilos, asi que no se eligen solos
+                boolean absolutePositions = "file".equals(options.getChoice("positions", "chunk", "chunk", "file"));
+                int threads = options.getInt("threads", absolutePositions ? AutoTuner.AUTO : defaultThreads);
+                // El servidor recibe el tamaño del buffer tal cual; el ajuste es de esta maquina
+                int bufferSize = options.getInt("buffer-size",
+                    "daemon".equals(engine) ? FileEncryptor.DEFAULT_STREAM_BUFFER_SIZE : AutoTuner.AUTO);
+                String connect = "daemon".equals(engine) ? options.getRequired("connect") : null;
+                FileChecksums.Mode checksums = getChecksumMode(options);
+                boolean verify = options.getFlag("verify");
+                if (!"streaming".equals(engine) && (checksums != FileChecksums.Mode.NONE || verify)) {
+                    throw new IllegalArgumentException("--checksum y --verify requieren --engine streaming");
+                }
+                return () -> {
+                    if ("daemon".equals(engine)) {
+                        try (EncryptionClient client = new EncryptionClient(EncryptionServer.parseAddress(connect))) {
+                            client.processFile(in, outFile, prime, encrypt, bufferSize);
+                        }
+                    } else if ("streaming".equals(engine)) {
+                        FileEncryptor.processFileStreaming(in, outFile, prime, encrypt, bufferSize,
+                            checksums, verify);
+                    } else {
+                        FileEncryptor.processFile(in, outFile, prime, encrypt, threads, absolutePositions);
+                    }
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("engine", engine);
+                    result.put("bytes", Files.size(Paths.get(in)));
+                    return result;
+                };
+            }
+            case "rekey-file": {
+                String in = options.getRequired("in");
+                String outFile = options.getRequired("out");
+                int prime = options.getRequiredInt("prime");
+                int newPrime = options.getRequiredInt("new-prime");
+                int bufferSize = options.getInt("buffer-size", AutoTuner.AUTO);
+                FileChecksums.Mode checksums = getChecksumMode(options);
+                boolean verify = options.getFlag("verify");
+                return () -> {
+                    FileEncryptor.rekeyFileStreaming(in, outFile, prime, newPrime, bufferSize,
+                        checksums, verify);
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("bytes", Files.size(Paths.get(in)));
+                    return result;
+                };
+            }
+            case "verify-file": {
+                String in = options.getRequired("in");
+                int threads = options.getInt("threads", defaultThreads);
+                return () -> {
+                    FileChecksums expected = FileChecksums.read(FileChecksums.sidecarPath(in));
+                    List<Integer> corrupted = expected.verifyBlocks(in, threads);
+                    if (!corrupted.isEmpty()) {
+                        throw new IOException("El archivo " + in + " esta dañado; bloques que no coinciden: "
+                            + corrupted);
+                    }
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("blocks", expected.getBlockCount());
+                    result.put("bytes", expected.getFileLength());
+                    return result;
+                };
+            }
+            case "rekey-messages": {
+                String in = options.getRequired("in");
+                String outFile = options.getRequired("out");
+                int newPrime = options.getRequiredInt("new-prime");
+                return () -> {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("messages", MessageExporter.rekeyMessages(in, outFile, newPrime));
+                    return result;
+                };
+            }
+            case "grep-file": {
+                String in = options.getRequired("in");
+                String query = options.getRequired("query");
+                int prime = options.getRequiredInt("prime");
+                int threads = options.getInt("threads", defaultThreads);
+                int limit = options.getInt("limit", 20);
+                return () -> {
+                    long[] offsets = EncryptedSearch.searchFile(in, query, prime, threads);
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("matches", offsets.length);
+                    result.put("offsets", Arrays.toString(Arrays.copyOf(offsets, Math.min(offsets.length, limit))));
+                    return result;
+                };
+            }
+            case "grep-messages": {
+                String in = options.getRequired("in");
+                String query = options.getRequired("query");
+                int limit = options.getInt("limit", 20);
+                return () -> {
+                    List<EncryptedSearch.MessageMatch> matches =
+                        EncryptedSearch.searchMessages(MessageExporter.importMessages(in), query);
+                    List<String> shown = new ArrayList<>();
+                    for (EncryptedSearch.MessageMatch match : matches.subList(0, Math.min(matches.size(), limit))) {
+                        shown.add(match.getMessageIndex() + ":" + match.getOffset());
+                    }
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("matches", matches.size());
+                    result.put("offsets", shown.toString());
+                    return result;
+                };
+            }
+            case "gen-messages": {
+                long count = options.getRequiredLong("count");
+                String outFile = options.getRequired("out");
+                String format = options.getChoice("format", "binary", "binary", "text");
+                boolean includeContent = !options.getFlag("no-content");
+                int threads = options.getInt("threads", defaultThreads);
+                WorkloadGenerator generator = createGenerator(options);
+                generator.setCardinality(options.getInt("senders", 1000), options.getInt("recipients", 1000));
+                generator.setEncryptedRatio(options.getDouble("encrypted-ratio", 0.5));
+                if ("binary".equals(format) && (count > Integer.MAX_VALUE || !includeContent)) {
+                    throw new IllegalArgumentException(
+                        "El formato binario guarda los mensajes completos y en memoria; use --format text");
+                }
+                return () -> {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    if ("text".equals(format)) {
+                        result.put("bytes", generator.writeMessagesText(outFile, count, threads, includeContent));
+                    } else {
+                        // El formato binario serializa la lista completa, por lo que se genera en memoria
+                        MessageExporter.exportMessages(generator.generateMessages((int) count, threads), outFile);
+                    }
+                    result.put("messages", count);
+                    return result;
+                };
+            }
+            case "gen-text": {
+                long size = options.getRequiredLong("size");
+                String outFile = options.getRequired("out");
+                int threads = options.getInt("threads", defaultThreads);
+                WorkloadGenerator generator = createGenerator(options);
+                return () -> {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("bytes", generator.writeText(outFile, size, threads));
+                    return result;
+                };
+            }
+            case "export": {
+                String in = options.getRequired("in");
+                String outFile = options.getRequired("out");
+                boolean includeContent = !options.getFlag("no-content");
+                return () -> {
+                    List<Message> messages = MessageExporter.importMessages(in);
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("messages", MessageExporter.exportMessagesToText(messages, outFile, includeContent));
+                    return result;
+                };
+            }
+            case "import": {
+                String in = options.getRequired("in");
+                String outFile = options.get("out", null);
+                int threads = options.getInt("threads", defaultThreads);
+                String process = options.getChoice("process", "none", "none", "encrypt", "decrypt");
+                String engine = options.getChoice("engine", "pool", "pool", "grouped", "virtual");
+                return () -> {
+                    List<Message> messages = MessageExporter.importMessagesFromText(in, threads);
+                    if (!"none".equals(process)) {
+                        processMessages(messages, "encrypt".equals(process), engine, threads);
+                    }
+                    if (outFile != null) {
+                        MessageExporter.exportMessages(messages, outFile);
+                    }
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("messages", messages.size());
+                    result.put("process", process);
+                    result.put("engine", engine);
+                    return result;
+                };
+            }
+            case "export-shards": {
+                String in = options.getRequired("in");
+                String outFile = options.getRequired("out");
+                int shards = options.getInt("shards", defaultThreads);
+                String partition = options.getChoice("partition", "recipient", "recipient", "prime");
+                int threads = options.getInt("threads", defaultThreads);
+                return () -> {
+                    List<Message> messages = MessageExporter.importMessages(in);
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("messages", MessageExporter.exportMessagesSharded(messages, outFile, shards,
+                        ShardedArchive.Partition.valueOf(partition.toUpperCase(Locale.ROOT)), threads));
+                    result.put("shards", shards);
+                    return result;
+                };
+            }
+            case "import-shards": {
+                String in = options.getRequired("in");
+                String outFile = options.get("out", null);
+                int threads = options.getInt("threads", defaultThreads);
+                return () -> {
+                    List<Message> messages = MessageExporter.importMessagesSharded(in, threads);
+                    if (outFile != null) {
+                        MessageExporter.exportMessages(messages, outFile);
+                    }
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("messages", messages.size());
+                    return result;
+                };
+            }
+            case "log-append": {
+                Path logDir = Paths.get(options.getRequired("dir"));
+                long count = options.getRequiredLong("count");
+                int producers = options.getInt("producers", defaultThreads);
+                long commitInterval = options.getLong("commit-interval", MessageLog.DEFAULT_COMMIT_INTERVAL_MILLIS);
+                long segmentSize = options.getLong("segment-size", MessageLog.DEFAULT_SEGMENT_BYTES);
+                WorkloadGenerator generator = createGenerator(options);
+                if (count > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("--count debe ser menor que " + Integer.MAX_VALUE);
+                }
+                return () -> {
+                    List<Message> messages = generator.generateMessages((int) count, defaultThreads);
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    try (MessageLog log = MessageLog.open(logDir, segmentSize, commitInterval)) {
+                        result.put("recoveredBytes", log.getRecoveredBytes());
+                        long first = log.getNextSequence();
+                        long start = System.nanoTime();
+                        appendMessages(log, messages, producers);
+                        long elapsed = System.nanoTime() - start;
+                        result.put("firstSequence", first);
+                        result.put("messages", messages.size());
+                        result.put("messagesPerSecond", elapsed == 0 ? 0 : messages.size() * 1_000_000_000L / elapsed);
+                    }
+                    return result;
+                };
+            }
+            case "log-read": {
+                Path logDir = Paths.get(options.getRequired("dir"));
+                long from = options.getLong("from", 0);
+                String outFile = options.get("out", null);
+                boolean includeContent = !options.getFlag("no-content");
+                return () -> {
+                    List<Message> messages = new ArrayList<>();
+                    long read = MessageLog.read(logDir, from, outFile != null ? messages::add : message -> { });
+                    if (outFile != null) {
+                        MessageExporter.exportMessagesToText(messages, outFile, includeContent);
+                    }
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("messages", read);
+                    return result;
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Comando desconocido: " + command);
+        }
+    }
+    
+    /**
+    * Agrega mensajes a un registro desde varios productores y espera a que todos esten en disco.
+    * <p>
+    * Cada productor encola su parte sin esperar cada confirmacion, de modo
+    * que el escritor del registro junta los mensajes de todos en cada grupo.
+    * </p>
+    */
+    private static void appendMessages(MessageLog log, List<Message> messages, int producers) throws Exception {
+        int threads = Math.max(1, Math.min(producers, messages.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CompletableFuture<Long>>> results = new ArrayList<>();
+            int share = (messages.size() + threads - 1) / threads;
+            for (int i = 0; i < threads; i++) {
+                List<Message> slice = messages.subList(Math.min(i * share, messages.size()),
+                    Math.min((i + 1) * share, messages.size()));
+                results.add(executor.submit(() -> {
+                    CompletableFuture<Long> last = CompletableFuture.completedFuture(-1L);
+                    for (Message message : slice) {
+                        last = log.appendAsync(message);
+                    }
+                    return last;
+                }));
+            }
+            // Los mensajes de un productor se confirman en orden, asi que basta esperar el ultimo
+            for (Future<CompletableFuture<Long>> result : results) {
+                result.get().get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    /**
+    * Busca los primos de un rango en este proceso o, con coordinador, repartidos entre procesos.
+    * 
+    * @param consumer Recibe cada primo en orden, o null si solo se cuentan
+    */
+    private static long searchPrimes(long from, long to, int threads, String coordinator, long unitSize,
+                                     int localWorkers, LongConsumer consumer) throws Exception {
+        if (coordinator != null) {
+            return BatchProcessor.findPrimesInRangeDistributed(from, to, EncryptionServer.parseAddress(coordinator),
+                unitSize, localWorkers, consumer);
+        }
+        return BatchProcessor.streamPrimesInRange(from, to, threads, consumer != null ? consumer : prime -> { });
+    }
+    
+    /**
+    * Se conecta a un coordinador y procesa unidades de busqueda hasta que no quede trabajo.
+    */
+    private int worker(Options options) throws IOException, InterruptedException {
+        String connect = options.getRequired("connect");
+        int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+        options.checkUnused();
+        
+        try (PrimeSearchWorker worker = new PrimeSearchWorker(EncryptionServer.parseAddress(connect), threads)) {
+            long units = worker.run();
+            out.println("Unidades completadas: " + units);
+        }
+        return EXIT_OK;
+    }
+    
+    /**
+    * Inicia el servidor de encriptacion y espera hasta que el proceso termine.
+    */
+    private int serve(Options options) throws IOException, InterruptedException {
+        String listen = options.getRequired("listen");
+        int maxConnections = options.getInt("max-connections", EncryptionServer.DEFAULT_MAX_CONNECTIONS);
+        options.checkUnused();
+        
+        EncryptionServer server = new EncryptionServer(EncryptionServer.parseAddress(listen), maxConnections);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                err.println("Error cerrando el servidor: " + e.getMessage());
+            }
+        }));
+        out.println("Servidor escuchando en " + server.getLocalAddress());
+        server.awaitClose();
+        return EXIT_OK;
+    }
+    
+    /**
+    * Ejecuta las operaciones principales sobre datos temporales.
+    * <p>
+    * Se usa como corrida de entrenamiento del archivo AppCDS: todas las clases
+    * que cargan los subcomandos quedan registradas en una sola ejecucion.
+    * </p>
+    */
+    private int train(Options options) throws IOException {
+        String dirOption = options.get("dir", null);
+        options.checkUnused();
+        
+        Path dir = dirOption == null
+            ? Files.createTempDirectory("primesecure-train")
+            : Files.createDirectories(Paths.get(dirOption));
+        String messagesBin = dir.resolve("messages.bin").toString();
+        String messagesTxt = dir.resolve("messages.txt").toString();
+        String sample = dir.resolve("sample.txt").toString();
+        String encrypted = dir.resolve("sample.enc").toString();
+        String decrypted = dir.resolve("sample.dec").toString();
+        String manifest = dir.resolve("messages.shards").toString();
+        Path logDir = dir.resolve("log");
+        String[][] commands = {
+            {"primes", "--to", "200000", "--threads", "2"},
+            {"count-primes", "--to", "1000000000"},
+            {"nth-prime", "--n", "1000000"},
+            {"gen-messages", "--count", "2000", "--out", messagesBin},
+            {"export", "--in", messagesBin, "--out", messagesTxt},
+            {"gen-messages", "--count", "20000", "--out", messagesTxt, "--format", "text", "--chars", "mixed",
+                "--sizes", "exponential"},
+            {"gen-text", "--size", "1000000", "--out", sample, "--chars", "mixed"},
+            {"import", "--in", messagesTxt, "--process", "decrypt", "--engine", "pool"},
+            {"import", "--in", messagesTxt, "--process", "encrypt", "--engine", "grouped"},
+            {"import", "--in", messagesTxt, "--process", "decrypt", "--engine", "virtual", "--out", messagesBin},
+            {"encrypt-file", "--in", sample, "--out", encrypted, "--prime", "101", "--engine", "chunked"},
+            {"encrypt-file", "--in", sample, "--out", encrypted, "--prime", "101", "--engine", "streaming",
+                "--checksum", "crc32c"},
+            {"rekey-file", "--in", encrypted, "--out", decrypted, "--prime", "101", "--new-prime", "103",
+                "--checksum", "sha256", "--verify"},
+            {"rekey-messages", "--in", messagesBin, "--out", messagesBin, "--new-prime", "103"},
+            {"grep-file", "--in", encrypted, "--prime", "101", "--query", "mensaje"},
+            {"grep-messages", "--in", messagesBin, "--query", "proyecto"},
+            {"decrypt-file", "--in", encrypted, "--out", decrypted, "--prime", "101", "--engine", "streaming",
+                "--verify", "--json"},
+            {"verify-file", "--in", encrypted, "--threads", "2"},
+            {"export-shards", "--in", messagesBin, "--out", manifest, "--shards", "4", "--threads", "2"},
+            {"import-shards", "--in", manifest, "--threads", "2", "--out", messagesBin},
+            {"log-append", "--dir", logDir.toString(), "--count", "20000", "--producers", "2"},
+            {"log-read", "--dir", logDir.toString(), "--from", "100", "--out", messagesTxt}
+        };
+        
+        PrimeSecureCli quiet = new PrimeSecureCli(new PrintStream(OutputStream.nullOutputStream()), err);
+        for (String[] trainingCommand : commands) {
+            int exitCode = quiet.execute(trainingCommand);
+            if (exitCode != EXIT_OK) {
+                return exitCode;
+            }
+        }
+        
+        if (dirOption == null) {
+            for (String file : new String[] {messagesBin, messagesTxt, sample, encrypted, decrypted,
+                    FileChecksums.sidecarPath(encrypted), FileChecksums.sidecarPath(decrypted)}) {
+                Files.deleteIfExists(Paths.get(file));
+            }
+            for (String shard : ShardedArchive.shardPaths(manifest)) {
+                Files.deleteIfExists(Paths.get(shard));
+            }
+            Files.deleteIfExists(Paths.get(manifest));
+            if (Files.isDirectory(logDir)) {
+                try (Stream<Path> segments = Files.list(logDir)) {
+                    for (Path segment : (Iterable<Path>) segments::iterator) {
+                        Files.delete(segment);
+                    }
+                }
+                Files.delete(logDir);
+            }
+            Files.deleteIfExists(dir);
+        }
+        out.println("Entrenamiento completado: " + commands.length + " comandos");
+        return EXIT_OK;
+    }
+    
+    /**
+    * Crea un generador de datos con las opciones de semilla, largo y caracteres.
+    */
+    private static WorkloadGenerator createGenerator(Options options) {
+        WorkloadGenerator generator = new WorkloadGenerator(options.getLong("seed", 1));
+        String sizes = options.getChoice("sizes", "uniform", "fixed", "uniform", "exponential");
+        generator.setContentLength(WorkloadGenerator.SizeDistribution.valueOf(sizes.toUpperCase(Locale.ROOT)),
+            options.getInt("min-length", 20), options.getInt("max-length", 120));
+        String chars = options.getChoice("chars", "ascii", "ascii", "digits", "unicode", "mixed");
+        generator.setCharMix(WorkloadGenerator.CharMix.valueOf(chars.toUpperCase(Locale.ROOT)));
+        return generator;
+    }
+    
+    /**
+    * Lee la opcion --checksum como un modo de sumas de verificacion.
+    */
+    private static FileChecksums.Mode getChecksumMode(Options options) {
+        String checksum = options.getChoice("checksum", "none", "none", "crc32c", "sha256");
+        return FileChecksums.Mode.valueOf(checksum.toUpperCase(Locale.ROOT));
+    }
+    
+    /**
+    * Procesa mensajes importados con el motor seleccionado.
+    */
+    private static void processMessages(List<Message> messages, boolean encrypt, String engine, int threads)
+            throws Exception {
+        switch (engine) {
+            case "grouped":
+                BatchProcessor.processMessagesGrouped(messages, encrypt, threads);
+                break;
+            case "virtual":
+                BatchProcessor.processMessagesVirtual(messages, encrypt, threads);
+                break;
+            default:
+                BatchProcessor.processMessages(messages, encrypt, threads);
+        }
+    }
+    
+    /**
+    * Ejecuta la operacion las veces indicadas y escribe los tiempos medidos.
+    */
+    private int measure(String command, Operation operation, Options options) throws Exception {
+        int warmup = Math.max(0, options.getInt("warmup", 0));
+        int repeat = Math.max(1, options.getInt("repeat", 1));
+        boolean json = options.getFlag("json");
+        boolean verbose = options.getFlag("verbose");
+        
+        long[] timings = new long[repeat];
+        Map<String, Object> result;
+        
+        // Los mensajes de progreso van a System.out y distorsionarian la salida y los tiempos
+        PrintStream systemOut = System.out;
+        if (!verbose) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+        try {
+            for (int i = 0; i < warmup; i++) {
+                operation.run();
+            }
+            result = null;
+            for (int i = 0; i < repeat; i++) {
+                long start = System.nanoTime();
+                result = operation.run();
+                timings[i] = System.nanoTime() - start;
+            }
+        } finally {
+            System.setOut(systemOut);
+        }
+        
+        long[] sorted = timings.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long timing : timings) {
+            total += timing;
+        }
+        
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("command", command);
+        report.put("warmup", warmup);
+        report.put("repeat", repeat);
+        report.put("minNanos", sorted[0]);
+        report.put("meanNanos", total / repeat);
+        report.put("medianNanos", sorted[repeat / 2]);
+        report.put("maxNanos", sorted[repeat - 1]);
+        report.put("timingsNanos", timings);
+        report.put("result", result);
+        
+        if (json) {
+            out.println(toJson(report));
+        } else {
+            out.println("Comando: " + command);
+            out.println("Ejecuciones medidas: " + repeat + " (calentamiento: " + warmup + ")");
+            out.printf("Tiempo minimo: %.3f ms%n", sorted[0] / 1e6);
+            out.printf("Tiempo medio: %.3f ms%n", total / repeat / 1e6);
+            out.printf("Tiempo mediano: %.3f ms%n", sorted[repeat / 2] / 1e6);
+            out.printf("Tiempo maximo: %.3f ms%n", sorted[repeat - 1] / 1e6);
+            for (Map.Entry<String, Object> entry : result.entrySet()) {
+                out.println(entry.getKey() + ": " + entry.getValue());
+            }
+        }
+        return EXIT_OK;
+    }
+    
+    /**
+    * Convierte un valor en JSON.
+    * <p>
+    * Admite mapas, arreglos de long, numeros, booleanos y cadenas.
+    * </p>
+    */
+    static String toJson(Object value) {
+        StringBuilder sb = new StringBuilder();
+        appendJson(sb, value);
+        return sb.toString();
+    }
+    
+    private static void appendJson(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof long[]) {
+            long[] values = (long[]) value;
+            sb.append('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(values[i]);
+            }
+            sb.append(']');
+        } else if (value instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                appendJson(sb, String.valueOf(entry.getKey()));
+                sb.append(':');
+                appendJson(sb, entry.getValue());
+            }
+            sb.append('}');
+        } else {
+            String text = value.toString();
+            sb.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+    }
+    
+    /**
+    * Opciones {@code --nombre valor} y banderas {@code --nombre} de un subcomando.
+    */
+    private static final class Options {
+        private final Map<String, String> values = new HashMap<>();
+        private final Set<String> used = new HashSet<>(COMMON_OPTIONS);
+        
+        Options(String[] args) {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--") || arg.length() == 2) {
+                    throw new IllegalArgumentException("Argumento inesperado: " + arg);
+                }
+                String name = arg.substring(2);
+                // Una opcion sin valor a continuacion es una bandera
+                if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                    values.put(name, args[++i]);
+                } else {
+                    values.put(name, "true");
+                }
+            }
+        }
+        
+        String get(String name, String defaultValue) {
+            used.add(name);
+            return values.getOrDefault(name, defaultValue);
+        }
+        
+        String getRequired(String name) {
+            String value = get(name, null);
+            if (value == null) {
+                throw new IllegalArgumentException("Falta la opcion --" + name);
+            }
+            return value;
+        }
+        
+        int getInt(String name, int defaultValue) {
+            String value = get(name, null);
+            return value == null ? defaultValue : parseInt(name, value);
+        }
+        
+        int getRequiredInt(String name) {
+            return parseInt(name, getRequired(name));
+        }
+        
+        long getLong(String name, long defaultValue) {
+            String value = get(name, null);
+            return value == null ? defaultValue : parseLong(name, value);
+        }
+        
+        long getRequiredLong(String name) {
+            return parseLong(name, getRequired(name));
+        }
+        
+        double getDouble(String name, double defaultValue) {
+            String value = get(name, null);
+            if (value == null) {
+                return defaultValue;
+            }
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("La opcion --" + name + " requiere un numero: " + value);
+            }
+        }
+        
+        boolean getFlag(String name) {
+            return Boolean.parseBoolean(get(name, "false"));
+        }
+        
+        String getChoice(String name, String defaultValue, String... choices) {
+            String value = get(name, defaultValue);
+            if (!Arrays.asList(choices).contains(value)) {
+                throw new IllegalArgumentException("Valor invalido para --" + name + ": " + value
+                    + " (valores posibles: " + String.join(", ", choices) + ")");
+            }
+            return value;
+        }
+        
+        /**
+        * Verifica que todas las opciones recibidas pertenezcan al subcomando.
+        */
+        void checkUnused() {
+            for (String name : values.keySet()) {
+                if (!used.contains(name)) {
+                    throw new IllegalArgumentException("Opcion desconocida: --" + name);
+                }
+            }
+        }
+        
+        private static int parseInt(String name, String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("La opcion --" + name + " requiere un numero: " + value);
+            }
+        }
+        
+        private static long parseLong(String name, String value) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("La opcion --" + name + " requiere un numero: " + value);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,53 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Un contador monotono seguro entre hilos.
+ * <p>
+ * Usa un LongAdder, por lo que los incrementos desde muchos hilos no compiten
+ * por la misma variable.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class Counter {
+    
+    /** El valor acumulado del contador */
+    private final LongAdder value = new LongAdder();
+    
+    Counter() {
+    }
+    
+    /**
+    * Incrementa el contador en uno.
+    */
+    public void increment() {
+        value.increment();
+    }
+    
+    /**
+    * Incrementa el contador en una cantidad dada.
+    * 
+    * @param amount La cantidad a sumar
+    */
+    public void add(long amount) {
+        value.add(amount);
+    }
+    
+    /**
+    * Obtiene el valor actual del contador.
+    * 
+    * @return El valor acumulado
+    */
+    public long get() {
+        return value.sum();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder para un fragmento de archivo procesado por un hilo.
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+@Name("com.primesecure.FileChunk")
+@Label("File Chunk")
+@Category({"PrimeSecure", "Files"})
+@Description("Fragmento de un archivo encriptado o desencriptado por un hilo")
+public final class FileChunkEvent extends Event {
+    
+    @Label("Chunk Index")
+    private int chunkIndex;
+    
+    @Label("Offset")
+    private long offset;
+    
+    @Label("Size")
+    @DataAmount
+    private long bytes;
+    
+    /**
+    * Crea el evento y comienza a medir su duracion.
+    * <p>
+    * Solo debe crearse si {@link FlightRecording#isActive()} es true.
+    * </p>
+    */
+    public FileChunkEvent() {
+        begin();
+    }
+    
+    /**
+    * Completa el evento y lo registra si la grabacion lo requiere.
+    * 
+    * @param chunkIndex El indice del fragmento dentro del archivo
+    * @param offset La posicion del primer caracter del fragmento
+    * @param bytes El tamaño del fragmento
+    */
+    public void complete(int chunkIndex, long offset, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.chunkIndex = chunkIndex;
+            this.offset = offset;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder para la encriptacion o desencriptacion de un archivo.
+ * <p>
+ * Incluye la lectura, el procesamiento de todos los fragmentos y la escritura
+ * del resultado; cada fragmento se registra aparte con {@link FileChunkEvent}.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+@Name("com.primesecure.FileJob")
+@Label("File Encryption Job")
+@Category({"PrimeSecure", "Files"})
+@Description("Encriptacion o desencriptacion de un archivo completo")
+public final class FileJobEvent extends Event {
+    
+    @Label("Input File")
+    private String inputFile;
+    
+    @Label("Output File")
+    private String outputFile;
+    
+    @Label("Encrypt")
+    private boolean encrypt;
+    
+    @Label("Size")
+    @DataAmount
+    private long bytes;
+    
+    @Label("Threads")
+    private int threadCount;
+    
+    @Label("Chunks")
+    private int chunkCount;
+    
+    /**
+    * Crea el evento y comienza a medir su duracion.
+    * <p>
+    * Solo debe crearse si {@link FlightRecording#isActive()} es true.
+    * </p>
+    */
+    public FileJobEvent() {
+        begin();
+    }
+    
+    /**
+    * Completa el evento y lo registra si la grabacion lo requiere.
+    * 
+    * @param inputFile La ruta del archivo de entrada
+    * @param outputFile La ruta del archivo de salida
+    * @param encrypt Indicador de si se encripto (true) o desencripto (false)
+    * @param bytes El tamaño procesado
+    * @param threadCount El numero de hilos utilizados
+    * @param chunkCount El numero de fragmentos procesados
+    */
+    public void complete(String inputFile, String outputFile, boolean encrypt,
+                         long bytes, int threadCount, int chunkCount) {
+        end();
+        if (shouldCommit()) {
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+            this.encrypt = encrypt;
+            this.bytes = bytes;
+            this.threadCount = threadCount;
+            this.chunkCount = chunkCount;
+            commit();
+        }
+    }
+}
\ No newline at end of file
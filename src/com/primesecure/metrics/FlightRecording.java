@@ -0,0 +1,37 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.metrics;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Indica si Java Flight Recorder esta activo en la JVM.
+ * <p>
+ * Cargar la primera subclase de {@code jdk.jfr.Event} inicializa buena parte de
+ * JFR aunque no haya ninguna grabacion, lo que agrega cientos de milisegundos al
+ * arranque. Por eso los eventos de la aplicacion solo se crean despues de
+ * verificar con esta clase que JFR ya fue iniciado, ya sea con
+ * {@code -XX:StartFlightRecording} o con {@code jcmd JFR.start}.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class FlightRecording {
+    
+    private FlightRecording() {
+    }
+    
+    /**
+    * Verifica si JFR fue iniciado y los eventos pueden registrarse.
+    * 
+    * @return true si JFR esta activo
+    */
+    public static boolean isActive() {
+        return FlightRecorder.isInitialized();
+    }
+}
\ No newline at end of file
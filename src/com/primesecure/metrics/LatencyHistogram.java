@@ -0,0 +1,176 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias en nanosegundos con cubetas logaritmicas.
+ * <p>
+ * Al estilo de HdrHistogram, cada potencia de dos se divide en 8 subcubetas,
+ * por lo que cualquier valor se registra con un error relativo menor al 12.5%
+ * usando un arreglo fijo de 512 contadores, sin importar el rango de valores.
+ * Registrar un valor es una operacion atomica sin candados.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class LatencyHistogram {
+    
+    /** Bits de subcubeta por potencia de dos */
+    private static final int SUB_BUCKET_BITS = 3;
+    
+    /** Subcubetas por potencia de dos */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    /** Numero total de cubetas, suficiente para cualquier long positivo */
+    private static final int BUCKET_COUNT = 64 * SUB_BUCKETS;
+    
+    /** Conteo de valores por cubeta */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    
+    /** Numero de valores registrados */
+    private final LongAdder count = new LongAdder();
+    
+    /** Suma de los valores registrados */
+    private final LongAdder sum = new LongAdder();
+    
+    /** El mayor valor registrado */
+    private final AtomicLong max = new AtomicLong();
+    
+    LatencyHistogram() {
+    }
+    
+    /**
+    * Registra una latencia.
+    * 
+    * @param nanos La latencia en nanosegundos
+    */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(indexFor(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+    
+    /**
+    * Registra el tiempo transcurrido desde un instante tomado con System.nanoTime().
+    * 
+    * @param startNanos El instante inicial
+    * @return La latencia registrada en nanosegundos
+    */
+    public long recordSince(long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        record(elapsed);
+        return elapsed;
+    }
+    
+    /**
+    * Obtiene el numero de valores registrados.
+    * 
+    * @return El numero de valores
+    */
+    public long getCount() {
+        return count.sum();
+    }
+    
+    /**
+    * Obtiene la media de los valores registrados.
+    * 
+    * @return La media en nanosegundos, o 0 si no hay valores
+    */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+    
+    /**
+    * Obtiene el mayor valor registrado.
+    * 
+    * @return El maximo en nanosegundos
+    */
+    public long getMax() {
+        return max.get();
+    }
+    
+    /**
+    * Estima un percentil de los valores registrados.
+    * 
+    * @param percentile El percentil entre 0 y 100
+    * @return El valor estimado en nanosegundos, o 0 si no hay valores
+    */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                // Punto medio de la cubeta, sin superar el maximo observado
+                long lower = lowerBound(i);
+                long upper = i + 1 < BUCKET_COUNT ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(lower + (upper - lower) / 2, getMax());
+            }
+        }
+        return getMax();
+    }
+    
+    /**
+    * Calcula la cubeta de un valor.
+    */
+    static int indexFor(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+    
+    /**
+    * Calcula el menor valor que cae en una cubeta.
+    */
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+    
+    /**
+    * Genera un resumen del histograma en microsegundos.
+    * 
+    * @return El resumen como una cadena
+    */
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+            getCount(),
+            getMean() / 1000.0,
+            getPercentile(50) / 1000.0,
+            getPercentile(90) / 1000.0,
+            getPercentile(99) / 1000.0,
+            getMax() / 1000.0);
+    }
+}
\ No newline at end of file
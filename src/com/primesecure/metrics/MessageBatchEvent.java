@@ -0,0 +1,70 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder para un lote de mensajes procesado en paralelo.
+ * <p>
+ * La parte de cada trabajador se registra aparte con {@link MessageWorkerEvent}.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+@Name("com.primesecure.MessageBatch")
+@Label("Message Batch")
+@Category({"PrimeSecure", "Messages"})
+@Description("Lote de mensajes encriptado o desencriptado en paralelo")
+public final class MessageBatchEvent extends Event {
+    
+    @Label("Encrypt")
+    private boolean encrypt;
+    
+    @Label("Messages")
+    private int messageCount;
+    
+    @Label("Workers")
+    private int workerCount;
+    
+    @Label("Chunk Size")
+    private int chunkSize;
+    
+    /**
+    * Crea el evento y comienza a medir su duracion.
+    * <p>
+    * Solo debe crearse si {@link FlightRecording#isActive()} es true.
+    * </p>
+    */
+    public MessageBatchEvent() {
+        begin();
+    }
+    
+    /**
+    * Completa el evento y lo registra si la grabacion lo requiere.
+    * 
+    * @param encrypt Indicador de si se encripto (true) o desencripto (false)
+    * @param messageCount El numero de mensajes del lote
+    * @param workerCount El numero de trabajadores utilizados
+    * @param chunkSize El numero de mensajes por bloque
+    */
+    public void complete(boolean encrypt, int messageCount, int workerCount, int chunkSize) {
+        end();
+        if (shouldCommit()) {
+            this.encrypt = encrypt;
+            this.messageCount = messageCount;
+            this.workerCount = workerCount;
+            this.chunkSize = chunkSize;
+            commit();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder para la parte de un lote procesada por un trabajador.
+ * <p>
+ * Comparar los bloques reclamados por cada trabajador de un mismo lote muestra
+ * si la carga quedo repartida de forma pareja.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+@Name("com.primesecure.MessageWorker")
+@Label("Message Worker")
+@Category({"PrimeSecure", "Messages"})
+@Description("Bloques de un lote de mensajes procesados por un trabajador")
+public final class MessageWorkerEvent extends Event {
+    
+    @Label("Chunks Claimed")
+    private int chunksClaimed;
+    
+    @Label("Messages")
+    private int messageCount;
+    
+    /**
+    * Crea el evento y comienza a medir su duracion.
+    * <p>
+    * Solo debe crearse si {@link FlightRecording#isActive()} es true.
+    * </p>
+    */
+    public MessageWorkerEvent() {
+        begin();
+    }
+    
+    /**
+    * Completa el evento y lo registra si la grabacion lo requiere.
+    * 
+    * @param chunksClaimed El numero de bloques reclamados por el trabajador
+    * @param messageCount El numero de mensajes procesados por el trabajador
+    */
+    public void complete(int chunksClaimed, int messageCount) {
+        end();
+        if (shouldCommit()) {
+            this.chunksClaimed = chunksClaimed;
+            this.messageCount = messageCount;
+            commit();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.metrics;
+
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+/**
+ * MBean dinamico que expone un registro de metricas por JMX.
+ * <p>
+ * Cada metrica de la instantanea del registro aparece como un atributo de solo
+ * lectura; como los subsistemas crean metricas bajo demanda, la lista de
+ * atributos se calcula en cada consulta.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+final class MetricsMBean implements DynamicMBean {
+    
+    /** El registro expuesto */
+    private final MetricsRegistry registry;
+    
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+    
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Number value = registry.snapshot().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException("Metrica desconocida: " + attribute);
+        }
+        return value;
+    }
+    
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Las metricas son de solo lectura: " + attribute.getName());
+    }
+    
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Number> snapshot = registry.snapshot();
+        AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            Number value = snapshot.get(name);
+            if (value != null) {
+                list.add(new Attribute(name, value));
+            }
+        }
+        return list;
+    }
+    
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+    
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("getStatistics".equals(actionName)) {
+            return registry.getStatistics();
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName), "Operacion desconocida: " + actionName);
+    }
+    
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Number> snapshot = registry.snapshot();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot.size()];
+        int i = 0;
+        for (Map.Entry<String, Number> entry : snapshot.entrySet()) {
+            attributes[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                entry.getKey(), true, false, false);
+        }
+        MBeanOperationInfo[] operations = {
+            new MBeanOperationInfo("getStatistics", "Resumen legible de todas las metricas",
+                new MBeanParameterInfo[0], String.class.getName(), MBeanOperationInfo.INFO)
+        };
+        return new MBeanInfo(MetricsRegistry.class.getName(), "Metricas de PrimeSecure",
+            attributes, null, operations, null);
+    }
+}
\ No newline at end of file
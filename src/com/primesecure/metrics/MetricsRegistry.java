@@ -0,0 +1,238 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registro central de metricas de la aplicacion.
+ * <p>
+ * Mantiene contadores, histogramas de latencia y medidores identificados por
+ * nombre. Los subsistemas obtienen sus metricas una sola vez (normalmente en un
+ * campo estatico) y las actualizan en las rutas criticas sin candados. El
+ * registro puede publicarse como un MBean de JMX y volcar periodicamente una
+ * instantanea de todas las metricas a un flujo de salida.
+ * </p>
+ * <p>
+ * Las propiedades del sistema {@code primesecure.metrics.jmx=true} y
+ * {@code primesecure.metrics.dumpInterval=<segundos>} activan ambas funciones
+ * al llamar a {@link #configureFromSystemProperties()}.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class MetricsRegistry {
+    
+    /** Nombre JMX con el que se publica el registro por defecto */
+    public static final String OBJECT_NAME = "com.primesecure:type=Metrics";
+    
+    /** El registro compartido por toda la aplicacion */
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+    
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    
+    /** Programador del volcado periodico, o null si no esta activo */
+    private ScheduledExecutorService dumpScheduler;
+    
+    /** Tarea del volcado periodico, o null si no esta activa */
+    private ScheduledFuture<?> dumpTask;
+    
+    /** Nombre JMX registrado, o null si el registro no esta publicado */
+    private ObjectName registeredName;
+    
+    /**
+    * Crea un registro vacio.
+    */
+    public MetricsRegistry() {
+    }
+    
+    /**
+    * Obtiene el registro compartido por toda la aplicacion.
+    * 
+    * @return El registro por defecto
+    */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+    
+    /**
+    * Obtiene un contador, creandolo si no existe.
+    * 
+    * @param name El nombre del contador
+    * @return El contador con ese nombre
+    */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+    
+    /**
+    * Obtiene un histograma de latencias, creandolo si no existe.
+    * 
+    * @param name El nombre del histograma
+    * @return El histograma con ese nombre
+    */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+    
+    /**
+    * Registra un medidor cuyo valor se consulta al tomar cada instantanea.
+    * <p>
+    * Si ya existia un medidor con el mismo nombre, se reemplaza.
+    * </p>
+    * 
+    * @param name El nombre del medidor
+    * @param supplier La funcion que obtiene el valor actual
+    */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+    
+    /**
+    * Elimina un medidor registrado.
+    * 
+    * @param name El nombre del medidor
+    */
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+    
+    /**
+    * Toma una instantanea de todas las metricas.
+    * <p>
+    * Los contadores y medidores aparecen con su nombre; cada histograma aparece
+    * como varias entradas con los sufijos {@code .count}, {@code .mean},
+    * {@code .p50}, {@code .p90}, {@code .p99} y {@code .max}, en nanosegundos.
+    * </p>
+    * 
+    * @return Las metricas ordenadas por nombre
+    */
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.get()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> {
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".mean", histogram.getMean());
+            values.put(name + ".p50", histogram.getPercentile(50));
+            values.put(name + ".p90", histogram.getPercentile(90));
+            values.put(name + ".p99", histogram.getPercentile(99));
+            values.put(name + ".max", histogram.getMax());
+        });
+        return values;
+    }
+    
+    /**
+    * Genera un resumen legible de todas las metricas.
+    * 
+    * @return Las metricas como una cadena, una por linea
+    */
+    public String getStatistics() {
+        Map<String, String> lines = new TreeMap<>();
+        counters.forEach((name, counter) -> lines.put(name, String.valueOf(counter.get())));
+        gauges.forEach((name, gauge) -> lines.put(name, String.valueOf(gauge.getAsLong())));
+        histograms.forEach((name, histogram) -> lines.put(name, histogram.toString()));
+        
+        StringBuilder sb = new StringBuilder();
+        lines.forEach((name, value) -> sb.append(name).append(": ").append(value).append('\n'));
+        return sb.toString();
+    }
+    
+    /**
+    * Publica el registro como un MBean en el servidor de plataforma.
+    * <p>
+    * Llamar a este metodo mas de una vez no tiene efecto.
+    * </p>
+    * 
+    * @throws IllegalStateException Si el MBean no puede registrarse
+    */
+    public synchronized void registerMBean() {
+        if (registeredName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMBean(this), name);
+            }
+            registeredName = name;
+        } catch (JMException e) {
+            throw new IllegalStateException("No se pudo registrar el MBean de metricas: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+    * Inicia el volcado periodico de instantaneas a un flujo de salida.
+    * <p>
+    * Si ya habia un volcado activo, se reemplaza.
+    * </p>
+    * 
+    * @param period El intervalo entre volcados
+    * @param unit La unidad del intervalo
+    * @param out El flujo donde se escriben las instantaneas
+    */
+    public synchronized void startPeriodicDump(long period, TimeUnit unit, PrintStream out) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("El intervalo debe ser mayor que cero");
+        }
+        stopPeriodicDump();
+        dumpScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "MetricsDump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpTask = dumpScheduler.scheduleAtFixedRate(
+            () -> out.print("=== Metricas PrimeSecure ===\n" + getStatistics()),
+            period, period, unit);
+    }
+    
+    /**
+    * Detiene el volcado periodico si esta activo.
+    */
+    public synchronized void stopPeriodicDump() {
+        if (dumpTask != null) {
+            dumpTask.cancel(false);
+            dumpScheduler.shutdown();
+            dumpTask = null;
+            dumpScheduler = null;
+        }
+    }
+    
+    /**
+    * Activa JMX y el volcado periodico segun las propiedades del sistema.
+    * <p>
+    * {@code primesecure.metrics.jmx=true} publica el MBean y
+    * {@code primesecure.metrics.dumpInterval} indica cada cuantos segundos se
+    * escribe una instantanea en la salida de error.
+    * </p>
+    */
+    public void configureFromSystemProperties() {
+        if (Boolean.getBoolean("primesecure.metrics.jmx")) {
+            registerMBean();
+        }
+        long interval = Long.getLong("primesecure.metrics.dumpInterval", 0L);
+        if (interval > 0) {
+            startPeriodicDump(interval, TimeUnit.SECONDS, System.err);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder para una busqueda de primos completa.
+ * <p>
+ * Cubre la division del rango, la ejecucion de todos los hilos y la espera
+ * de sus resultados. Cada segmento se registra aparte con
+ * {@link PrimeSegmentEvent}, lo que permite comparar la duracion de los
+ * segmentos con la del trabajo completo para detectar desbalance de carga.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+@Name("com.primesecure.PrimeSearch")
+@Label("Prime Search")
+@Category({"PrimeSecure", "Primes"})
+@Description("Busqueda de numeros primos en un rango usando multiples hilos")
+public final class PrimeSearchEvent extends Event {
+    
+    @Label("Range Start")
+    private long rangeStart;
+    
+    @Label("Range End")
+    private long rangeEnd;
+    
+    @Label("Threads")
+    private int threadCount;
+    
+    @Label("Primes Found")
+    private long primesFound;
+    
+    /**
+    * Crea el evento y comienza a medir su duracion.
+    * <p>
+    * Solo debe crearse si {@link FlightRecording#isActive()} es true.
+    * </p>
+    */
+    public PrimeSearchEvent() {
+        begin();
+    }
+    
+    /**
+    * Completa el evento y lo registra si la grabacion lo requiere.
+    * 
+    * @param rangeStart El inicio del rango (inclusive)
+    * @param rangeEnd El fin del rango (inclusive)
+    * @param threadCount El numero de hilos utilizados
+    * @param primesFound El numero de primos encontrados
+    */
+    public void complete(long rangeStart, long rangeEnd, int threadCount, long primesFound) {
+        end();
+        if (shouldCommit()) {
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+            this.threadCount = threadCount;
+            this.primesFound = primesFound;
+            commit();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder para el segmento del rango revisado por un hilo.
+ * <p>
+ * JFR registra automaticamente el hilo que emite el evento.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+@Name("com.primesecure.PrimeSegment")
+@Label("Prime Search Segment")
+@Category({"PrimeSecure", "Primes"})
+@Description("Segmento de una busqueda de primos revisado por un hilo")
+public final class PrimeSegmentEvent extends Event {
+    
+    @Label("Segment Start")
+    private long segmentStart;
+    
+    @Label("Segment End")
+    private long segmentEnd;
+    
+    @Label("Primes Found")
+    private long primesFound;
+    
+    /**
+    * Crea el evento y comienza a medir su duracion.
+    * <p>
+    * Solo debe crearse si {@link FlightRecording#isActive()} es true.
+    * </p>
+    */
+    public PrimeSegmentEvent() {
+        begin();
+    }
+    
+    /**
+    * Completa el evento y lo registra si la grabacion lo requiere.
+    * 
+    * @param segmentStart El inicio del segmento (inclusive)
+    * @param segmentEnd El fin del segmento (inclusive)
+    * @param primesFound El numero de primos encontrados en el segmento
+    */
+    public void complete(long segmentStart, long segmentEnd, long primesFound) {
+        end();
+        if (shouldCommit()) {
+            this.segmentStart = segmentStart;
+            this.segmentEnd = segmentEnd;
+            this.primesFound = primesFound;
+            commit();
+        }
+    }
+}
\ No newline at end of file
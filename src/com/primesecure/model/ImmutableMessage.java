@@ -0,0 +1,183 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.model;
+
+import com.primesecure.security.PrimeDecoder;
+import com.primesecure.security.PrimeEncoder;
+import java.io.Serializable;
+
+/**
+ * Representa un mensaje seguro inmutable con ambas formas de su contenido.
+ * <p>
+ * A diferencia de {@link Message}, esta clase nunca modifica su contenido:
+ * conserva el texto con el que fue creada (plano o encriptado) y calcula la
+ * otra forma solo la primera vez que se solicita, guardandola para los
+ * accesos siguientes. Asi un mismo mensaje puede mostrarse, exportarse y
+ * enviarse sin repetir la transformacion, y puede compartirse entre hilos
+ * sin sincronizacion.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class ImmutableMessage implements Serializable {
+    
+    /** UID de serializacion */
+    private static final long serialVersionUID = 1L;
+    
+    /** El contenido con el que se creo el mensaje */
+    private final String content;
+    
+    /** Indicador de si el contenido original esta encriptado */
+    private final boolean contentEncrypted;
+    
+    /** El remitente del mensaje */
+    private final String sender;
+    
+    /** El destinatario del mensaje */
+    private final String recipient;
+    
+    /** El codigo primo usado para encriptacion/desencriptacion */
+    private final int primeCode;
+    
+    /**
+    * La forma del contenido calculada bajo demanda.
+    * <p>
+    * No necesita ser volatile: String es inmutable y el calculo es determinista,
+    * por lo que en el peor caso dos hilos calculan el mismo valor.
+    * </p>
+    */
+    private transient String derived;
+    
+    private ImmutableMessage(String content, boolean contentEncrypted, String sender,
+                             String recipient, int primeCode) {
+        this.content = content;
+        this.contentEncrypted = contentEncrypted;
+        this.sender = sender;
+        this.recipient = recipient;
+        this.primeCode = primeCode;
+    }
+    
+    /**
+    * Crea un mensaje inmutable a partir de texto plano.
+    * 
+    * @param plainText El contenido en texto plano
+    * @param sender El remitente del mensaje
+    * @param recipient El destinatario del mensaje
+    * @param primeCode El codigo primo a usar para encriptacion/desencriptacion
+    * @return El mensaje inmutable
+    */
+    public static ImmutableMessage ofPlainText(String plainText, String sender, String recipient, int primeCode) {
+        return new ImmutableMessage(plainText, false, sender, recipient, primeCode);
+    }
+    
+    /**
+    * Crea un mensaje inmutable a partir de texto ya encriptado.
+    * 
+    * @param cipherText El contenido encriptado
+    * @param sender El remitente del mensaje
+    * @param recipient El destinatario del mensaje
+    * @param primeCode El codigo primo usado para encriptar el contenido
+    * @return El mensaje inmutable
+    */
+    public static ImmutableMessage ofCipherText(String cipherText, String sender, String recipient, int primeCode) {
+        return new ImmutableMessage(cipherText, true, sender, recipient, primeCode);
+    }
+    
+    /**
+    * Crea un mensaje inmutable con el estado actual de un mensaje mutable.
+    * 
+    * @param message El mensaje a copiar
+    * @return El mensaje inmutable
+    */
+    public static ImmutableMessage from(Message message) {
+        return new ImmutableMessage(message.getContent(), message.isEncrypted(),
+            message.getSender(), message.getRecipient(), message.getPrimeCode());
+    }
+    
+    /**
+    * Obtiene el contenido en texto plano, desencriptandolo en el primer acceso si es necesario.
+    * 
+    * @return El contenido en texto plano
+    */
+    public String getPlainText() {
+        return contentEncrypted ? derived() : content;
+    }
+    
+    /**
+    * Obtiene el contenido encriptado, encriptandolo en el primer acceso si es necesario.
+    * 
+    * @return El contenido encriptado
+    */
+    public String getCipherText() {
+        return contentEncrypted ? content : derived();
+    }
+    
+    /**
+    * Obtiene la forma calculada del contenido, calculandola una sola vez.
+    */
+    private String derived() {
+        String result = derived;
+        if (result == null && content != null) {
+            result = contentEncrypted
+                ? new PrimeDecoder().decode(content, primeCode)
+                : new PrimeEncoder().encode(content, primeCode);
+            derived = result;
+        }
+        return result;
+    }
+    
+    /**
+    * Crea un mensaje mutable equivalente en el estado solicitado.
+    * <p>
+    * Util para reutilizar las operaciones existentes de exportacion y procesamiento.
+    * </p>
+    * 
+    * @param encrypted Indicador de si el mensaje creado debe estar encriptado
+    * @return Un nuevo mensaje mutable
+    */
+    public Message toMessage(boolean encrypted) {
+        return new Message(encrypted ? getCipherText() : getPlainText(),
+            sender, recipient, primeCode, encrypted);
+    }
+    
+    /**
+    * Obtiene el remitente del mensaje.
+    * 
+    * @return El identificador del remitente
+    */
+    public String getSender() {
+        return sender;
+    }
+    
+    /**
+    * Obtiene el destinatario del mensaje.
+    * 
+    * @return El identificador del destinatario
+    */
+    public String getRecipient() {
+        return recipient;
+    }
+    
+    /**
+    * Obtiene el codigo primo usado para encriptacion/desencriptacion.
+    * 
+    * @return El codigo de numero primo
+    */
+    public int getPrimeCode() {
+        return primeCode;
+    }
+    
+    /**
+    * Verifica si el mensaje fue creado a partir de texto encriptado.
+    * 
+    * @return true si el contenido original esta encriptado
+    */
+    public boolean isCreatedEncrypted() {
+        return contentEncrypted;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Lista de numeros primos de 64 bits guardada en un arreglo de long.
+ * <p>
+ * A diferencia de {@link PrimesList}, no guarda cada valor como un objeto, por
+ * lo que ocupa 8 bytes por primo y admite valores mayores que Integer.MAX_VALUE.
+ * Las altas mediante {@link #add(Long)} verifican la primalidad igual que
+ * PrimesList; {@link #append(long)} omite la verificacion y esta pensado para
+ * las cribas, cuyos resultados ya son primos y pueden ser millones.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public class LongPrimesList extends AbstractList<Long> implements RandomAccess {
+    
+    /** Los primos guardados; solo las primeras size posiciones son validas */
+    private long[] values;
+    
+    /** La cantidad de primos guardados */
+    private int size;
+    
+    /**
+    * Crea una nueva lista vacia de numeros primos.
+    */
+    public LongPrimesList() {
+        this(16);
+    }
+    
+    /**
+    * Crea una nueva lista vacia con una capacidad inicial.
+    * 
+    * @param initialCapacity La cantidad de primos que caben sin ampliar el arreglo
+    */
+    public LongPrimesList(int initialCapacity) {
+        this.values = new long[Math.max(1, initialCapacity)];
+    }
+    
+    /**
+    * Agrega un numero a la lista solo si es primo.
+    * 
+    * @param number El numero a agregar
+    * @return true si el numero fue agregado (es primo)
+    * @throws IllegalArgumentException si el numero no es primo
+    */
+    @Override
+    public boolean add(Long number) {
+        if (!PrimesList.isPrime(number)) {
+            throw new IllegalArgumentException("El numero " + number + " no es primo");
+        }
+        append(number);
+        return true;
+    }
+    
+    /**
+    * Agrega un primo sin verificarlo.
+    * 
+    * @param prime El primo a agregar, ya verificado por quien llama
+    */
+    public void append(long prime) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[size++] = prime;
+    }
+    
+    /**
+    * Agrega todos los primos de otra lista, conservando su orden.
+    * 
+    * @param other La lista cuyos primos se agregan
+    */
+    public void appendAll(LongPrimesList other) {
+        if (size + other.size > values.length) {
+            values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+        }
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+    }
+    
+    /**
+    * Obtiene un primo sin convertirlo a objeto.
+    * 
+    * @param index La posicion del primo
+    * @return El primo en esa posicion
+    */
+    public long getLong(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Indice " + index + " fuera de rango para tamaño " + size);
+        }
+        return values[index];
+    }
+    
+    /**
+    * Obtiene el arreglo interno, valido solo en sus primeras size posiciones.
+    * 
+    * @return El arreglo con los primos
+    */
+    long[] values() {
+        return values;
+    }
+    
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public void clear() {
+        size = 0;
+    }
+    
+    /**
+    * Obtiene la cantidad de numeros primos en la lista.
+    * 
+    * @return La cantidad de numeros primos en la lista
+    */
+    public int getPrimesCount() {
+        return size;
+    }
+}
\ No newline at end of file
@@ -50,11 +50,28 @@ public class Message implements Serializable {
     * @param primeCode El codigo primo a usar para encriptacion/desencriptacion
     */
     public Message(String content, String sender, String recipient, int primeCode) {
+        this(content, sender, recipient, primeCode, false);
+    }
+    
+    /**
+    * Crea un mensaje con un estado de encriptacion explicito.
+    * <p>
+    * Este constructor se usa al restaurar mensajes previamente exportados,
+    * donde el contenido puede estar ya encriptado con el codigo primo.
+    * </p>
+    * 
+    * @param content El contenido del mensaje (en texto plano o encriptado)
+    * @param sender El remitente del mensaje
+    * @param recipient El destinatario del mensaje
+    * @param primeCode El codigo primo a usar para encriptacion/desencriptacion
+    * @param encrypted Indicador de si el contenido ya esta encriptado
+    */
+    public Message(String content, String sender, String recipient, int primeCode, boolean encrypted) {
         this.content = content;
         this.sender = sender;
         this.recipient = recipient;
         this.primeCode = primeCode;
-        this.encrypted = false;
+        this.encrypted = encrypted;
     }
     
     /**
@@ -80,8 +97,22 @@ public class Message implements Serializable {
     * @see com.primesecure.security.PrimeEncoder
     */
     public void encrypt() {
+        encrypt(new com.primesecure.security.PrimeEncoder());
+    }
+    
+    /**
+    * Encripta el contenido del mensaje usando un codificador existente.
+    * <p>
+    * Permite que un mismo hilo encripte muchos mensajes reutilizando el
+    * codificador y su buffer de trabajo.
+    * </p>
+    * 
+    * @param encoder El codificador a utilizar
+    * @see com.primesecure.security.PrimeEncoder
+    */
+    public void encrypt(com.primesecure.security.PrimeEncoder encoder) {
         if (!encrypted) {
-            this.content = new com.primesecure.security.PrimeEncoder().encode(content, primeCode);
+            this.content = encoder.encode(content, primeCode);
             this.encrypted = true;
         }
     }
@@ -96,12 +127,45 @@ public class Message implements Serializable {
     * @see com.primesecure.security.PrimeDecoder
     */
     public void decrypt() {
+        decrypt(new com.primesecure.security.PrimeDecoder());
+    }
+    
+    /**
+    * Desencripta el contenido del mensaje usando un decodificador existente.
+    * <p>
+    * Permite que un mismo hilo desencripte muchos mensajes reutilizando el
+    * decodificador y su buffer de trabajo.
+    * </p>
+    * 
+    * @param decoder El decodificador a utilizar
+    * @see com.primesecure.security.PrimeDecoder
+    */
+    public void decrypt(com.primesecure.security.PrimeDecoder decoder) {
         if (encrypted) {
-            this.content = new com.primesecure.security.PrimeDecoder().decode(content, primeCode);
+            this.content = decoder.decode(content, primeCode);
             this.encrypted = false;
         }
     }
     
+    /**
+    * Cambia el codigo primo del mensaje.
+    * <p>
+    * Si el mensaje esta encriptado, el contenido pasa a estar encriptado con
+    * el nuevo codigo en una sola pasada, sin quedar en texto plano.
+    * </p>
+    * 
+    * @param newPrimeCode El nuevo codigo primo
+    */
+    public void rekey(int newPrimeCode) {
+        if (encrypted && content != null && !content.isEmpty()) {
+            char[] chars = content.toCharArray();
+            com.primesecure.security.CipherTable.forRekey(primeCode, newPrimeCode)
+                .apply(chars, 0, chars, 0, chars.length, 0);
+            this.content = new String(chars);
+        }
+        this.primeCode = newPrimeCode;
+    }
+    
     /**
     * Obtiene el contenido del mensaje.
     * 
@@ -0,0 +1,238 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.model;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Lista de numeros primos de 64 bits guardada fuera del heap de Java.
+ * <p>
+ * Los primos se guardan en paginas de 8 MB reservadas con la API de memoria
+ * externa ({@link Arena} y {@link MemorySegment}), por lo que la lista admite
+ * mas de 2^31 primos con indices long y el recolector de basura no recorre ni
+ * copia sus datos. Cada primo ocupa 8 bytes en little-endian.
+ * </p>
+ * <p>
+ * Con {@link #createMapped(Path)} las paginas son regiones mapeadas de un
+ * archivo: los primos se escriben directamente en el archivo y al cerrar la
+ * lista queda un archivo binario listo, sin copiar nada. Para la lista en
+ * memoria, {@link #writeTo(Path)} escribe las paginas al archivo sin pasarlas
+ * por arreglos del heap.
+ * </p>
+ * <p>
+ * Las altas estan sincronizadas, de modo que varios productores pueden
+ * agregar bloques completos con {@link #appendAll(LongPrimesList)}; el orden
+ * final es el orden de las llamadas. Las lecturas no se sincronizan y deben
+ * hacerse despues de que los productores terminen. La memoria se libera al
+ * cerrar la lista; despues de cerrarla cualquier acceso falla.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class OffHeapPrimesList implements AutoCloseable {
+    
+    /** Primos por pagina, como potencia de dos */
+    private static final int PAGE_SHIFT = 20;
+    
+    /** Primos por pagina: 2^20, es decir 8 MB */
+    private static final long PAGE_PRIMES = 1L << PAGE_SHIFT;
+    
+    /** Bytes por pagina */
+    private static final long PAGE_BYTES = PAGE_PRIMES * Long.BYTES;
+    
+    /** Formato de cada primo, independiente de la plataforma */
+    private static final ValueLayout.OfLong PRIME_LAYOUT =
+        ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    
+    /** Administra la vida de todas las paginas */
+    private final Arena arena;
+    
+    /** El archivo de respaldo, o null si la lista vive en memoria */
+    private final FileChannel file;
+    
+    /** Las paginas reservadas, en orden */
+    private final List<MemorySegment> pages = new ArrayList<>();
+    
+    /** La cantidad de primos guardados */
+    private volatile long size;
+    
+    private OffHeapPrimesList(FileChannel file) {
+        this.arena = Arena.ofShared();
+        this.file = file;
+    }
+    
+    /**
+    * Crea una lista vacia en memoria fuera del heap.
+    * 
+    * @return La lista, que debe cerrarse para liberar la memoria
+    */
+    public static OffHeapPrimesList create() {
+        return new OffHeapPrimesList(null);
+    }
+    
+    /**
+    * Crea una lista vacia respaldada por un archivo, que se reemplaza si existe.
+    * <p>
+    * Al cerrar la lista el archivo queda con exactamente 8 bytes por primo.
+    * </p>
+    * 
+    * @param path El archivo donde se guardan los primos
+    * @return La lista, que debe cerrarse para completar el archivo
+    * @throws IOException Si no se puede crear el archivo
+    */
+    public static OffHeapPrimesList createMapped(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new OffHeapPrimesList(channel);
+    }
+    
+    /**
+    * Agrega un primo sin verificarlo.
+    * 
+    * @param prime El primo a agregar, ya verificado por quien llama
+    * @throws IOException Si no se puede ampliar el archivo de respaldo
+    */
+    public synchronized void append(long prime) throws IOException {
+        long index = size;
+        page(index).set(PRIME_LAYOUT, (index & (PAGE_PRIMES - 1)) * Long.BYTES, prime);
+        size = index + 1;
+    }
+    
+    /**
+    * Agrega todos los primos de una lista del heap como un bloque contiguo.
+    * 
+    * @param primes Los primos a agregar, en orden
+    * @throws IOException Si no se puede ampliar el archivo de respaldo
+    */
+    public synchronized void appendAll(LongPrimesList primes) throws IOException {
+        long[] values = primes.values();
+        int copied = 0;
+        long index = size;
+        while (copied < primes.size()) {
+            long offset = index & (PAGE_PRIMES - 1);
+            int count = (int) Math.min(primes.size() - copied, PAGE_PRIMES - offset);
+            MemorySegment.copy(values, copied, page(index), PRIME_LAYOUT, offset * Long.BYTES, count);
+            copied += count;
+            index += count;
+        }
+        size = index;
+    }
+    
+    /**
+    * Obtiene un primo.
+    * 
+    * @param index La posicion del primo
+    * @return El primo en esa posicion
+    */
+    public long getLong(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Indice " + index + " fuera de rango para tamaño " + size);
+        }
+        return pages.get((int) (index >>> PAGE_SHIFT)).get(PRIME_LAYOUT, (index & (PAGE_PRIMES - 1)) * Long.BYTES);
+    }
+    
+    /**
+    * Obtiene la cantidad de primos guardados.
+    * 
+    * @return La cantidad de primos
+    */
+    public long size() {
+        return size;
+    }
+    
+    /**
+    * Ejecuta una accion con cada primo, en orden.
+    * 
+    * @param action La accion a ejecutar
+    */
+    public void forEach(LongConsumer action) {
+        long remaining = size;
+        for (int p = 0; remaining > 0; p++) {
+            MemorySegment page = pages.get(p);
+            long count = Math.min(remaining, PAGE_PRIMES);
+            for (long i = 0; i < count; i++) {
+                action.accept(page.get(PRIME_LAYOUT, i * Long.BYTES));
+            }
+            remaining -= count;
+        }
+    }
+    
+    /**
+    * Escribe los primos en un archivo binario, 8 bytes little-endian por primo.
+    * <p>
+    * Las paginas se entregan al canal como buffers directos sobre la misma
+    * memoria, sin copiarlas al heap.
+    * </p>
+    * 
+    * @param path El archivo destino, que se reemplaza si existe
+    * @throws IOException Si falla la escritura
+    */
+    public synchronized void writeTo(Path path) throws IOException {
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long remaining = size * Long.BYTES;
+            for (int p = 0; remaining > 0; p++) {
+                long bytes = Math.min(remaining, PAGE_BYTES);
+                ByteBuffer buffer = pages.get(p).asSlice(0, bytes).asByteBuffer();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                remaining -= bytes;
+            }
+        }
+    }
+    
+    /**
+    * Libera la memoria y, si la lista tiene archivo, lo recorta a los primos guardados.
+    * 
+    * @throws IOException Si falla el cierre del archivo
+    */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!arena.scope().isAlive()) {
+            return;
+        }
+        if (file != null) {
+            for (MemorySegment page : pages) {
+                page.force();
+            }
+        }
+        arena.close();
+        pages.clear();
+        if (file != null) {
+            // Las paginas mapeadas ampliaron el archivo a un multiplo del tamaño de pagina
+            try (file) {
+                file.truncate(size * Long.BYTES);
+            }
+        }
+    }
+    
+    /**
+    * Obtiene la pagina de una posicion, reservandola si es la siguiente.
+    */
+    private MemorySegment page(long index) throws IOException {
+        int p = (int) (index >>> PAGE_SHIFT);
+        if (p == pages.size()) {
+            pages.add(file == null
+                ? arena.allocate(PAGE_BYTES, Long.BYTES)
+                : file.map(FileChannel.MapMode.READ_WRITE, p * PAGE_BYTES, PAGE_BYTES, arena));
+        }
+        return pages.get(p);
+    }
+}
\ No newline at end of file
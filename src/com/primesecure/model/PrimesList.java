@@ -21,6 +21,9 @@ import java.util.ArrayList;
  */
 public class PrimesList extends ArrayList<Integer> {
     
+    /** Bases de Miller-Rabin suficientes para cualquier valor de 64 bits */
+    private static final int[] MILLER_RABIN_BASES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
+    
     /**
     * Crea una nueva lista vacia de numeros primos.
     */
@@ -90,7 +93,8 @@ public class PrimesList extends ArrayList<Integer> {
             return false;
         }
         
-        for (int i = 5; i * i <= number; i += 6) {
+        // i <= number / i evita que i * i desborde cerca de Integer.MAX_VALUE
+        for (int i = 5; i <= number / i; i += 6) {
             if (number % i == 0 || number % (i + 2) == 0) {
                 return false;
             }
@@ -99,6 +103,126 @@ public class PrimesList extends ArrayList<Integer> {
         return true;
     }
     
+    /**
+    * Verifica si un numero de 64 bits es primo.
+    * <p>
+    * Los valores del rango de int usan {@link #isPrime(int)}; los mayores usan
+    * la prueba de Miller-Rabin con los doce primeros primos como bases, que es
+    * determinista para todo valor menor que 3.3 * 10^24 y por lo tanto para
+    * cualquier long.
+    * </p>
+    * 
+    * @param number El numero a verificar
+    * @return true si el numero es primo, false en caso contrario
+    */
+    public static boolean isPrime(long number) {
+        if (number <= Integer.MAX_VALUE) {
+            return isPrime((int) Math.max(number, 0));
+        }
+        if ((number & 1) == 0) {
+            return false;
+        }
+        for (int p : MILLER_RABIN_BASES) {
+            if (number % p == 0) {
+                return false;
+            }
+        }
+        
+        Montgomery montgomery = new Montgomery(number);
+        long d = number - 1;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>>= s;
+        
+        for (int base : MILLER_RABIN_BASES) {
+            long x = montgomery.pow(montgomery.toMontgomery(base), d);
+            if (x == montgomery.one || x == montgomery.minusOne) {
+                continue;
+            }
+            boolean composite = true;
+            for (int r = 1; r < s; r++) {
+                x = montgomery.multiply(x, x);
+                if (x == montgomery.minusOne) {
+                    composite = false;
+                    break;
+                }
+            }
+            if (composite) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+    * Aritmetica modular de Montgomery para un modulo impar menor que 2^63.
+    * <p>
+    * Permite multiplicar modulo n sin dividir un producto de 128 bits: los
+    * valores se representan como {@code x * 2^64 mod n}.
+    * </p>
+    */
+    private static final class Montgomery {
+        private final long modulus;
+        
+        /** -n^(-1) modulo 2^64 */
+        private final long negativeInverse;
+        
+        /** 2^128 modulo n, para convertir a la representacion de Montgomery */
+        private final long r2;
+        
+        /** 1 y n - 1 en la representacion de Montgomery */
+        private final long one;
+        private final long minusOne;
+        
+        Montgomery(long modulus) {
+            this.modulus = modulus;
+            // Newton: cada iteracion duplica los bits correctos del inverso
+            long inverse = modulus;
+            for (int i = 0; i < 5; i++) {
+                inverse *= 2 - modulus * inverse;
+            }
+            this.negativeInverse = -inverse;
+            
+            long r = Long.remainderUnsigned(-modulus, modulus);
+            long value = r;
+            for (int i = 0; i < 64; i++) {
+                value = addModulo(value, value);
+            }
+            this.r2 = value;
+            this.one = r;
+            this.minusOne = modulus - r;
+        }
+        
+        private long addModulo(long a, long b) {
+            long sum = a + b;
+            return Long.compareUnsigned(sum, modulus) >= 0 ? sum - modulus : sum;
+        }
+        
+        long toMontgomery(long value) {
+            return multiply(value % modulus, r2);
+        }
+        
+        long multiply(long a, long b) {
+            long low = a * b;
+            long high = Math.unsignedMultiplyHigh(a, b);
+            long m = low * negativeInverse;
+            // low + m * n es multiplo de 2^64; su mitad baja solo aporta acarreo si low != 0
+            long t = high + Math.unsignedMultiplyHigh(m, modulus) + (low != 0 ? 1 : 0);
+            return Long.compareUnsigned(t, modulus) >= 0 ? t - modulus : t;
+        }
+        
+        long pow(long base, long exponent) {
+            long result = one;
+            while (exponent != 0) {
+                if ((exponent & 1) != 0) {
+                    result = multiply(result, base);
+                }
+                base = multiply(base, base);
+                exponent >>>= 1;
+            }
+            return result;
+        }
+    }
+    
     /**
     * Obtiene la cantidad de numeros primos en la lista.
     * 
@@ -0,0 +1,410 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.security;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache concurrente y acotada de resultados de encriptacion y desencriptacion.
+ * <p>
+ * Muchos mensajes son plantillas que se repiten exactamente, por lo que guardar
+ * el resultado por (contenido, clave) evita repetir la transformacion. El peso
+ * de cada entrada es la longitud del texto original mas la del resultado, y la
+ * cache nunca supera el peso maximo configurado. Como la transformacion solo
+ * depende de {@code primeCode % 26}, los codigos primos con la misma clave
+ * comparten entradas.
+ * </p>
+ * <p>
+ * La cache se divide en segmentos con su propio candado para reducir la
+ * contencion. Dentro de cada segmento las entradas se ordenan por uso reciente;
+ * con la politica {@link EvictionPolicy#TINY_LFU} una entrada nueva solo
+ * desplaza a la menos reciente si se ha solicitado con mas frecuencia, lo que
+ * protege a los contenidos frecuentes de rafagas de contenidos unicos.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public class CipherCache {
+    
+    /**
+    * Politica de desalojo de entradas cuando se alcanza el peso maximo.
+    */
+    public enum EvictionPolicy {
+        /** Se desaloja la entrada usada hace mas tiempo */
+        LRU,
+        /** Como LRU, pero una entrada nueva solo se admite si es mas frecuente que la desalojada */
+        TINY_LFU
+    }
+    
+    /** Numero de segmentos (potencia de dos) */
+    private static final int SEGMENT_COUNT = 16;
+    
+    /** Los segmentos de la cache */
+    private final Segment[] segments;
+    
+    /** La politica de desalojo */
+    private final EvictionPolicy policy;
+    
+    /** Estimador de frecuencia usado por TINY_LFU, o null con LRU */
+    private final FrequencySketch sketch;
+    
+    /** El peso maximo total */
+    private final long maxWeight;
+    
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder rejectionCount = new LongAdder();
+    
+    /**
+    * Crea una nueva cache.
+    * 
+    * @param maxWeight El peso maximo total, en caracteres
+    * @param policy La politica de desalojo
+    */
+    public CipherCache(long maxWeight, EvictionPolicy policy) {
+        if (maxWeight < SEGMENT_COUNT) {
+            throw new IllegalArgumentException("El peso maximo debe ser al menos " + SEGMENT_COUNT);
+        }
+        this.maxWeight = maxWeight;
+        this.policy = policy;
+        this.sketch = policy == EvictionPolicy.TINY_LFU ? new FrequencySketch(maxWeight) : null;
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(maxWeight / SEGMENT_COUNT);
+        }
+    }
+    
+    /**
+    * Busca un resultado en la cache.
+    * 
+    * @param text El texto original
+    * @param primeCode El codigo primo usado como clave
+    * @param encode Indicador de si el resultado es de encriptacion (true) o desencriptacion (false)
+    * @return El resultado guardado, o null si no esta en la cache
+    */
+    public String get(String text, int primeCode, boolean encode) {
+        Key key = new Key(text, primeCode % 26, encode);
+        if (sketch != null) {
+            sketch.increment(key.hash);
+        }
+        
+        String value = segmentFor(key).get(key);
+        if (value != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+        return value;
+    }
+    
+    /**
+    * Guarda un resultado en la cache, desalojando entradas si es necesario.
+    * 
+    * @param text El texto original
+    * @param primeCode El codigo primo usado como clave
+    * @param encode Indicador de si el resultado es de encriptacion (true) o desencriptacion (false)
+    * @param value El resultado de la transformacion
+    */
+    public void put(String text, int primeCode, boolean encode, String value) {
+        Key key = new Key(text, primeCode % 26, encode);
+        segmentFor(key).put(key, value, text.length() + value.length());
+    }
+    
+    /**
+    * Elimina todas las entradas de la cache.
+    */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+    
+    private Segment segmentFor(Key key) {
+        // Mezclar los bits altos para repartir mejor las claves entre segmentos
+        int h = key.hash ^ (key.hash >>> 16);
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+    
+    /**
+    * Obtiene el numero de busquedas encontradas en la cache.
+    * 
+    * @return El numero de aciertos
+    */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+    
+    /**
+    * Obtiene el numero de busquedas no encontradas en la cache.
+    * 
+    * @return El numero de fallos
+    */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+    
+    /**
+    * Obtiene el numero de entradas desalojadas para liberar peso.
+    * 
+    * @return El numero de desalojos
+    */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+    
+    /**
+    * Obtiene el numero de entradas nuevas rechazadas por la politica TINY_LFU.
+    * 
+    * @return El numero de rechazos
+    */
+    public long getRejectionCount() {
+        return rejectionCount.sum();
+    }
+    
+    /**
+    * Calcula la proporcion de busquedas encontradas en la cache.
+    * 
+    * @return La tasa de aciertos entre 0 y 1
+    */
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+    
+    /**
+    * Obtiene el peso total de las entradas guardadas.
+    * 
+    * @return El peso actual, en caracteres
+    */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            weight += segment.getWeight();
+        }
+        return weight;
+    }
+    
+    /**
+    * Obtiene el numero de entradas guardadas.
+    * 
+    * @return El numero de entradas
+    */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+    
+    /**
+    * Genera un resumen de las metricas de la cache.
+    * 
+    * @return Las metricas como una cadena
+    */
+    public String getStatistics() {
+        return String.format(
+            "Politica: %s\n" +
+            "Entradas: %d (peso %d/%d)\n" +
+            "Aciertos: %d\n" +
+            "Fallos: %d\n" +
+            "Tasa de aciertos: %.2f%%\n" +
+            "Desalojos: %d\n" +
+            "Rechazos: %d",
+            policy,
+            size(), getWeight(), maxWeight,
+            getHitCount(),
+            getMissCount(),
+            getHitRatio() * 100,
+            getEvictionCount(),
+            getRejectionCount()
+        );
+    }
+    
+    /**
+    * Clave de la cache: texto, clave efectiva y direccion de la transformacion.
+    */
+    private static final class Key {
+        private final String text;
+        private final int cipherKey;
+        private final boolean encode;
+        private final int hash;
+        
+        Key(String text, int cipherKey, boolean encode) {
+            this.text = text;
+            this.cipherKey = cipherKey;
+            this.encode = encode;
+            this.hash = (text.hashCode() * 31 + cipherKey) * 2 + (encode ? 1 : 0);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && cipherKey == other.cipherKey
+                && encode == other.encode && text.equals(other.text);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+    
+    /**
+    * Un segmento de la cache con su propio candado y presupuesto de peso.
+    */
+    private final class Segment {
+        private final long maxSegmentWeight;
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long weight;
+        
+        Segment(long maxSegmentWeight) {
+            this.maxSegmentWeight = maxSegmentWeight;
+        }
+        
+        synchronized String get(Key key) {
+            Entry entry = entries.get(key);
+            return entry == null ? null : entry.value;
+        }
+        
+        synchronized void put(Key key, String value, int entryWeight) {
+            if (entryWeight > maxSegmentWeight) {
+                return;
+            }
+            
+            Entry previous = entries.remove(key);
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            if (sketch != null && previous == null
+                    && weight + entryWeight > maxSegmentWeight && eldest.hasNext()) {
+                // Admitir la entrada nueva solo si es mas frecuente que la primera victima
+                Key victim = entries.keySet().iterator().next();
+                if (sketch.frequency(key.hash) <= sketch.frequency(victim.hash)) {
+                    rejectionCount.increment();
+                    return;
+                }
+            }
+            
+            // Liberar peso desde la entrada menos reciente
+            while (weight + entryWeight > maxSegmentWeight && eldest.hasNext()) {
+                Map.Entry<Key, Entry> victim = eldest.next();
+                weight -= victim.getValue().weight;
+                eldest.remove();
+                evictionCount.increment();
+            }
+            
+            entries.put(key, new Entry(value, entryWeight));
+            weight += entryWeight;
+        }
+        
+        synchronized void clear() {
+            entries.clear();
+            weight = 0;
+        }
+        
+        synchronized long getWeight() {
+            return weight;
+        }
+        
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+    
+    /**
+    * Valor guardado junto con su peso.
+    */
+    private static final class Entry {
+        private final String value;
+        private final int weight;
+        
+        Entry(String value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+    
+    /**
+    * Estimador aproximado de frecuencias (count-min sketch) con envejecimiento.
+    * <p>
+    * Usa cuatro filas de contadores de 8 bits que saturan en 15. Cuando el numero
+    * de incrementos alcanza diez veces el ancho, todos los contadores se dividen
+    * a la mitad para que las frecuencias antiguas pierdan peso. Las actualizaciones
+    * no son atomicas: una perdida ocasional de incrementos solo afecta la precision
+    * del estimado.
+    * </p>
+    */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+        
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+        
+        FrequencySketch(long maxWeight) {
+            // Aproximadamente un contador por entrada esperada de 32 caracteres
+            long expected = Math.max(64, Math.min(1 << 22, maxWeight / 32));
+            int width = Integer.highestOneBit((int) expected - 1) << 1;
+            this.table = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = width * 10;
+        }
+        
+        void increment(int hash) {
+            for (int i = 0; i < DEPTH; i++) {
+                byte[] row = table[i];
+                int index = index(hash, i);
+                if (row[index] < MAX_COUNT) {
+                    row[index]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                reset();
+            }
+        }
+        
+        int frequency(int hash) {
+            int min = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, table[i][index(hash, i)]);
+            }
+            return min;
+        }
+        
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9E3779B9;
+            return (h ^ (h >>> 15)) & mask;
+        }
+        
+        private synchronized void reset() {
+            if (additions < sampleSize) {
+                return;
+            }
+            for (byte[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            additions = 0;
+        }
+    }
+}
\ No newline at end of file
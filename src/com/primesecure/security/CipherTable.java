@@ -0,0 +1,224 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.security;
+
+/**
+ * Tabla precalculada de la transformacion aplicada por PrimeEncoder y PrimeDecoder.
+ * <p>
+ * El desplazamiento de cada caracter depende solo de {@code primeCode % 26} y
+ * de la posicion modulo 5, por lo que para cada clave basta con cinco tablas
+ * (una por fase) que cubren los caracteres ASCII. Los caracteres fuera de ASCII
+ * se transforman con la misma formula que el algoritmo original. Las tablas son
+ * inmutables y se comparten entre todos los hilos.
+ * </p>
+ * <p>
+ * Como desencriptar y volver a encriptar usan la misma fase en cada posicion,
+ * cambiar de clave tambien cabe en cinco tablas: {@link #forRekey(int, int)}
+ * guarda en cada entrada el resultado de desencriptar con una clave y
+ * encriptar con la otra, y transforma un texto cifrado en una sola pasada.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class CipherTable {
+    
+    /** Numero de fases del desplazamiento (la posicion se toma modulo 5) */
+    public static final int PHASES = 5;
+    
+    /** Los caracteres menores a este valor se resuelven con la tabla */
+    private static final int TABLE_SIZE = 128;
+    
+    /** Numero de claves distintas: primeCode % 26 esta entre -25 y 25 */
+    private static final int KEY_COUNT = 51;
+    
+    /** Tablas de encriptacion creadas bajo demanda, indexadas por clave */
+    private static final CipherTable[] encodingTables = new CipherTable[KEY_COUNT];
+    
+    /** Tablas de desencriptacion creadas bajo demanda, indexadas por clave */
+    private static final CipherTable[] decodingTables = new CipherTable[KEY_COUNT];
+    
+    /** Tablas de cambio de clave creadas bajo demanda, indexadas por clave de origen y de destino */
+    private static final CipherTable[] rekeyTables = new CipherTable[KEY_COUNT * KEY_COUNT];
+    
+    /** La clave efectiva, primeCode % 26; en un cambio de clave, la de destino */
+    private final int key;
+    
+    /** Indicador de si la tabla encripta (true) o desencripta (false) */
+    private final boolean encode;
+    
+    /** La clave con la que se desencripta antes de encriptar, o null si la tabla no cambia de clave */
+    private final Integer sourceKey;
+    
+    /** Caracteres transformados por fase: table[fase][caracter] */
+    private final char[][] table;
+    
+    private CipherTable(int key, boolean encode, Integer sourceKey) {
+        this.key = key;
+        this.encode = encode;
+        this.sourceKey = sourceKey;
+        this.table = new char[PHASES][TABLE_SIZE];
+        for (int phase = 0; phase < PHASES; phase++) {
+            for (int c = 0; c < TABLE_SIZE; c++) {
+                table[phase][c] = compute((char) c, phase);
+            }
+        }
+    }
+    
+    /**
+    * Obtiene la tabla de encriptacion para un codigo primo.
+    * 
+    * @param primeCode El codigo primo usado como clave
+    * @return La tabla compartida de encriptacion
+    */
+    public static CipherTable forEncoding(int primeCode) {
+        return lookup(encodingTables, primeCode, true);
+    }
+    
+    /**
+    * Obtiene la tabla de desencriptacion para un codigo primo.
+    * 
+    * @param primeCode El codigo primo usado como clave
+    * @return La tabla compartida de desencriptacion
+    */
+    public static CipherTable forDecoding(int primeCode) {
+        return lookup(decodingTables, primeCode, false);
+    }
+    
+    /**
+    * Obtiene la tabla que cambia un texto encriptado de un codigo primo a otro.
+    * <p>
+    * Aplicarla equivale a desencriptar con oldPrimeCode y encriptar el
+    * resultado con newPrimeCode, caracter por caracter.
+    * </p>
+    * 
+    * @param oldPrimeCode El codigo primo con que esta encriptado el texto
+    * @param newPrimeCode El codigo primo con que debe quedar encriptado
+    * @return La tabla compartida de cambio de clave
+    */
+    public static CipherTable forRekey(int oldPrimeCode, int newPrimeCode) {
+        int sourceKey = oldPrimeCode % 26;
+        int key = newPrimeCode % 26;
+        int index = (sourceKey + 25) * KEY_COUNT + key + 25;
+        CipherTable cipherTable = rekeyTables[index];
+        if (cipherTable == null) {
+            cipherTable = new CipherTable(key, true, sourceKey);
+            rekeyTables[index] = cipherTable;
+        }
+        return cipherTable;
+    }
+    
+    private static CipherTable lookup(CipherTable[] cache, int primeCode, boolean encode) {
+        int key = primeCode % 26;
+        CipherTable cipherTable = cache[key + 25];
+        if (cipherTable == null) {
+            // Una carrera solo crea una tabla identica de mas; los campos finales la publican de forma segura
+            cipherTable = new CipherTable(key, encode, null);
+            cache[key + 25] = cipherTable;
+        }
+        return cipherTable;
+    }
+    
+    /**
+    * Transforma un caracter en una posicion dada del texto.
+    * 
+    * @param c El caracter a transformar
+    * @param position La posicion del caracter dentro del texto
+    * @return El caracter transformado
+    */
+    public char apply(char c, long position) {
+        int phase = (int) (position % PHASES);
+        return c < TABLE_SIZE ? table[phase][c] : compute(c, phase);
+    }
+    
+    /**
+    * Transforma un bloque de caracteres que comienza en una posicion dada del texto.
+    * <p>
+    * El origen y el destino pueden ser el mismo arreglo.
+    * </p>
+    * 
+    * @param src El arreglo de origen
+    * @param srcOffset El indice inicial en el origen
+    * @param dst El arreglo de destino
+    * @param dstOffset El indice inicial en el destino
+    * @param length El numero de caracteres a transformar
+    * @param startPosition La posicion en el texto del primer caracter del bloque
+    */
+    public void apply(char[] src, int srcOffset, char[] dst, int dstOffset, int length, long startPosition) {
+        int phase = (int) (startPosition % PHASES);
+        for (int i = 0; i < length; i++) {
+            char c = src[srcOffset + i];
+            dst[dstOffset + i] = c < TABLE_SIZE ? table[phase][c] : compute(c, phase);
+            if (++phase == PHASES) {
+                phase = 0;
+            }
+        }
+    }
+    
+    /**
+    * Obtiene la clave efectiva de la tabla.
+    * 
+    * @return El valor de primeCode % 26
+    */
+    public int getKey() {
+        return key;
+    }
+    
+    /**
+    * Verifica si la tabla encripta o desencripta.
+    * 
+    * @return true si la tabla encripta, incluido un cambio de clave
+    */
+    public boolean isEncoding() {
+        return encode;
+    }
+    
+    /**
+    * Verifica si la tabla cambia un texto encriptado de una clave a otra.
+    * 
+    * @return true si la tabla desencripta y vuelve a encriptar
+    */
+    public boolean isRekey() {
+        return sourceKey != null;
+    }
+    
+    /**
+    * Calcula un caracter sin la tabla, en una fase dada.
+    */
+    private char compute(char c, int phase) {
+        if (sourceKey != null) {
+            // Se compone la formula original, incluso donde no es invertible, para igualar las dos pasadas
+            return transform(transform(c, sourceKey + phase, false), key + phase, true);
+        }
+        return transform(c, key + phase, encode);
+    }
+    
+    /**
+    * Aplica la formula original de PrimeEncoder o PrimeDecoder a un caracter.
+    * 
+    * @param c El caracter a transformar
+    * @param shift El desplazamiento, (primeCode % 26) + (posicion % 5)
+    * @param encode Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @return El caracter transformado
+    */
+    static char transform(char c, int shift, boolean encode) {
+        if (Character.isLetter(c)) {
+            char base = Character.isUpperCase(c) ? 'A' : 'a';
+            return encode
+                ? (char) (((c - base + shift) % 26) + base)
+                : (char) (((c - base - shift + 26) % 26) + base);
+        } else if (Character.isDigit(c)) {
+            return encode
+                ? (char) (((c - '0' + shift) % 10) + '0')
+                : (char) (((c - '0' - shift + 10) % 10) + '0');
+        } else {
+            return encode
+                ? (char) (c + (shift % 5))
+                : (char) (c - (shift % 5));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,359 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.security;
+
+import com.primesecure.model.Message;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Busqueda de texto dentro de archivos y mensajes encriptados, sin desencriptarlos.
+ * <p>
+ * La transformacion de cada caracter depende solo del codigo primo y de su
+ * posicion modulo 5, asi que un texto buscado aparece en el texto cifrado
+ * como una de cinco cadenas: la consulta encriptada suponiendo que empieza en
+ * cada una de las cinco fases. Basta buscar esas cadenas y aceptar solo las
+ * coincidencias cuya posicion tiene la fase con que se encripto la cadena.
+ * Una fase cuya cadena no se desencripta de vuelta a la consulta se descarta,
+ * porque en esa fase el texto desencriptado nunca mostraria la consulta.
+ * </p>
+ * <p>
+ * Los archivos se mapean en memoria y se recorren en paralelo por regiones,
+ * como bytes UTF-8 (el juego de caracteres por defecto), filtrando cada
+ * posicion con una tabla de los dos primeros bytes de las cinco cadenas y
+ * comparando solo la cadena de la fase del candidato. Las posiciones se cuentan en
+ * caracteres desde el inicio del archivo, igual que al encriptar por flujo o
+ * con un solo hilo; coinciden con la posicion en el texto desencriptado.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class EncryptedSearch {
+    
+    /** Por debajo de este tamaño el archivo se recorre con un solo hilo */
+    private static final long PARALLEL_MIN_BYTES = 1L << 20;
+    
+    /** El bit alto de cada byte de una palabra */
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    
+    /** Bytes que se copian del archivo mapeado por cada bloque recorrido */
+    private static final int SCAN_BLOCK = 1 << 16;
+    
+    /** Lectura de 8 bytes a la vez para contar caracteres */
+    private static final ValueLayout.OfLong WORD_LAYOUT =
+        ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    
+    /**
+    * Una coincidencia dentro de una lista de mensajes.
+    */
+    public static final class MessageMatch {
+        private final int messageIndex;
+        private final int offset;
+        
+        MessageMatch(int messageIndex, int offset) {
+            this.messageIndex = messageIndex;
+            this.offset = offset;
+        }
+        
+        /**
+        * Obtiene la posicion del mensaje en la lista.
+        * 
+        * @return El indice del mensaje
+        */
+        public int getMessageIndex() {
+            return messageIndex;
+        }
+        
+        /**
+        * Obtiene la posicion de la coincidencia en el texto plano del mensaje.
+        * 
+        * @return La posicion, en caracteres
+        */
+        public int getOffset() {
+            return offset;
+        }
+    }
+    
+    private EncryptedSearch() {
+    }
+    
+    /**
+    * Busca un texto en un archivo encriptado por flujo.
+    * 
+    * @param filePath Ruta al archivo encriptado
+    * @param query El texto plano a buscar
+    * @param primeCode El codigo primo con que se encripto el archivo
+    * @param threadCount El numero de hilos a usar
+    * @return Las posiciones de cada coincidencia en el texto plano, en caracteres y en orden creciente
+    * @throws IOException Si no se puede leer el archivo
+    */
+    public static long[] searchFile(String filePath, String query, int primeCode, int threadCount) throws IOException {
+        byte[][] patterns = new byte[CipherTable.PHASES][];
+        for (int phase = 0; phase < CipherTable.PHASES; phase++) {
+            String pattern = encode(query, primeCode, phase);
+            if (pattern != null) {
+                patterns[phase] = pattern.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        // Fases cuya cadena empieza con cada par de bytes, como mascara de bits
+        byte[] prefixes = new byte[1 << 16];
+        for (int phase = 0; phase < CipherTable.PHASES; phase++) {
+            byte[] pattern = patterns[phase];
+            if (pattern == null) {
+                continue;
+            }
+            int first = (pattern[0] & 0xFF) << 8;
+            if (pattern.length == 1) {
+                for (int second = 0; second < 256; second++) {
+                    prefixes[first | second] |= (byte) (1 << phase);
+                }
+            } else {
+                prefixes[first | (pattern[1] & 0xFF)] |= (byte) (1 << phase);
+            }
+        }
+        
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+             Arena arena = Arena.ofShared()) {
+            long size = channel.size();
+            if (size == 0) {
+                return new long[0];
+            }
+            MemorySegment data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+            
+            int regionCount = size < PARALLEL_MIN_BYTES ? 1 : Math.max(1, threadCount);
+            long[] bounds = new long[regionCount + 1];
+            for (int i = 1; i < regionCount; i++) {
+                // Las regiones empiezan al inicio de un caracter, nunca en un byte de continuacion
+                long bound = Math.max(bounds[i - 1], size / regionCount * i);
+                while (bound < size && (data.get(ValueLayout.JAVA_BYTE, bound) & 0xC0) == 0x80) {
+                    bound++;
+                }
+                bounds[i] = bound;
+            }
+            bounds[regionCount] = size;
+            
+            ExecutorService executor = Executors.newFixedThreadPool(regionCount);
+            try {
+                // Primera pasada: caracteres por region, para conocer la posicion inicial de las siguientes
+                List<Future<Long>> counts = new ArrayList<>();
+                for (int i = 0; i < regionCount - 1; i++) {
+                    long from = bounds[i];
+                    long to = bounds[i + 1];
+                    counts.add(executor.submit(() -> countChars(data, from, to)));
+                }
+                List<Future<long[]>> scans = new ArrayList<>();
+                long position = 0;
+                for (int i = 0; i < regionCount; i++) {
+                    long from = bounds[i];
+                    long to = bounds[i + 1];
+                    long start = position;
+                    scans.add(executor.submit(() -> scan(data, from, to, start, patterns, prefixes)));
+                    if (i < regionCount - 1) {
+                        position += counts.get(i).get();
+                    }
+                }
+                
+                long[][] results = new long[regionCount][];
+                int total = 0;
+                for (int i = 0; i < regionCount; i++) {
+                    results[i] = scans.get(i).get();
+                    total += results[i].length;
+                }
+                long[] offsets = new long[total];
+                int copied = 0;
+                for (long[] result : results) {
+                    System.arraycopy(result, 0, offsets, copied, result.length);
+                    copied += result.length;
+                }
+                return offsets;
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException("Error buscando en el archivo: " + e.getMessage());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+    
+    /**
+    * Busca un texto en una lista de mensajes, encriptados o no.
+    * <p>
+    * Los mensajes encriptados se comparan con las cadenas de su codigo primo,
+    * que se calculan una sola vez por clave; los demas se buscan tal cual.
+    * </p>
+    * 
+    * @param messages Los mensajes donde buscar
+    * @param query El texto plano a buscar
+    * @return Las coincidencias en el orden de los mensajes y de las posiciones
+    */
+    public static List<MessageMatch> searchMessages(List<Message> messages, String query) {
+        if (query.isEmpty()) {
+            throw new IllegalArgumentException("El texto a buscar no puede estar vacio");
+        }
+        Map<Integer, String[]> patternsByKey = new HashMap<>();
+        List<MessageMatch> matches = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        
+        for (int m = 0; m < messages.size(); m++) {
+            Message message = messages.get(m);
+            String content = message.getContent();
+            if (content == null) {
+                continue;
+            }
+            if (!message.isEncrypted()) {
+                for (int i = content.indexOf(query); i >= 0; i = content.indexOf(query, i + 1)) {
+                    matches.add(new MessageMatch(m, i));
+                }
+                continue;
+            }
+            
+            int primeCode = message.getPrimeCode();
+            String[] patterns = patternsByKey.computeIfAbsent(primeCode % 26, key -> {
+                String[] encoded = new String[CipherTable.PHASES];
+                for (int phase = 0; phase < CipherTable.PHASES; phase++) {
+                    encoded[phase] = encode(query, primeCode, phase);
+                }
+                return encoded;
+            });
+            offsets.clear();
+            for (int phase = 0; phase < CipherTable.PHASES; phase++) {
+                String pattern = patterns[phase];
+                if (pattern == null) {
+                    continue;
+                }
+                for (int i = content.indexOf(pattern); i >= 0; i = content.indexOf(pattern, i + 1)) {
+                    if (i % CipherTable.PHASES == phase) {
+                        offsets.add(i);
+                    }
+                }
+            }
+            offsets.sort(null);
+            for (int offset : offsets) {
+                matches.add(new MessageMatch(m, offset));
+            }
+        }
+        return matches;
+    }
+    
+    /**
+    * Encripta la consulta como si empezara en una fase, o devuelve null si en esa
+    * fase la cadena no se desencripta de vuelta a la consulta.
+    */
+    private static String encode(String query, int primeCode, int phase) {
+        if (query.isEmpty()) {
+            throw new IllegalArgumentException("El texto a buscar no puede estar vacio");
+        }
+        char[] chars = query.toCharArray();
+        CipherTable.forEncoding(primeCode).apply(chars, 0, chars, 0, chars.length, phase);
+        char[] decoded = chars.clone();
+        CipherTable.forDecoding(primeCode).apply(decoded, 0, decoded, 0, decoded.length, phase);
+        return Arrays.equals(decoded, query.toCharArray()) ? new String(chars) : null;
+    }
+    
+    /**
+    * Cuenta los caracteres UTF-16 de un tramo UTF-8 que empieza al inicio de un caracter.
+    */
+    private static long countChars(MemorySegment data, long from, long to) {
+        long chars = 0;
+        long i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long w = data.get(WORD_LAYOUT, i);
+            // Bytes de continuacion (10xxxxxx) y de inicio de 4 bytes (11110xxx), que son 2 caracteres
+            long continuation = w & ~(w << 1) & HIGH_BITS;
+            long fourByte = w & (w << 1) & (w << 2) & (w << 3) & ~(w << 4) & HIGH_BITS;
+            chars += Long.BYTES - Long.bitCount(continuation) + Long.bitCount(fourByte);
+        }
+        for (; i < to; i++) {
+            int b = data.get(ValueLayout.JAVA_BYTE, i) & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                chars += (b & 0xF8) == 0xF0 ? 2 : 1;
+            }
+        }
+        return chars;
+    }
+    
+    /**
+    * Recorre una region y devuelve las posiciones de las coincidencias que empiezan en ella.
+    * <p>
+    * La region se copia por bloques a un arreglo reutilizado, con los bytes
+    * siguientes necesarios para completar una coincidencia que cruce el final
+    * del bloque. Cada posicion se filtra con sus dos primeros bytes, que casi
+    * nunca coinciden con los de alguna cadena, y la posicion en caracteres
+    * solo se calcula para los candidatos, contando desde el anterior.
+    * </p>
+    */
+    private static long[] scan(MemorySegment data, long from, long to, long startPosition,
+                               byte[][] patterns, byte[] prefixes) {
+        int maxLength = 0;
+        for (byte[] pattern : patterns) {
+            if (pattern != null) {
+                maxLength = Math.max(maxLength, pattern.length);
+            }
+        }
+        long size = data.byteSize();
+        byte[] buffer = new byte[SCAN_BLOCK + Math.max(maxLength, 2)];
+        MemorySegment view = MemorySegment.ofArray(buffer);
+        long[] found = new long[16];
+        int count = 0;
+        long position = startPosition;
+        
+        for (long blockStart = from; blockStart < to; blockStart += SCAN_BLOCK) {
+            int length = (int) Math.min(SCAN_BLOCK, to - blockStart);
+            int available = (int) Math.min(buffer.length, size - blockStart);
+            MemorySegment.copy(data, ValueLayout.JAVA_BYTE, blockStart, buffer, 0, available);
+            
+            int counted = 0;
+            for (int j = 0; j < length; j++) {
+                // Al final del archivo el segundo byte es basura; la comparacion completa lo descarta
+                int phases = prefixes[(buffer[j] & 0xFF) << 8 | (buffer[j + 1] & 0xFF)];
+                if (phases == 0) {
+                    continue;
+                }
+                position += countChars(view, counted, j);
+                counted = j;
+                int phase = (int) (position % CipherTable.PHASES);
+                if ((phases >>> phase & 1) == 0) {
+                    continue;
+                }
+                byte[] pattern = patterns[phase];
+                if (j + pattern.length <= available && matches(buffer, j, pattern)) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = position;
+                }
+            }
+            position += countChars(view, counted, length);
+        }
+        return Arrays.copyOf(found, count);
+    }
+    
+    private static boolean matches(byte[] buffer, int offset, byte[] pattern) {
+        for (int k = 1; k < pattern.length; k++) {
+            if (buffer[offset + k] != pattern[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,455 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.security;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+/**
+ * Sumas de verificacion de un archivo producido por {@link FileEncryptor}.
+ * <p>
+ * Se calculan sobre los bytes de salida mientras se escriben, dentro del
+ * mismo recorrido que los transforma: un CRC32C por bloque, un CRC32C del
+ * archivo completo y, opcionalmente, un SHA-256 del archivo completo. Cada
+ * bloque corresponde a un bloque de caracteres del procesamiento por flujo.
+ * </p>
+ * <p>
+ * Se guardan en un archivo de texto junto al archivo, con el sufijo
+ * {@link #SIDECAR_SUFFIX}:
+ * </p>
+ * <pre>
+ * # Sumas de verificacion de PrimeSecure
+ * file BYTES CRC32C [SHA256]
+ * block INDICE DESPLAZAMIENTO BYTES CRC32C
+ * </pre>
+ * <p>
+ * Al procesar un archivo, sus sumas se comprueban bloque por bloque en la
+ * misma lectura; {@link #verifyBlocks(String, int)} es una verificacion
+ * aparte, en paralelo, que no procesa el archivo.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class FileChecksums {
+    
+    /** Sufijo del archivo de sumas de verificacion */
+    public static final String SIDECAR_SUFFIX = ".sum";
+    
+    /**
+    * Sumas que se calculan al escribir un archivo.
+    */
+    public enum Mode {
+        /** No se calculan sumas */
+        NONE,
+        /** CRC32C por bloque y del archivo completo */
+        CRC32C,
+        /** Ademas de los CRC32C, un SHA-256 del archivo completo */
+        SHA256
+    }
+    
+    private final long fileLength;
+    private final int fileCrc;
+    private final byte[] sha256;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final int[] blockCrcs;
+    
+    private FileChecksums(long fileLength, int fileCrc, byte[] sha256,
+                          long[] blockOffsets, int[] blockLengths, int[] blockCrcs) {
+        this.fileLength = fileLength;
+        this.fileCrc = fileCrc;
+        this.sha256 = sha256;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.blockCrcs = blockCrcs;
+    }
+    
+    /**
+    * Obtiene la ruta del archivo de sumas de un archivo.
+    * 
+    * @param filePath La ruta del archivo
+    * @return La ruta de su archivo de sumas
+    */
+    public static String sidecarPath(String filePath) {
+        return filePath + SIDECAR_SUFFIX;
+    }
+    
+    /**
+    * Lee un archivo de sumas.
+    * 
+    * @param sidecarPath La ruta del archivo de sumas
+    * @return Las sumas leidas
+    * @throws IOException Si no se puede leer o tiene un formato invalido
+    */
+    public static FileChecksums read(String sidecarPath) throws IOException {
+        long fileLength = -1;
+        int fileCrc = 0;
+        byte[] sha256 = null;
+        List<long[]> blocks = new ArrayList<>();
+        HexFormat hex = HexFormat.of();
+        
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(sidecarPath))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(" ");
+                try {
+                    if ("file".equals(fields[0]) && (fields.length == 3 || fields.length == 4)) {
+                        fileLength = Long.parseLong(fields[1]);
+                        fileCrc = (int) Long.parseLong(fields[2], 16);
+                        sha256 = fields.length == 4 ? hex.parseHex(fields[3]) : null;
+                    } else if ("block".equals(fields[0]) && fields.length == 5
+                            && Integer.parseInt(fields[1]) == blocks.size()) {
+                        blocks.add(new long[] {
+                            Long.parseLong(fields[2]), Integer.parseInt(fields[3]), Long.parseLong(fields[4], 16)
+                        });
+                    } else {
+                        throw new IOException("Linea " + lineNumber + " invalida en " + sidecarPath);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Linea " + lineNumber + " invalida en " + sidecarPath);
+                }
+            }
+        }
+        if (fileLength < 0) {
+            throw new IOException("Falta la linea file en " + sidecarPath);
+        }
+        
+        long[] offsets = new long[blocks.size()];
+        int[] lengths = new int[blocks.size()];
+        int[] crcs = new int[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            offsets[i] = blocks.get(i)[0];
+            lengths[i] = (int) blocks.get(i)[1];
+            crcs[i] = (int) blocks.get(i)[2];
+        }
+        return new FileChecksums(fileLength, fileCrc, sha256, offsets, lengths, crcs);
+    }
+    
+    /**
+    * Escribe las sumas en un archivo de sumas.
+    * 
+    * @param sidecarPath La ruta del archivo de sumas
+    * @throws IOException Si falla la escritura
+    */
+    public void write(String sidecarPath) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(sidecarPath)))) {
+            writer.println("# Sumas de verificacion de PrimeSecure");
+            writer.print("file " + fileLength + " " + Integer.toHexString(fileCrc));
+            if (sha256 != null) {
+                writer.print(" " + HexFormat.of().formatHex(sha256));
+            }
+            writer.println();
+            for (int i = 0; i < blockCrcs.length; i++) {
+                writer.println("block " + i + " " + blockOffsets[i] + " " + blockLengths[i] + " "
+                    + Integer.toHexString(blockCrcs[i]));
+            }
+            if (writer.checkError()) {
+                throw new IOException("Error escribiendo " + sidecarPath);
+            }
+        }
+    }
+    
+    /**
+    * Verifica en paralelo cada bloque de un archivo.
+    * <p>
+    * Cada hilo lee sus bloques con lecturas posicionales, de modo que un
+    * archivo dañado se detecta antes de procesarlo y se sabe que bloques
+    * cambiaron.
+    * </p>
+    * 
+    * @param filePath La ruta del archivo a verificar
+    * @param threadCount El numero de hilos a usar
+    * @return Los indices de los bloques que no coinciden, vacio si el archivo es correcto
+    * @throws IOException Si no se puede leer el archivo o su tamaño no coincide
+    */
+    public List<Integer> verifyBlocks(String filePath, int threadCount) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            if (channel.size() != fileLength) {
+                throw new IOException("El tamaño de " + filePath + " es " + channel.size()
+                    + " bytes; se esperaban " + fileLength);
+            }
+            
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threadCount));
+            try {
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (int i = 0; i < blockCrcs.length; i++) {
+                    int block = i;
+                    futures.add(executor.submit(() -> {
+                        ByteBuffer buffer = ByteBuffer.allocate(blockLengths[block]);
+                        while (buffer.hasRemaining()) {
+                            if (channel.read(buffer, blockOffsets[block] + buffer.position()) < 0) {
+                                return false;
+                            }
+                        }
+                        CRC32C crc = new CRC32C();
+                        crc.update(buffer.flip());
+                        return (int) crc.getValue() == blockCrcs[block];
+                    }));
+                }
+                List<Integer> corrupted = new ArrayList<>();
+                for (int i = 0; i < futures.size(); i++) {
+                    if (!futures.get(i).get()) {
+                        corrupted.add(i);
+                    }
+                }
+                return corrupted;
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException("Error verificando " + filePath + ": " + e.getMessage());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+    
+    /**
+    * Obtiene el tamaño del archivo, en bytes.
+    * 
+    * @return El tamaño registrado
+    */
+    public long getFileLength() {
+        return fileLength;
+    }
+    
+    /**
+    * Obtiene el CRC32C del archivo completo.
+    * 
+    * @return El CRC32C registrado
+    */
+    public int getFileCrc() {
+        return fileCrc;
+    }
+    
+    /**
+    * Obtiene el SHA-256 del archivo completo.
+    * 
+    * @return Una copia del SHA-256, o null si no se calculo
+    */
+    public byte[] getSha256() {
+        return sha256 == null ? null : sha256.clone();
+    }
+    
+    /**
+    * Obtiene el numero de bloques.
+    * 
+    * @return Los bloques registrados
+    */
+    public int getBlockCount() {
+        return blockCrcs.length;
+    }
+    
+    /**
+    * Flujo de salida que calcula las sumas de los bytes que pasan por el.
+    * <p>
+    * Quien escribe marca el final de cada bloque con {@link #endBlock()}
+    * despues de vaciar sus buffers, para que el bloque tenga exactamente los
+    * bytes de ese bloque de caracteres.
+    * </p>
+    */
+    static final class Recorder extends FilterOutputStream {
+        private final CRC32C fileCrc = new CRC32C();
+        private final CRC32C blockCrc = new CRC32C();
+        private final MessageDigest digest;
+        private long written;
+        private long blockStart;
+        private long[] offsets = new long[16];
+        private int[] lengths = new int[16];
+        private int[] crcs = new int[16];
+        private int blocks;
+        
+        Recorder(OutputStream out, Mode mode) {
+            super(out);
+            try {
+                this.digest = mode == Mode.SHA256 ? MessageDigest.getInstance("SHA-256") : null;
+            } catch (NoSuchAlgorithmException e) {
+                // Toda plataforma Java debe ofrecer SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            fileCrc.update(b, off, len);
+            blockCrc.update(b, off, len);
+            if (digest != null) {
+                digest.update(b, off, len);
+            }
+            written += len;
+        }
+        
+        void endBlock() {
+            if (blocks == crcs.length) {
+                offsets = Arrays.copyOf(offsets, blocks * 2);
+                lengths = Arrays.copyOf(lengths, blocks * 2);
+                crcs = Arrays.copyOf(crcs, blocks * 2);
+            }
+            offsets[blocks] = blockStart;
+            lengths[blocks] = (int) (written - blockStart);
+            crcs[blocks] = (int) blockCrc.getValue();
+            blocks++;
+            blockCrc.reset();
+            blockStart = written;
+        }
+        
+        FileChecksums finish() {
+            return new FileChecksums(written, (int) fileCrc.getValue(), digest == null ? null : digest.digest(),
+                Arrays.copyOf(offsets, blocks), Arrays.copyOf(lengths, blocks), Arrays.copyOf(crcs, blocks));
+        }
+    }
+    
+    /**
+    * Flujo de entrada que comprueba cada bloque contra las sumas a medida que se lee.
+    * <p>
+    * Los bloques se comprueban sobre los bytes leidos, sin importar como los
+    * agrupe quien lee, y un bloque dañado se detecta en cuanto termina de
+    * leerse. {@link #finish()} comprueba ademas el archivo completo.
+    * </p>
+    */
+    static final class Verifier extends FilterInputStream {
+        private final FileChecksums expected;
+        private final String filePath;
+        private final CRC32C fileCrc = new CRC32C();
+        private final CRC32C blockCrc = new CRC32C();
+        private final MessageDigest digest;
+        private long read;
+        private int block;
+        private boolean mismatch;
+        
+        Verifier(InputStream in, FileChecksums expected, String filePath) {
+            super(in);
+            this.expected = expected;
+            this.filePath = filePath;
+            try {
+                this.digest = expected.sha256 != null ? MessageDigest.getInstance("SHA-256") : null;
+            } catch (NoSuchAlgorithmException e) {
+                // Toda plataforma Java debe ofrecer SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                update(b, off, n);
+            }
+            return n;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            throw new IOException("No se puede saltar bytes al verificar " + filePath);
+        }
+        
+        private void update(byte[] b, int off, int len) throws IOException {
+            fileCrc.update(b, off, len);
+            if (digest != null) {
+                digest.update(b, off, len);
+            }
+            while (len > 0) {
+                if (block >= expected.blockCrcs.length) {
+                    // Mas bytes que los registrados; finish() lo reporta por el tamaño
+                    read += len;
+                    return;
+                }
+                long blockEnd = expected.blockOffsets[block] + expected.blockLengths[block];
+                int take = (int) Math.min(len, blockEnd - read);
+                blockCrc.update(b, off, take);
+                read += take;
+                off += take;
+                len -= take;
+                checkCompletedBlocks();
+            }
+        }
+        
+        /**
+        * Compara los bloques que terminan en la posicion actual, incluidos los vacios.
+        */
+        private void checkCompletedBlocks() throws IOException {
+            while (block < expected.blockCrcs.length
+                    && expected.blockOffsets[block] + expected.blockLengths[block] == read) {
+                if ((int) blockCrc.getValue() != expected.blockCrcs[block]) {
+                    mismatch = true;
+                    throw new IOException("El archivo " + filePath + " esta dañado; el bloque " + block
+                        + " no coincide con sus sumas de verificacion");
+                }
+                blockCrc.reset();
+                block++;
+            }
+        }
+        
+        /**
+        * Comprueba el tamaño y las sumas del archivo completo una vez leido.
+        */
+        void finish() throws IOException {
+            checkCompletedBlocks();
+            mismatch = read != expected.fileLength || (int) fileCrc.getValue() != expected.fileCrc
+                || (digest != null && !Arrays.equals(expected.sha256, digest.digest()));
+            if (mismatch) {
+                throw new IOException("El archivo " + filePath + " no coincide con sus sumas de verificacion");
+            }
+        }
+        
+        /**
+        * Indica si la lectura fallo porque el archivo no coincide con las sumas.
+        */
+        boolean hasMismatch() {
+            return mismatch;
+        }
+    }
+    
+    /**
+    * Lee el archivo de sumas de un archivo, fallando si no existe.
+    */
+    static FileChecksums readFor(String filePath) throws IOException {
+        String sidecar = sidecarPath(filePath);
+        try {
+            return read(sidecar);
+        } catch (NoSuchFileException e) {
+            throw new IOException("No hay sumas de verificacion para " + filePath + " (" + sidecar + ")");
+        }
+    }
+}
\ No newline at end of file
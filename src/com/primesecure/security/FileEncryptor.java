@@ -5,9 +5,20 @@
 
 package com.primesecure.security;
 
+import com.primesecure.metrics.Counter;
+import com.primesecure.metrics.FileChunkEvent;
+import com.primesecure.metrics.FileJobEvent;
+import com.primesecure.metrics.FlightRecording;
+import com.primesecure.metrics.LatencyHistogram;
+import com.primesecure.metrics.MetricsRegistry;
+import com.primesecure.util.AutoTuner;
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
@@ -25,6 +36,19 @@ import java.util.concurrent.*;
  */
 public class FileEncryptor {
     
+    /** Tamaño de bloque por defecto del procesamiento por flujo, en caracteres */
+    public static final int DEFAULT_STREAM_BUFFER_SIZE = 64 * 1024;
+    
+    /** Latencia de cada archivo procesado */
+    private static final LatencyHistogram fileLatency =
+        MetricsRegistry.getDefault().histogram("file.process.latency");
+    
+    /** Caracteres procesados en todos los archivos */
+    private static final Counter fileChars = MetricsRegistry.getDefault().counter("file.process.chars");
+    
+    /** Archivos de entrada que no coincidieron con sus sumas de verificacion */
+    private static final Counter verifyFailures = MetricsRegistry.getDefault().counter("file.verify.failures");
+    
     /**
     * Clase interna que representa un fragmento de texto a ser procesado por un hilo.
     */
@@ -32,11 +56,18 @@ public class FileEncryptor {
         private String content;
         private int primeCode;
         private boolean encrypt;
+        private int index;
+        private long offset;
+        private boolean absolutePositions;
         
-        public TextChunk(String content, int primeCode, boolean encrypt) {
+        public TextChunk(String content, int primeCode, boolean encrypt, int index, long offset,
+                         boolean absolutePositions) {
             this.content = content;
             this.primeCode = primeCode;
             this.encrypt = encrypt;
+            this.index = index;
+            this.offset = offset;
+            this.absolutePositions = absolutePositions;
         }
     }
     
@@ -52,16 +83,35 @@ public class FileEncryptor {
         
         @Override
         public String call() {
-            if (chunk.encrypt) {
-                return new PrimeEncoder().encode(chunk.content, chunk.primeCode);
-            } else {
-                return new PrimeDecoder().decode(chunk.content, chunk.primeCode);
+            FileChunkEvent event = FlightRecording.isActive() ? new FileChunkEvent() : null;
+            try {
+                if (chunk.absolutePositions) {
+                    CipherTable table = chunk.encrypt
+                        ? CipherTable.forEncoding(chunk.primeCode)
+                        : CipherTable.forDecoding(chunk.primeCode);
+                    char[] chars = chunk.content.toCharArray();
+                    table.apply(chars, 0, chars, 0, chars.length, chunk.offset);
+                    return new String(chars);
+                } else if (chunk.encrypt) {
+                    return new PrimeEncoder().encode(chunk.content, chunk.primeCode);
+                } else {
+                    return new PrimeDecoder().decode(chunk.content, chunk.primeCode);
+                }
+            } finally {
+                if (event != null) {
+                    event.complete(chunk.index, chunk.offset, chunk.content.length());
+                }
             }
         }
     }
     
     /**
     * Procesa un archivo de texto usando ejecucion paralela con multiples hilos.
+    * <p>
+    * La posicion de cada caracter se cuenta desde el inicio de su fragmento,
+    * por lo que un archivo se desencripta con el mismo numero de hilos con que
+    * se encripto.
+    * </p>
     * 
     * @param inputFile Ruta al archivo de entrada
     * @param outputFile Ruta al archivo de salida
@@ -73,21 +123,59 @@ public class FileEncryptor {
     */
     public static String processFile(String inputFile, String outputFile, 
                                     int primeCode, boolean encrypt, int threadCount) throws IOException {
+        return processFile(inputFile, outputFile, primeCode, encrypt, threadCount, false);
+    }
+    
+    /**
+    * Procesa un archivo de texto con multiples hilos, eligiendo como se cuentan las posiciones.
+    * <p>
+    * Con posiciones por fragmento, el resultado depende del numero de hilos,
+    * como en {@link #processFile(String, String, int, boolean, int)}. Con
+    * posiciones absolutas, la posicion de cada caracter se cuenta desde el
+    * inicio del archivo: el resultado es el mismo que con
+    * {@link #processFileStreaming} con cualquier numero de hilos, por lo que
+    * solo en ese modo se admite {@link AutoTuner#AUTO}. Los dos modos no son
+    * compatibles entre si; un archivo se desencripta con el modo con que se encripto.
+    * </p>
+    * 
+    * @param inputFile Ruta al archivo de entrada
+    * @param outputFile Ruta al archivo de salida
+    * @param primeCode Numero primo a usar para encriptacion/desencriptacion
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @param threadCount Numero de hilos a usar, o {@link AutoTuner#AUTO} con posiciones absolutas
+    * @param absolutePositions Si las posiciones se cuentan desde el inicio del archivo
+    * @return Metricas de rendimiento como una cadena
+    * @throws IOException Si fallan las operaciones de archivo
+    * @throws IllegalArgumentException Si se pide {@link AutoTuner#AUTO} con posiciones por fragmento
+    */
+    public static String processFile(String inputFile, String outputFile, int primeCode, boolean encrypt,
+                                     int threadCount, boolean absolutePositions) throws IOException {
+        if (threadCount < 1 && !absolutePositions) {
+            throw new IllegalArgumentException(
+                "El numero de hilos automatico requiere posiciones absolutas; con posiciones por fragmento"
+                + " el resultado depende del numero de hilos");
+        }
         
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
+        FileJobEvent event = FlightRecording.isActive() ? new FileJobEvent() : null;
         
         // Leer todo el contenido del archivo
         String content = new String(Files.readAllBytes(Paths.get(inputFile)));
         
-        // Calcular tamaño de fragmento
-        int chunkSize = Math.max(content.length() / threadCount, 1);
+        // Calcular tamaño de fragmento; con posiciones absolutas un fragmento por hilo
+        if (threadCount < 1) {
+            threadCount = AutoTuner.getDefault().fileThreads(content.length());
+        }
+        int chunkSize = absolutePositions
+            ? Math.max((int) ((content.length() + (long) threadCount - 1) / threadCount), 1)
+            : Math.max(content.length() / threadCount, 1);
         List<TextChunk> chunks = new ArrayList<>();
         
         // Dividir contenido en fragmentos
         for (int i = 0; i < content.length(); i += chunkSize) {
             int end = Math.min(i + chunkSize, content.length());
             String chunkContent = content.substring(i, end);
-            chunks.add(new TextChunk(chunkContent, primeCode, encrypt));
+            chunks.add(new TextChunk(chunkContent, primeCode, encrypt, chunks.size(), i, absolutePositions));
         }
         
         // Procesar fragmentos en paralelo
@@ -116,7 +204,11 @@ public class FileEncryptor {
             writer.write(result.toString());
         }
         
-        long endTime = System.currentTimeMillis();
+        long elapsedNanos = fileLatency.recordSince(startTime);
+        fileChars.add(content.length());
+        if (event != null) {
+            event.complete(inputFile, outputFile, encrypt, content.length(), threadCount, chunks.size());
+        }
         
         // Generar reporte de rendimiento
         return String.format(
@@ -128,7 +220,205 @@ public class FileEncryptor {
             encrypt ? "Encriptacion" : "Desencriptacion",
             content.length(),
             threadCount,
-            (endTime - startTime)
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+        );
+    }
+    
+    /**
+    * Procesa un archivo de texto por bloques sin cargarlo completo en memoria.
+    * <p>
+    * El archivo se lee, transforma y escribe bloque por bloque reutilizando un
+    * unico buffer, por lo que la memoria usada no depende del tamaño del archivo.
+    * La posicion de cada caracter se cuenta desde el inicio del archivo, de modo
+    * que el resultado es el mismo que el de {@link #processFile} con un solo hilo
+    * y un archivo encriptado con este metodo se desencripta con este mismo metodo.
+    * La salida se escribe en un archivo temporal junto a ella que se confirma en
+    * disco y se mueve sobre la definitiva al terminar, asi que la entrada y la
+    * salida pueden ser el mismo archivo.
+    * </p>
+    * 
+    * @param inputFile Ruta al archivo de entrada
+    * @param outputFile Ruta al archivo de salida
+    * @param primeCode Numero primo a usar para encriptacion/desencriptacion
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @param bufferSize Tamaño de cada bloque, en caracteres, o {@link AutoTuner#AUTO}
+    *                   para elegirlo segun la cache de la maquina
+    * @return Metricas de rendimiento como una cadena
+    * @throws IOException Si fallan las operaciones de archivo
+    */
+    public static String processFileStreaming(String inputFile, String outputFile,
+                                              int primeCode, boolean encrypt, int bufferSize) throws IOException {
+        return processFileStreaming(inputFile, outputFile, primeCode, encrypt, bufferSize,
+            FileChecksums.Mode.NONE, false);
+    }
+    
+    /**
+    * Procesa un archivo por bloques calculando y verificando sumas de verificacion.
+    * <p>
+    * Las sumas del archivo de salida se calculan en la misma pasada que lo
+    * escribe y se guardan en {@link FileChecksums#sidecarPath}. Al verificar, el
+    * archivo de entrada debe tener sus sumas: cada bloque se comprueba en la
+    * misma lectura que lo procesa, sin una pasada previa, y el archivo completo
+    * al terminar. Si no coinciden se descarta la salida sin tocar el archivo de
+    * salida existente y se lanza una excepcion.
+    * Para verificar un archivo en paralelo sin procesarlo se usa
+    * {@link FileChecksums#verifyBlocks(String, int)}.
+    * </p>
+    * 
+    * @param inputFile Ruta al archivo de entrada
+    * @param outputFile Ruta al archivo de salida
+    * @param primeCode Numero primo a usar para encriptacion/desencriptacion
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @param bufferSize Tamaño de cada bloque, en caracteres
+    * @param checksums Sumas a calcular para el archivo de salida
+    * @param verify Indicador de si se deben verificar las sumas del archivo de entrada
+    * @return Metricas de rendimiento como una cadena
+    * @throws IOException Si fallan las operaciones de archivo o la verificacion
+    */
+    public static String processFileStreaming(String inputFile, String outputFile,
+                                              int primeCode, boolean encrypt, int bufferSize,
+                                              FileChecksums.Mode checksums, boolean verify) throws IOException {
+        CipherTable table = encrypt ? CipherTable.forEncoding(primeCode) : CipherTable.forDecoding(primeCode);
+        return processFileStreaming(inputFile, outputFile, table, bufferSize,
+            encrypt ? "Encriptacion" : "Desencriptacion", checksums, verify);
+    }
+    
+    /**
+    * Cambia la clave de un archivo encriptado en una sola pasada por bloques.
+    * <p>
+    * Produce el mismo archivo que desencriptarlo con oldPrimeCode y volver a
+    * encriptarlo con newPrimeCode usando {@link #processFileStreaming}, pero lee
+    * y escribe el archivo una sola vez: cada caracter se transforma con una tabla
+    * que combina ambas operaciones. Las posiciones se cuentan desde el inicio del
+    * archivo, como en el procesamiento por flujo. La salida se escribe en un
+    * archivo temporal que se mueve sobre la definitiva al terminar, de modo que
+    * la clave de un archivo se puede cambiar en el mismo archivo.
+    * </p>
+    * 
+    * @param inputFile Ruta al archivo encriptado
+    * @param outputFile Ruta al archivo de salida
+    * @param oldPrimeCode Numero primo con que esta encriptado el archivo
+    * @param newPrimeCode Numero primo con que debe quedar encriptado
+    * @param bufferSize Tamaño de cada bloque, en caracteres
+    * @return Metricas de rendimiento como una cadena
+    * @throws IOException Si fallan las operaciones de archivo
+    */
+    public static String rekeyFileStreaming(String inputFile, String outputFile,
+                                            int oldPrimeCode, int newPrimeCode, int bufferSize) throws IOException {
+        return rekeyFileStreaming(inputFile, outputFile, oldPrimeCode, newPrimeCode, bufferSize,
+            FileChecksums.Mode.NONE, false);
+    }
+    
+    /**
+    * Cambia la clave de un archivo calculando y verificando sumas de verificacion,
+    * igual que {@link #processFileStreaming(String, String, int, boolean, int, FileChecksums.Mode, boolean)}.
+    * 
+    * @param inputFile Ruta al archivo encriptado
+    * @param outputFile Ruta al archivo de salida
+    * @param oldPrimeCode Numero primo con que esta encriptado el archivo
+    * @param newPrimeCode Numero primo con que debe quedar encriptado
+    * @param bufferSize Tamaño de cada bloque, en caracteres
+    * @param checksums Sumas a calcular para el archivo de salida
+    * @param verify Indicador de si se deben verificar las sumas del archivo de entrada
+    * @return Metricas de rendimiento como una cadena
+    * @throws IOException Si fallan las operaciones de archivo o la verificacion
+    */
+    public static String rekeyFileStreaming(String inputFile, String outputFile,
+                                            int oldPrimeCode, int newPrimeCode, int bufferSize,
+                                            FileChecksums.Mode checksums, boolean verify) throws IOException {
+        return processFileStreaming(inputFile, outputFile, CipherTable.forRekey(oldPrimeCode, newPrimeCode),
+            bufferSize, "Cambio de clave", checksums, verify);
+    }
+    
+    /**
+    * Aplica una tabla a un archivo bloque por bloque.
+    */
+    private static String processFileStreaming(String inputFile, String outputFile, CipherTable table,
+                                               int bufferSize, String operation, FileChecksums.Mode checksums,
+                                               boolean verify) throws IOException {
+        if (bufferSize < 0) {
+            throw new IllegalArgumentException("El tamaño del buffer no puede ser negativo");
+        }
+        if (bufferSize == AutoTuner.AUTO) {
+            bufferSize = AutoTuner.getDefault().streamBufferChars();
+        }
+        
+        long startTime = System.nanoTime();
+        FileJobEvent event = FlightRecording.isActive() ? new FileJobEvent() : null;
+        
+        // El tamaño de la entrada se toma antes, porque la salida puede reemplazarla
+        long fileSize = Files.size(Paths.get(inputFile));
+        FileChecksums expected = verify ? FileChecksums.readFor(inputFile) : null;
+        char[] buffer = new char[bufferSize];
+        long position = 0;
+        int blocks = 0;
+        FileChecksums.Verifier verifier = null;
+        FileChecksums.Recorder recorder = null;
+        
+        // Mismo juego de caracteres que processFile para que ambos motores sean intercambiables
+        Charset charset = Charset.defaultCharset();
+        Path output = Paths.get(outputFile);
+        Path temporary = output.resolveSibling(output.getFileName() + ".tmp");
+        try (InputStream file = Files.newInputStream(Paths.get(inputFile));
+             FileOutputStream target = new FileOutputStream(temporary.toFile())) {
+            verifier = expected != null ? new FileChecksums.Verifier(file, expected, inputFile) : null;
+            recorder = checksums != FileChecksums.Mode.NONE ? new FileChecksums.Recorder(target, checksums) : null;
+            Reader reader = new InputStreamReader(verifier != null ? verifier : file, charset);
+            Writer writer = new OutputStreamWriter(recorder != null ? recorder : target, charset);
+            int read;
+            while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
+                FileChunkEvent chunkEvent = FlightRecording.isActive() ? new FileChunkEvent() : null;
+                table.apply(buffer, 0, buffer, 0, read, position);
+                writer.write(buffer, 0, read);
+                if (recorder != null) {
+                    // Vaciar el codificador para que el bloque de sumas termine en este bloque de caracteres
+                    writer.flush();
+                    recorder.endBlock();
+                }
+                if (chunkEvent != null) {
+                    chunkEvent.complete(blocks, position, read);
+                }
+                position += read;
+                blocks++;
+            }
+            writer.flush();
+            if (verifier != null) {
+                verifier.finish();
+            }
+            target.getFD().sync();
+        } catch (IOException e) {
+            if (verifier != null && verifier.hasMismatch()) {
+                verifyFailures.increment();
+            }
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        try {
+            Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING);
+        }
+        
+        if (recorder != null) {
+            recorder.finish().write(FileChecksums.sidecarPath(outputFile));
+        }
+        
+        long elapsedNanos = fileLatency.recordSince(startTime);
+        fileChars.add(position);
+        if (event != null) {
+            event.complete(inputFile, outputFile, table.isEncoding(), fileSize, 1, blocks);
+        }
+        
+        return String.format(
+            "Archivo procesado exitosamente!\n" +
+            "Operacion: %s\n" +
+            "Tamano del archivo: %d bytes\n" +
+            "Bloques procesados: %d de %d caracteres\n" +
+            "Tiempo de ejecucion: %d ms",
+            operation,
+            fileSize,
+            blocks, bufferSize,
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
         );
     }
 }
\ No newline at end of file
@@ -5,12 +5,20 @@
 
 package com.primesecure.security;
 
+import com.primesecure.metrics.Counter;
+import com.primesecure.metrics.MetricsRegistry;
+
 /**
  * Proporciona funcionalidad para desencriptar texto usando numeros primos.
  * <p>
  * Esta clase implementa un algoritmo de desencriptacion basado en numeros primos
  * para transformar texto encriptado en texto plano.
  * </p>
+ * <p>
+ * Cada instancia reutiliza un buffer de trabajo entre llamadas, por lo que una
+ * misma instancia puede procesar muchos mensajes sin asignaciones intermedias,
+ * pero no debe compartirse entre hilos.
+ * </p>
  * 
  * @author PrimeSecure Team
  * @version 1.0
@@ -18,6 +26,41 @@ package com.primesecure.security;
  */
 public class PrimeDecoder {
     
+    /** Textos desencriptados por todas las instancias */
+    private static final Counter callCounter = MetricsRegistry.getDefault().counter("cipher.decode.calls");
+    
+    /** Caracteres desencriptados por todas las instancias */
+    private static final Counter charCounter = MetricsRegistry.getDefault().counter("cipher.decode.chars");
+    
+    /** Tamaño maximo del buffer de trabajo que se conserva entre llamadas */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    
+    /** Buffer de trabajo reutilizado entre llamadas */
+    private char[] buffer;
+    
+    /** Cache opcional de resultados, compartible entre instancias */
+    private final CipherCache cache;
+    
+    /**
+    * Crea un decodificador sin cache de resultados.
+    */
+    public PrimeDecoder() {
+        this(null);
+    }
+    
+    /**
+    * Crea un decodificador que consulta una cache antes de transformar el texto.
+    * <p>
+    * La cache es segura entre hilos, por lo que puede compartirse entre
+    * instancias de distintos hilos.
+    * </p>
+    * 
+    * @param cache La cache de resultados, o null para no usar cache
+    */
+    public PrimeDecoder(CipherCache cache) {
+        this.cache = cache;
+    }
+    
     /**
     * Desencripta un texto usando un codigo primo como clave.
     * <p>
@@ -34,31 +77,53 @@ public class PrimeDecoder {
             return encodedText;
         }
         
-        StringBuilder decoded = new StringBuilder();
+        callCounter.increment();
+        charCounter.add(encodedText.length());
         
-        for (int i = 0; i < encodedText.length(); i++) {
-            char c = encodedText.charAt(i);
-            
-            // Revertir la transformacion basada en el codigo primo
-            // Usar las mismas operaciones que en encode pero en reversa
-            int shift = (primeCode % 26) + (i % 5);
-            char decChar;
-            
-            if (Character.isLetter(c)) {
-                char base = Character.isUpperCase(c) ? 'A' : 'a';
-                // Agregar 26 para manejar valores negativos en el modulo
-                decChar = (char) (((c - base - shift + 26) % 26) + base);
-            } else if (Character.isDigit(c)) {
-                // Agregar 10 para manejar valores negativos en el modulo
-                decChar = (char) (((c - '0' - shift + 10) % 10) + '0');
-            } else {
-                // Para caracteres especiales, revertir el desplazamiento simple
-                decChar = (char) (c - (shift % 5));
+        if (cache != null) {
+            String cached = cache.get(encodedText, primeCode, false);
+            if (cached != null) {
+                return cached;
             }
-            
-            decoded.append(decChar);
+            String result = transform(encodedText, primeCode);
+            cache.put(encodedText, primeCode, false, result);
+            return result;
         }
         
-        return decoded.toString();
+        return transform(encodedText, primeCode);
+    }
+    
+    /**
+    * Aplica la transformacion sobre el buffer de trabajo.
+    */
+    private String transform(String encodedText, int primeCode) {
+        int length = encodedText.length();
+        char[] chars = buffer(length);
+        encodedText.getChars(0, length, chars, 0);
+        
+        // La tabla aplica la misma transformacion por caracter que el algoritmo original
+        CipherTable.forDecoding(primeCode).apply(chars, 0, chars, 0, length, 0);
+        
+        return new String(chars, 0, length);
+    }
+    
+    /**
+    * Obtiene el buffer de trabajo, ampliandolo si es necesario.
+    * <p>
+    * Los textos muy grandes usan un buffer temporal para no retener memoria
+    * en instancias de larga duracion.
+    * </p>
+    * 
+    * @param length El numero de caracteres requeridos
+    * @return Un buffer con al menos la longitud requerida
+    */
+    private char[] buffer(int length) {
+        if (length > MAX_RETAINED_BUFFER) {
+            return new char[length];
+        }
+        if (buffer == null || buffer.length < length) {
+            buffer = new char[Math.max(length, 64)];
+        }
+        return buffer;
     }
 }
\ No newline at end of file
@@ -5,12 +5,20 @@
 
 package com.primesecure.security;
 
+import com.primesecure.metrics.Counter;
+import com.primesecure.metrics.MetricsRegistry;
+
 /**
  * Proporciona funcionalidad para encriptar texto usando numeros primos.
  * <p>
  * Esta clase implementa un algoritmo de encriptacion basado en numeros primos
  * para transformar texto plano en texto encriptado.
  * </p>
+ * <p>
+ * Cada instancia reutiliza un buffer de trabajo entre llamadas, por lo que una
+ * misma instancia puede procesar muchos mensajes sin asignaciones intermedias,
+ * pero no debe compartirse entre hilos.
+ * </p>
  * 
  * @author PrimeSecure Team
  * @version 1.0
@@ -18,6 +26,41 @@ package com.primesecure.security;
  */
 public class PrimeEncoder {
     
+    /** Textos encriptados por todas las instancias */
+    private static final Counter callCounter = MetricsRegistry.getDefault().counter("cipher.encode.calls");
+    
+    /** Caracteres encriptados por todas las instancias */
+    private static final Counter charCounter = MetricsRegistry.getDefault().counter("cipher.encode.chars");
+    
+    /** Tamaño maximo del buffer de trabajo que se conserva entre llamadas */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    
+    /** Buffer de trabajo reutilizado entre llamadas */
+    private char[] buffer;
+    
+    /** Cache opcional de resultados, compartible entre instancias */
+    private final CipherCache cache;
+    
+    /**
+    * Crea un codificador sin cache de resultados.
+    */
+    public PrimeEncoder() {
+        this(null);
+    }
+    
+    /**
+    * Crea un codificador que consulta una cache antes de transformar el texto.
+    * <p>
+    * La cache es segura entre hilos, por lo que puede compartirse entre
+    * instancias de distintos hilos.
+    * </p>
+    * 
+    * @param cache La cache de resultados, o null para no usar cache
+    */
+    public PrimeEncoder(CipherCache cache) {
+        this.cache = cache;
+    }
+    
     /**
     * Encripta un texto usando un codigo primo como clave.
     * <p>
@@ -34,29 +77,53 @@ public class PrimeEncoder {
             return plainText;
         }
         
-        StringBuilder encoded = new StringBuilder();
+        callCounter.increment();
+        charCounter.add(plainText.length());
         
-        for (int i = 0; i < plainText.length(); i++) {
-            char c = plainText.charAt(i);
-            
-            // Aplicar transformacion basada en el codigo primo
-            // Usar diferentes operaciones para diferentes posiciones
-            int shift = (primeCode % 26) + (i % 5);
-            char encChar;
-            
-            if (Character.isLetter(c)) {
-                char base = Character.isUpperCase(c) ? 'A' : 'a';
-                encChar = (char) (((c - base + shift) % 26) + base);
-            } else if (Character.isDigit(c)) {
-                encChar = (char) (((c - '0' + shift) % 10) + '0');
-            } else {
-                // Para caracteres especiales, aplicar un desplazamiento simple
-                encChar = (char) (c + (shift % 5));
+        if (cache != null) {
+            String cached = cache.get(plainText, primeCode, true);
+            if (cached != null) {
+                return cached;
             }
-            
-            encoded.append(encChar);
+            String result = transform(plainText, primeCode);
+            cache.put(plainText, primeCode, true, result);
+            return result;
         }
         
-        return encoded.toString();
+        return transform(plainText, primeCode);
+    }
+    
+    /**
+    * Aplica la transformacion sobre el buffer de trabajo.
+    */
+    private String transform(String plainText, int primeCode) {
+        int length = plainText.length();
+        char[] chars = buffer(length);
+        plainText.getChars(0, length, chars, 0);
+        
+        // La tabla aplica la misma transformacion por caracter que el algoritmo original
+        CipherTable.forEncoding(primeCode).apply(chars, 0, chars, 0, length, 0);
+        
+        return new String(chars, 0, length);
+    }
+    
+    /**
+    * Obtiene el buffer de trabajo, ampliandolo si es necesario.
+    * <p>
+    * Los textos muy grandes usan un buffer temporal para no retener memoria
+    * en instancias de larga duracion.
+    * </p>
+    * 
+    * @param length El numero de caracteres requeridos
+    * @return Un buffer con al menos la longitud requerida
+    */
+    private char[] buffer(int length) {
+        if (length > MAX_RETAINED_BUFFER) {
+            return new char[length];
+        }
+        if (buffer == null || buffer.length < length) {
+            buffer = new char[Math.max(length, 64)];
+        }
+        return buffer;
     }
 }
\ No newline at end of file
@@ -0,0 +1,253 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Cliente del servidor de encriptacion {@link EncryptionServer}.
+ * <p>
+ * Mantiene una conexion abierta y envia las solicitudes de forma sincrona, una
+ * a la vez; no debe compartirse entre hilos sin sincronizacion externa.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public class EncryptionClient implements AutoCloseable {
+    
+    /** Tamaño de bloque por defecto al procesar archivos, en caracteres */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    
+    /** El canal de la conexion */
+    private final SocketChannel channel;
+    
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    
+    /** Buffer de bytes reutilizado entre solicitudes */
+    private byte[] bytes = new byte[8192];
+    
+    /**
+    * Abre una conexion con el servidor.
+    * 
+    * @param address La direccion TCP o de dominio Unix del servidor
+    * @throws IOException Si no se puede conectar
+    */
+    public EncryptionClient(SocketAddress address) throws IOException {
+        this.channel = address instanceof UnixDomainSocketAddress
+            ? SocketChannel.open(StandardProtocolFamily.UNIX)
+            : SocketChannel.open();
+        channel.connect(address);
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+    
+    /**
+    * Verifica que el servidor responda.
+    * 
+    * @throws IOException Si falla la comunicacion
+    */
+    public void ping() throws IOException {
+        out.writeInt(1);
+        out.writeByte(Protocol.OP_PING);
+        out.flush();
+        readResponse();
+    }
+    
+    /**
+    * Encripta un texto en el servidor.
+    * 
+    * @param text El texto plano
+    * @param primeCode El codigo primo a usar como clave
+    * @return El texto encriptado
+    * @throws IOException Si falla la comunicacion o el servidor responde con un error
+    */
+    public String encrypt(String text, int primeCode) throws IOException {
+        return cipher(Protocol.OP_ENCRYPT, text, primeCode);
+    }
+    
+    /**
+    * Desencripta un texto en el servidor.
+    * 
+    * @param text El texto encriptado
+    * @param primeCode El codigo primo usado como clave
+    * @return El texto desencriptado
+    * @throws IOException Si falla la comunicacion o el servidor responde con un error
+    */
+    public String decrypt(String text, int primeCode) throws IOException {
+        return cipher(Protocol.OP_DECRYPT, text, primeCode);
+    }
+    
+    private String cipher(byte operation, String text, int primeCode) throws IOException {
+        char[] chars = text.toCharArray();
+        cipher(operation, chars, chars.length, primeCode, 0);
+        return new String(chars);
+    }
+    
+    /**
+    * Transforma un bloque de caracteres en el servidor, en su lugar.
+    */
+    private void cipher(byte operation, char[] chars, int count, int primeCode, long position) throws IOException {
+        int textBytes = count * 2;
+        byte[] buffer = bytes(textBytes);
+        Protocol.encodeChars(chars, buffer, count);
+        
+        out.writeInt(1 + Protocol.CIPHER_HEADER_LENGTH + textBytes);
+        out.writeByte(operation);
+        out.writeInt(primeCode);
+        out.writeLong(position);
+        out.write(buffer, 0, textBytes);
+        out.flush();
+        
+        int length = readResponse();
+        if (length != textBytes) {
+            throw new IOException("Respuesta de longitud inesperada: " + length);
+        }
+        in.readFully(buffer, 0, textBytes);
+        Protocol.decodeChars(buffer, chars, count);
+    }
+    
+    /**
+    * Encripta o desencripta un archivo de texto a traves del servidor.
+    * <p>
+    * El archivo se envia por bloques indicando la posicion de cada uno, por lo
+    * que el resultado es el mismo que el de
+    * {@link com.primesecure.security.FileEncryptor#processFileStreaming}.
+    * </p>
+    * 
+    * @param inputFile Ruta al archivo de entrada
+    * @param outputFile Ruta al archivo de salida
+    * @param primeCode Numero primo a usar para encriptacion/desencriptacion
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @param blockSize Tamaño de cada bloque, en caracteres
+    * @return El numero de caracteres procesados
+    * @throws IOException Si fallan las operaciones de archivo o la comunicacion
+    */
+    public long processFile(String inputFile, String outputFile, int primeCode,
+                            boolean encrypt, int blockSize) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("El tamaño del bloque debe ser mayor que cero");
+        }
+        byte operation = encrypt ? Protocol.OP_ENCRYPT : Protocol.OP_DECRYPT;
+        char[] block = new char[blockSize];
+        long position = 0;
+        
+        Charset charset = Charset.defaultCharset();
+        try (Reader reader = new InputStreamReader(Files.newInputStream(Paths.get(inputFile)), charset);
+             Writer writer = new OutputStreamWriter(Files.newOutputStream(Paths.get(outputFile)), charset)) {
+            int read;
+            while ((read = reader.read(block, 0, blockSize)) != -1) {
+                cipher(operation, block, read, primeCode, position);
+                writer.write(block, 0, read);
+                position += read;
+            }
+        }
+        return position;
+    }
+    
+    /**
+    * Consulta en el servidor si un numero es primo.
+    * 
+    * @param number El numero a verificar
+    * @return true si el numero es primo
+    * @throws IOException Si falla la comunicacion o el servidor responde con un error
+    */
+    public boolean isPrime(long number) throws IOException {
+        out.writeInt(9);
+        out.writeByte(Protocol.OP_IS_PRIME);
+        out.writeLong(number);
+        out.flush();
+        readResponse();
+        return in.readByte() == 1;
+    }
+    
+    /**
+    * Cuenta en el servidor los primos de un rango.
+    * 
+    * @param from El inicio del rango (inclusive)
+    * @param to El fin del rango (inclusive)
+    * @return El numero de primos del rango
+    * @throws IOException Si falla la comunicacion o el servidor responde con un error
+    */
+    public long countPrimes(long from, long to) throws IOException {
+        out.writeInt(17);
+        out.writeByte(Protocol.OP_COUNT_PRIMES);
+        out.writeLong(from);
+        out.writeLong(to);
+        out.flush();
+        readResponse();
+        return in.readLong();
+    }
+    
+    /**
+    * Obtiene las metricas del servidor.
+    * 
+    * @return Las metricas como una cadena
+    * @throws IOException Si falla la comunicacion
+    */
+    public String getStatistics() throws IOException {
+        out.writeInt(1);
+        out.writeByte(Protocol.OP_STATS);
+        out.flush();
+        int length = readResponse();
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+    
+    /**
+    * Lee la cabecera de una respuesta.
+    * 
+    * @return La longitud de los datos que siguen al estado
+    * @throws IOException Si falla la lectura o el servidor responde con un error
+    */
+    private int readResponse() throws IOException {
+        int length = Protocol.readFrameLength(in) - 1;
+        byte status = in.readByte();
+        if (status != Protocol.STATUS_OK) {
+            byte[] message = new byte[length];
+            in.readFully(message);
+            throw new IOException("Error del servidor: " + new String(message, StandardCharsets.UTF_8));
+        }
+        return length;
+    }
+    
+    private byte[] bytes(int length) {
+        if (bytes.length < length) {
+            bytes = new byte[length];
+        }
+        return bytes;
+    }
+    
+    /**
+    * Cierra la conexion con el servidor.
+    * 
+    * @throws IOException Si falla el cierre
+    */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
\ No newline at end of file
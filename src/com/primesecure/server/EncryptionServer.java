@@ -0,0 +1,426 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.server;
+
+import com.primesecure.metrics.Counter;
+import com.primesecure.metrics.LatencyHistogram;
+import com.primesecure.metrics.MetricsRegistry;
+import com.primesecure.model.PrimesList;
+import com.primesecure.security.CipherCache;
+import com.primesecure.security.CipherTable;
+import com.primesecure.security.PrimeDecoder;
+import com.primesecure.security.PrimeEncoder;
+import com.primesecure.util.PrimeCalculator;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servidor local de larga duracion para encriptar, desencriptar y consultar primos.
+ * <p>
+ * Escucha en un socket TCP o de dominio Unix y atiende cada conexion en un hilo
+ * virtual con E/S bloqueante, usando el protocolo de tramas con prefijo de
+ * longitud descrito en {@link Protocol}. Como el proceso no termina entre
+ * trabajos, las rutas criticas permanecen compiladas por el JIT y la cache de
+ * resultados compartida sigue caliente de una solicitud a otra.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public class EncryptionServer implements AutoCloseable {
+    
+    /** Numero maximo de conexiones simultaneas por defecto */
+    public static final int DEFAULT_MAX_CONNECTIONS = 256;
+    
+    /** Peso de la cache de resultados compartida entre conexiones, en caracteres */
+    private static final long CACHE_WEIGHT = 4 * 1024 * 1024;
+    
+    /** Longitud maxima de los textos que se guardan en la cache */
+    private static final int MAX_CACHED_LENGTH = 1024;
+    
+    /** Conexiones abiertas en todos los servidores */
+    private static final AtomicInteger activeConnections = new AtomicInteger();
+    
+    /** Latencia de cada solicitud atendida */
+    private static final LatencyHistogram requestLatency =
+        MetricsRegistry.getDefault().histogram("server.request.latency");
+    
+    /** Solicitudes atendidas por todos los servidores */
+    private static final Counter requestCounter = MetricsRegistry.getDefault().counter("server.requests");
+    
+    /** Conexiones rechazadas por superar el maximo */
+    private static final Counter rejectedCounter = MetricsRegistry.getDefault().counter("server.connections.rejected");
+    
+    static {
+        MetricsRegistry.getDefault().gauge("server.connections.active", activeConnections::get);
+    }
+    
+    /** La direccion solicitada */
+    private final SocketAddress address;
+    
+    /** Limita las conexiones simultaneas */
+    private final Semaphore connectionPermits;
+    
+    /** Cache de resultados compartida entre todas las conexiones */
+    private final CipherCache cache = new CipherCache(CACHE_WEIGHT, CipherCache.EvictionPolicy.TINY_LFU);
+    
+    /** Los canales de las conexiones abiertas */
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    
+    /** Se libera cuando el servidor se cierra */
+    private final CountDownLatch closed = new CountDownLatch(1);
+    
+    /** El canal que acepta conexiones, o null antes de iniciar */
+    private ServerSocketChannel serverChannel;
+    
+    /** El hilo que acepta conexiones */
+    private Thread acceptor;
+    
+    /**
+    * Crea un servidor con el maximo de conexiones por defecto.
+    * 
+    * @param address La direccion TCP o de dominio Unix donde escuchar
+    */
+    public EncryptionServer(SocketAddress address) {
+        this(address, DEFAULT_MAX_CONNECTIONS);
+    }
+    
+    /**
+    * Crea un servidor.
+    * 
+    * @param address La direccion TCP o de dominio Unix donde escuchar
+    * @param maxConnections El numero maximo de conexiones simultaneas
+    */
+    public EncryptionServer(SocketAddress address, int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("El maximo de conexiones debe ser mayor que cero");
+        }
+        this.address = address;
+        this.connectionPermits = new Semaphore(maxConnections);
+    }
+    
+    /**
+    * Interpreta una direccion del servidor.
+    * <p>
+    * Acepta {@code unix:/ruta/al/socket}, {@code host:puerto} o solo un puerto
+    * en la interfaz local.
+    * </p>
+    * 
+    * @param address La direccion como texto
+    * @return La direccion de socket correspondiente
+    * @throws IllegalArgumentException Si la direccion es invalida
+    */
+    public static SocketAddress parseAddress(String address) {
+        if (address.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+        }
+        int colon = address.lastIndexOf(':');
+        try {
+            if (colon < 0) {
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+            }
+            return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Direccion invalida: " + address);
+        }
+    }
+    
+    /**
+    * Abre el socket y comienza a aceptar conexiones.
+    * 
+    * @throws IOException Si no se puede abrir el socket
+    * @throws IllegalStateException Si el servidor ya fue iniciado
+    */
+    public synchronized void start() throws IOException {
+        if (serverChannel != null) {
+            throw new IllegalStateException("El servidor ya fue iniciado");
+        }
+        
+        if (address instanceof UnixDomainSocketAddress) {
+            // Un archivo de socket de una ejecucion anterior impediria el bind
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            serverChannel = ServerSocketChannel.open();
+        }
+        serverChannel.bind(address);
+        
+        acceptor = new Thread(this::acceptLoop, "EncryptionServer-acceptor");
+        acceptor.start();
+    }
+    
+    /**
+    * Obtiene la direccion en la que escucha el servidor.
+    * 
+    * @return La direccion local, incluyendo el puerto asignado
+    * @throws IOException Si no se puede obtener la direccion
+    */
+    public SocketAddress getLocalAddress() throws IOException {
+        return serverChannel.getLocalAddress();
+    }
+    
+    /**
+    * Espera hasta que el servidor se cierre.
+    * 
+    * @throws InterruptedException Si el hilo es interrumpido mientras espera
+    */
+    public void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+    
+    /**
+    * Deja de aceptar conexiones y cierra las conexiones abiertas.
+    * 
+    * @throws IOException Si falla el cierre del socket
+    */
+    @Override
+    public synchronized void close() throws IOException {
+        if (serverChannel == null || !serverChannel.isOpen()) {
+            return;
+        }
+        try {
+            serverChannel.close();
+            for (SocketChannel connection : connections) {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    // La conexion ya no se usara; el resto se sigue cerrando
+                }
+            }
+            if (address instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            }
+        } finally {
+            closed.countDown();
+        }
+    }
+    
+    /**
+    * Acepta conexiones y atiende cada una en un hilo virtual.
+    */
+    private void acceptLoop() {
+        while (serverChannel.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                System.err.println("Error aceptando conexion: " + e.getMessage());
+                continue;
+            }
+            
+            if (!connectionPermits.tryAcquire()) {
+                rejectedCounter.increment();
+                closeQuietly(channel);
+                continue;
+            }
+            connections.add(channel);
+            Thread.ofVirtual().name("EncryptionServer-connection").start(() -> {
+                activeConnections.incrementAndGet();
+                try {
+                    serve(channel);
+                } finally {
+                    activeConnections.decrementAndGet();
+                    connections.remove(channel);
+                    connectionPermits.release();
+                    closeQuietly(channel);
+                }
+            });
+        }
+    }
+    
+    /**
+    * Atiende las solicitudes de una conexion hasta que el cliente la cierra.
+    */
+    private void serve(SocketChannel channel) {
+        ConnectionState state = new ConnectionState();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            while (true) {
+                int length;
+                try {
+                    length = Protocol.readFrameLength(in);
+                } catch (EOFException e) {
+                    return;
+                }
+                long startTime = System.nanoTime();
+                byte operation = in.readByte();
+                try {
+                    handle(operation, length - 1, in, out, state);
+                } catch (RuntimeException e) {
+                    // La trama pudo quedar a medio leer: se responde con el error y se cierra la conexion
+                    Protocol.writeError(out, "Error interno: " + e);
+                    out.flush();
+                    return;
+                }
+                out.flush();
+                requestCounter.increment();
+                requestLatency.recordSince(startTime);
+            }
+        } catch (IOException e) {
+            // El cliente cerro la conexion o envio una trama invalida
+        }
+    }
+    
+    /**
+    * Atiende una solicitud y escribe su respuesta.
+    */
+    private void handle(byte operation, int payloadLength, DataInputStream in,
+                        DataOutputStream out, ConnectionState state) throws IOException {
+        switch (operation) {
+            case Protocol.OP_PING:
+                in.skipNBytes(payloadLength);
+                writeOk(out, new byte[0]);
+                break;
+            case Protocol.OP_ENCRYPT:
+            case Protocol.OP_DECRYPT:
+                handleCipher(operation == Protocol.OP_ENCRYPT, payloadLength, in, out, state);
+                break;
+            case Protocol.OP_IS_PRIME: {
+                if (payloadLength != 8) {
+                    in.skipNBytes(payloadLength);
+                    Protocol.writeError(out, "Solicitud de primalidad invalida");
+                    break;
+                }
+                long number = in.readLong();
+                writeOk(out, new byte[] {(byte) (PrimesList.isPrime(number) ? 1 : 0)});
+                break;
+            }
+            case Protocol.OP_COUNT_PRIMES: {
+                if (payloadLength != 16) {
+                    in.skipNBytes(payloadLength);
+                    Protocol.writeError(out, "Solicitud de conteo invalida");
+                    break;
+                }
+                long from = in.readLong();
+                long to = in.readLong();
+                long count;
+                try {
+                    count = PrimeCalculator.countPrimes(from, to);
+                } catch (IllegalArgumentException e) {
+                    Protocol.writeError(out, e.getMessage());
+                    break;
+                }
+                out.writeInt(9);
+                out.writeByte(Protocol.STATUS_OK);
+                out.writeLong(count);
+                break;
+            }
+            case Protocol.OP_STATS:
+                in.skipNBytes(payloadLength);
+                writeOk(out, MetricsRegistry.getDefault().getStatistics().getBytes(StandardCharsets.UTF_8));
+                break;
+            default:
+                in.skipNBytes(payloadLength);
+                Protocol.writeError(out, "Operacion desconocida: " + operation);
+        }
+    }
+    
+    /**
+    * Encripta o desencripta el texto de una solicitud.
+    * <p>
+    * Los textos cortos que comienzan en la posicion 0 pasan por la cache
+    * compartida; los bloques de un texto largo se transforman directamente con
+    * la tabla de la clave, a partir de la posicion indicada.
+    * </p>
+    */
+    private void handleCipher(boolean encrypt, int payloadLength, DataInputStream in,
+                              DataOutputStream out, ConnectionState state) throws IOException {
+        int textBytes = payloadLength - Protocol.CIPHER_HEADER_LENGTH;
+        if (textBytes < 0 || textBytes % 2 != 0) {
+            in.skipNBytes(payloadLength);
+            Protocol.writeError(out, "Solicitud de encriptacion invalida");
+            return;
+        }
+        int primeCode = in.readInt();
+        long position = in.readLong();
+        if (position < 0) {
+            in.skipNBytes(textBytes);
+            Protocol.writeError(out, "Posicion invalida: " + position);
+            return;
+        }
+        int count = textBytes / 2;
+        
+        byte[] bytes = state.bytes(textBytes);
+        char[] chars = state.chars(count);
+        in.readFully(bytes, 0, textBytes);
+        Protocol.decodeChars(bytes, chars, count);
+        
+        if (position == 0 && count <= MAX_CACHED_LENGTH) {
+            String text = new String(chars, 0, count);
+            String result = encrypt ? state.encoder.encode(text, primeCode) : state.decoder.decode(text, primeCode);
+            result.getChars(0, count, chars, 0);
+        } else {
+            CipherTable table = encrypt ? CipherTable.forEncoding(primeCode) : CipherTable.forDecoding(primeCode);
+            table.apply(chars, 0, chars, 0, count, position);
+        }
+        
+        Protocol.encodeChars(chars, bytes, count);
+        out.writeInt(1 + textBytes);
+        out.writeByte(Protocol.STATUS_OK);
+        out.write(bytes, 0, textBytes);
+    }
+    
+    private static void writeOk(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(1 + payload.length);
+        out.writeByte(Protocol.STATUS_OK);
+        out.write(payload);
+    }
+    
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // No hay nada mas que hacer con un canal que no se puede cerrar
+        }
+    }
+    
+    /**
+    * Buffers y codificadores reutilizados por todas las solicitudes de una conexion.
+    */
+    private final class ConnectionState {
+        private final PrimeEncoder encoder = new PrimeEncoder(cache);
+        private final PrimeDecoder decoder = new PrimeDecoder(cache);
+        private byte[] bytes = new byte[8192];
+        private char[] chars = new char[4096];
+        
+        byte[] bytes(int length) {
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            return bytes;
+        }
+        
+        char[] chars(int length) {
+            if (chars.length < length) {
+                chars = new char[length];
+            }
+            return chars;
+        }
+    }
+}
\ No newline at end of file
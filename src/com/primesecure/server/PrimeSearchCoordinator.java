@@ -0,0 +1,551 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.server;
+
+import com.primesecure.metrics.Counter;
+import com.primesecure.metrics.MetricsRegistry;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Coordinador de una busqueda de primos repartida entre procesos trabajadores.
+ * <p>
+ * El rango se divide en unidades de trabajo consecutivas que se prestan a los
+ * {@link PrimeSearchWorker} conectados por socket, con el protocolo de
+ * {@link WorkProtocol}. Un prestamo vence si el trabajador cierra la conexion
+ * o no entrega el resultado antes del plazo, y la unidad vuelve a prestarse a
+ * otro trabajador; si el resultado original llega despues, el primero en
+ * llegar gana y el otro se descarta.
+ * </p>
+ * <p>
+ * Los resultados se entregan al consumidor en el orden del rango aunque las
+ * unidades terminen desordenadas, fuera del monitor del coordinador para que
+ * un consumidor lento no detenga los prestamos. Para acotar la memoria, cada
+ * unidad prestada reserva una estimacion de los bytes de sus primos, que se
+ * cambia por los bytes reales al terminar y se libera al entregarla; no se
+ * presta una unidad nueva si la reserva supera un cuarto del heap maximo, y
+ * los trabajadores que piden mientras tanto reciben {@code WAIT}.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public class PrimeSearchCoordinator implements AutoCloseable {
+    
+    /** Numeros por unidad de trabajo por defecto */
+    public static final long DEFAULT_UNIT_SIZE = 1L << 24;
+    
+    /** Mayor unidad admitida, para que el resultado con primos quepa en una trama */
+    public static final long MAX_UNIT_SIZE = 1L << 28;
+    
+    /** Plazo por defecto para entregar una unidad prestada */
+    public static final long DEFAULT_LEASE_TIMEOUT_MILLIS = 60_000;
+    
+    /** Primos por numero por encima de la densidad 1/ln(x), para no quedarse corto al estimar */
+    private static final double PRIME_DENSITY_MARGIN = 1.26;
+    
+    /** Espera indicada a un trabajador cuando no hay unidades disponibles */
+    private static final int WAIT_MILLIS = 200;
+    
+    /** Tiempo que se espera al cerrar a que los trabajadores reciban FINISHED y desconecten */
+    private static final long CLOSE_GRACE_MILLIS = 2_000;
+    
+    /** Resultados de assign: no hay unidad disponible por ahora, o ya no queda trabajo */
+    private static final long NO_UNIT = -1;
+    private static final long ALL_DONE = -2;
+    
+    /** Trabajadores conectados a todos los coordinadores */
+    private static final AtomicInteger activeWorkers = new AtomicInteger();
+    
+    /** Unidades terminadas */
+    private static final Counter completedCounter = MetricsRegistry.getDefault().counter("cluster.units.completed");
+    
+    /** Unidades prestadas de nuevo porque su prestamo vencio */
+    private static final Counter releasedCounter = MetricsRegistry.getDefault().counter("cluster.units.released");
+    
+    static {
+        MetricsRegistry.getDefault().gauge("cluster.workers.active", activeWorkers::get);
+    }
+    
+    private final SocketAddress address;
+    private final long startRange;
+    private final long endRange;
+    private final long unitSize;
+    private final long unitCount;
+    private final long leaseTimeoutNanos;
+    
+    /** Recibe los primos en orden, o null si solo se cuentan */
+    private final LongConsumer consumer;
+    
+    /** Siguiente unidad que nunca se ha prestado */
+    private long nextUnit;
+    
+    /** Unidades cuyo prestamo vencio, a prestar antes que las nuevas */
+    private final ArrayDeque<Long> released = new ArrayDeque<>();
+    
+    /** Prestamos en curso por unidad */
+    private final Map<Long, Lease> leases = new HashMap<>();
+    
+    /** Resultados terminados que esperan a las unidades anteriores */
+    private final TreeMap<Long, long[]> completed = new TreeMap<>();
+    
+    /** Cantidades de primos de los resultados terminados */
+    private final Map<Long, Long> completedCounts = new HashMap<>();
+    
+    /** Siguiente unidad a entregar al consumidor */
+    private long nextToEmit;
+    
+    /** Bytes reservados por las unidades prestadas, terminadas o en entrega */
+    private long reservedBytes;
+    
+    /** Mayor reserva con la que todavia se presta una unidad nueva */
+    private final long reservedByteLimit = Runtime.getRuntime().maxMemory() / 4;
+    
+    /** Indica si algun hilo esta entregando resultados al consumidor */
+    private boolean emitting;
+    
+    /** Primos entregados */
+    private long totalFound;
+    
+    /** Error del consumidor, que termina la busqueda */
+    private RuntimeException failure;
+    
+    /** Se libera cuando todas las unidades se entregaron o la busqueda fallo */
+    private final CountDownLatch finished = new CountDownLatch(1);
+    
+    /** Los canales de los trabajadores conectados */
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    
+    /** El canal que acepta conexiones, o null antes de iniciar */
+    private ServerSocketChannel serverChannel;
+    
+    /**
+    * Crea un coordinador con el plazo de prestamo por defecto.
+    * 
+    * @param address La direccion TCP o de dominio Unix donde escuchar
+    * @param startRange El inicio del rango (inclusive)
+    * @param endRange El fin del rango (inclusive)
+    * @param unitSize Los numeros por unidad de trabajo
+    * @param consumer Recibe cada primo en orden creciente, o null para solo contarlos
+    */
+    public PrimeSearchCoordinator(SocketAddress address, long startRange, long endRange,
+                                  long unitSize, LongConsumer consumer) {
+        this(address, startRange, endRange, unitSize, consumer, DEFAULT_LEASE_TIMEOUT_MILLIS);
+    }
+    
+    /**
+    * Crea un coordinador.
+    * 
+    * @param address La direccion TCP o de dominio Unix donde escuchar
+    * @param startRange El inicio del rango (inclusive)
+    * @param endRange El fin del rango (inclusive)
+    * @param unitSize Los numeros por unidad de trabajo
+    * @param consumer Recibe cada primo en orden creciente, o null para solo contarlos
+    * @param leaseTimeoutMillis El plazo para entregar una unidad antes de prestarla a otro trabajador
+    */
+    public PrimeSearchCoordinator(SocketAddress address, long startRange, long endRange,
+                                  long unitSize, LongConsumer consumer, long leaseTimeoutMillis) {
+        if (startRange < 2) startRange = 2; // El primer numero primo es 2
+        if (endRange < startRange) {
+            throw new IllegalArgumentException("El rango final debe ser mayor o igual al rango inicial");
+        }
+        if (unitSize < 1 || unitSize > MAX_UNIT_SIZE) {
+            throw new IllegalArgumentException("El tamaño de unidad debe estar entre 1 y " + MAX_UNIT_SIZE);
+        }
+        if (leaseTimeoutMillis < 1) {
+            throw new IllegalArgumentException("El plazo de prestamo debe ser mayor que cero");
+        }
+        this.address = address;
+        this.startRange = startRange;
+        this.endRange = endRange;
+        this.unitSize = unitSize;
+        this.unitCount = (endRange - startRange) / unitSize + 1;
+        this.consumer = consumer;
+        this.leaseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(leaseTimeoutMillis);
+    }
+    
+    /**
+    * Abre el socket y comienza a aceptar trabajadores.
+    * 
+    * @throws IOException Si no se puede abrir el socket
+    * @throws IllegalStateException Si el coordinador ya fue iniciado
+    */
+    public synchronized void start() throws IOException {
+        if (serverChannel != null) {
+            throw new IllegalStateException("El coordinador ya fue iniciado");
+        }
+        
+        if (address instanceof UnixDomainSocketAddress) {
+            // Un archivo de socket de una ejecucion anterior impediria el bind
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            serverChannel = ServerSocketChannel.open();
+        }
+        serverChannel.bind(address);
+        
+        Thread acceptor = new Thread(this::acceptLoop, "PrimeSearchCoordinator-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    
+    /**
+    * Obtiene la direccion en la que escucha el coordinador.
+    * 
+    * @return La direccion local, incluyendo el puerto asignado
+    * @throws IOException Si no se puede obtener la direccion
+    */
+    public SocketAddress getLocalAddress() throws IOException {
+        return serverChannel.getLocalAddress();
+    }
+    
+    /**
+    * Obtiene el numero de unidades de trabajo del rango.
+    * 
+    * @return El numero de unidades
+    */
+    public long getUnitCount() {
+        return unitCount;
+    }
+    
+    /**
+    * Espera hasta que todas las unidades se hayan entregado al consumidor.
+    * 
+    * @return El numero de primos del rango
+    * @throws InterruptedException Si el hilo es interrumpido mientras espera
+    * @throws IllegalStateException Si el consumidor fallo durante la busqueda
+    */
+    public long awaitCompletion() throws InterruptedException {
+        finished.await();
+        synchronized (this) {
+            if (failure != null) {
+                throw new IllegalStateException("La busqueda distribuida fallo: " + failure.getMessage(), failure);
+            }
+            return totalFound;
+        }
+    }
+    
+    /**
+    * Deja de aceptar trabajadores y cierra las conexiones.
+    * <p>
+    * Primero espera un momento a que los trabajadores conectados reciban
+    * {@code FINISHED} y se desconecten por su cuenta.
+    * </p>
+    * 
+    * @throws IOException Si falla el cierre del socket
+    */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (serverChannel == null || !serverChannel.isOpen()) {
+                return;
+            }
+            serverChannel.close();
+        }
+        
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_GRACE_MILLIS);
+        while (!connections.isEmpty() && finished.getCount() == 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (SocketChannel connection : connections) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                // La conexion ya no se usara; el resto se sigue cerrando
+            }
+        }
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+    
+    /**
+    * Acepta trabajadores y atiende cada uno en un hilo virtual.
+    */
+    private void acceptLoop() {
+        while (serverChannel.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                System.err.println("Error aceptando trabajador: " + e.getMessage());
+                continue;
+            }
+            
+            connections.add(channel);
+            Thread.ofVirtual().name("PrimeSearchCoordinator-worker").start(() -> {
+                activeWorkers.incrementAndGet();
+                try {
+                    serve(channel);
+                } finally {
+                    activeWorkers.decrementAndGet();
+                    connections.remove(channel);
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        // La conexion ya no se usara
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+    * Atiende las solicitudes de un trabajador; al desconectarse, sus unidades se prestan de nuevo.
+    */
+    private void serve(SocketChannel channel) {
+        Object owner = new Object();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            while (true) {
+                int length;
+                try {
+                    length = Protocol.readFrameLength(in);
+                } catch (EOFException e) {
+                    return;
+                }
+                byte operation = in.readByte();
+                if (operation == WorkProtocol.OP_RESULT) {
+                    if (length - 1 < WorkProtocol.RESULT_HEADER_LENGTH) {
+                        Protocol.writeError(out, "Resultado invalido");
+                        out.flush();
+                        return;
+                    }
+                    long unit = in.readLong();
+                    long count = in.readLong();
+                    byte[] encoded = new byte[length - 1 - WorkProtocol.RESULT_HEADER_LENGTH];
+                    in.readFully(encoded);
+                    if (unit < 0 || unit >= unitCount || count < 0) {
+                        Protocol.writeError(out, "Unidad invalida: " + unit);
+                        out.flush();
+                        return;
+                    }
+                    long[] primes = consumer == null
+                        ? null
+                        : WorkProtocol.decodeGaps(encoded, count, unitStart(unit) - 1);
+                    complete(unit, count, primes);
+                } else if (operation != WorkProtocol.OP_REQUEST) {
+                    in.skipNBytes(length - 1);
+                    Protocol.writeError(out, "Operacion desconocida: " + operation);
+                    out.flush();
+                    return;
+                }
+                reply(out, assign(owner));
+                out.flush();
+            }
+        } catch (IOException e) {
+            // El trabajador cerro la conexion o envio una trama invalida
+        } finally {
+            release(owner);
+        }
+    }
+    
+    private void reply(DataOutputStream out, long unit) throws IOException {
+        if (unit == ALL_DONE) {
+            out.writeInt(1);
+            out.writeByte(WorkProtocol.OP_FINISHED);
+        } else if (unit == NO_UNIT) {
+            out.writeInt(5);
+            out.writeByte(WorkProtocol.OP_WAIT);
+            out.writeInt(WAIT_MILLIS);
+        } else {
+            out.writeInt(26);
+            out.writeByte(WorkProtocol.OP_ASSIGN);
+            out.writeLong(unit);
+            out.writeLong(unitStart(unit));
+            out.writeLong(unitEnd(unit));
+            out.writeByte(consumer != null ? 1 : 0);
+        }
+    }
+    
+    private long unitStart(long unit) {
+        return startRange + unit * unitSize;
+    }
+    
+    private long unitEnd(long unit) {
+        return unit == unitCount - 1 ? endRange : unitStart(unit) + unitSize - 1;
+    }
+    
+    /**
+    * Elige la siguiente unidad a prestar: primero las vencidas, luego las nuevas.
+    */
+    private synchronized long assign(Object owner) {
+        if (finished.getCount() == 0) {
+            return ALL_DONE;
+        }
+        
+        long now = System.nanoTime();
+        for (Iterator<Lease> it = leases.values().iterator(); it.hasNext();) {
+            Lease lease = it.next();
+            if (now - lease.deadline > 0) {
+                it.remove();
+                released.add(lease.unit);
+                releasedCounter.increment();
+            }
+        }
+        
+        Long unit = released.poll();
+        if (unit == null) {
+            if (nextUnit >= unitCount) {
+                return NO_UNIT;
+            }
+            // La siguiente unidad a entregar siempre se presta, para que la busqueda avance
+            long estimate = estimateBytes(nextUnit);
+            if (nextUnit > nextToEmit && reservedBytes + estimate > reservedByteLimit) {
+                return NO_UNIT;
+            }
+            reservedBytes += estimate;
+            unit = nextUnit++;
+        }
+        leases.put(unit, new Lease(unit, now + leaseTimeoutNanos, owner));
+        return unit;
+    }
+    
+    /**
+    * Registra el resultado de una unidad y entrega en orden los que ya no esperan a otros.
+    * <p>
+    * Solo un hilo entrega a la vez; si otro ya esta entregando, este solo
+    * registra el resultado y el otro lo entrega cuando le toque.
+    * </p>
+    */
+    private void complete(long unit, long count, long[] primes) {
+        synchronized (this) {
+            if (unit < nextToEmit || completedCounts.containsKey(unit) || finished.getCount() == 0) {
+                // Resultado repetido de un prestamo vencido que otro trabajador ya entrego
+                return;
+            }
+            leases.remove(unit);
+            released.remove(unit);
+            completedCounts.put(unit, count);
+            if (primes != null) {
+                completed.put(unit, primes);
+                reservedBytes += (long) primes.length * Long.BYTES - estimateBytes(unit);
+            }
+            completedCounter.increment();
+            if (emitting) {
+                return;
+            }
+            emitting = true;
+        }
+        emitReady();
+    }
+    
+    /**
+    * Entrega al consumidor, sin tener el monitor, las unidades terminadas que siguen en orden.
+    */
+    private void emitReady() {
+        while (true) {
+            long emitCount;
+            long[] emitPrimes;
+            synchronized (this) {
+                if (!completedCounts.containsKey(nextToEmit) || failure != null) {
+                    emitting = false;
+                    if (nextToEmit == unitCount) {
+                        finished.countDown();
+                    }
+                    return;
+                }
+                emitCount = completedCounts.remove(nextToEmit);
+                emitPrimes = completed.remove(nextToEmit);
+                // Avanzar antes de entregar, para descartar un resultado repetido de esta unidad
+                nextToEmit++;
+            }
+            
+            try {
+                if (emitPrimes != null) {
+                    for (long prime : emitPrimes) {
+                        consumer.accept(prime);
+                    }
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    failure = e;
+                    emitting = false;
+                }
+                finished.countDown();
+                return;
+            }
+            
+            synchronized (this) {
+                totalFound += emitCount;
+                if (emitPrimes != null) {
+                    reservedBytes -= (long) emitPrimes.length * Long.BYTES;
+                }
+            }
+        }
+    }
+    
+    /**
+    * Estima con margen los bytes de los primos de una unidad, o 0 si solo se cuentan.
+    */
+    private long estimateBytes(long unit) {
+        if (consumer == null) {
+            return 0;
+        }
+        double density = PRIME_DENSITY_MARGIN / Math.log(Math.max(unitStart(unit), 17));
+        return (long) ((unitEnd(unit) - unitStart(unit) + 1) * density) * Long.BYTES;
+    }
+    
+    /**
+    * Devuelve a la cola las unidades prestadas a un trabajador desconectado.
+    */
+    private synchronized void release(Object owner) {
+        for (Iterator<Lease> it = leases.values().iterator(); it.hasNext();) {
+            Lease lease = it.next();
+            if (lease.owner == owner) {
+                it.remove();
+                released.add(lease.unit);
+                releasedCounter.increment();
+            }
+        }
+    }
+    
+    /**
+    * Un prestamo de una unidad a un trabajador.
+    */
+    private static final class Lease {
+        private final long unit;
+        private final long deadline;
+        private final Object owner;
+        
+        Lease(long unit, long deadline, Object owner) {
+            this.unit = unit;
+            this.deadline = deadline;
+            this.owner = owner;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,189 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.server;
+
+import com.primesecure.model.LongPrimesList;
+import com.primesecure.util.SegmentedSieve;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Trabajador de una busqueda de primos distribuida.
+ * <p>
+ * Abre una conexion con el {@link PrimeSearchCoordinator} por cada hilo y en
+ * cada una pide unidades, las criba con {@link SegmentedSieve} y devuelve la
+ * cantidad de primos o los primos, hasta que el coordinador indica que no
+ * queda trabajo. Como cada hilo tiene su propio prestamo, un hilo lento no
+ * retiene a los demas y el reparto se equilibra solo.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public class PrimeSearchWorker implements AutoCloseable {
+    
+    private final SocketAddress coordinator;
+    private final int threadCount;
+    
+    /** Unidades terminadas por este trabajador */
+    private final AtomicLong unitsCompleted = new AtomicLong();
+    
+    /** Las conexiones abiertas, para poder cerrarlas desde otro hilo */
+    private final Set<SocketChannel> channels = ConcurrentHashMap.newKeySet();
+    
+    /**
+    * Crea un trabajador.
+    * 
+    * @param coordinator La direccion TCP o de dominio Unix del coordinador
+    * @param threadCount El numero de hilos, cada uno con su propia conexion
+    */
+    public PrimeSearchWorker(SocketAddress coordinator, int threadCount) {
+        this.coordinator = coordinator;
+        this.threadCount = Math.max(1, threadCount);
+    }
+    
+    /**
+    * Procesa unidades hasta que el coordinador indique que no queda trabajo.
+    * 
+    * @return El numero de unidades terminadas por este trabajador
+    * @throws IOException Si falla la conexion con el coordinador
+    * @throws InterruptedException Si el hilo es interrumpido mientras espera
+    */
+    public long run() throws IOException, InterruptedException {
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    work();
+                } catch (IOException e) {
+                    if (failure.compareAndSet(null, e)) {
+                        // Sin coordinador los demas hilos tampoco pueden seguir
+                        close();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "PrimeSearchWorker-" + (i + 1));
+            threads.add(thread);
+            thread.start();
+        }
+        
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            close();
+            throw e;
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return unitsCompleted.get();
+    }
+    
+    /**
+    * Obtiene el numero de unidades terminadas hasta ahora.
+    * 
+    * @return Las unidades terminadas
+    */
+    public long getUnitsCompleted() {
+        return unitsCompleted.get();
+    }
+    
+    /**
+    * Cierra las conexiones; los hilos en curso terminan con un error de E/S.
+    */
+    @Override
+    public void close() {
+        for (SocketChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // La conexion ya no se usara; el resto se sigue cerrando
+            }
+        }
+    }
+    
+    /**
+    * Atiende unidades por una conexion propia hasta recibir FINISHED.
+    */
+    private void work() throws IOException, InterruptedException {
+        SocketChannel channel = coordinator instanceof UnixDomainSocketAddress
+            ? SocketChannel.open(StandardProtocolFamily.UNIX)
+            : SocketChannel.open();
+        channels.add(channel);
+        try (channel) {
+            channel.connect(coordinator);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            
+            out.writeInt(1);
+            out.writeByte(WorkProtocol.OP_REQUEST);
+            out.flush();
+            while (true) {
+                int length = Protocol.readFrameLength(in);
+                byte operation = in.readByte();
+                if (operation == WorkProtocol.OP_FINISHED) {
+                    return;
+                }
+                if (operation == WorkProtocol.OP_WAIT) {
+                    Thread.sleep(in.readInt());
+                    out.writeInt(1);
+                    out.writeByte(WorkProtocol.OP_REQUEST);
+                    out.flush();
+                    continue;
+                }
+                if (operation != WorkProtocol.OP_ASSIGN) {
+                    byte[] message = in.readNBytes(length - 1);
+                    throw new IOException("El coordinador respondio: " + new String(message, StandardCharsets.UTF_8));
+                }
+                
+                long unit = in.readLong();
+                long from = in.readLong();
+                long to = in.readLong();
+                boolean collect = in.readByte() != 0;
+                
+                long count;
+                byte[] encoded;
+                if (collect) {
+                    LongPrimesList primes = SegmentedSieve.primes(from, to);
+                    count = primes.size();
+                    encoded = WorkProtocol.encodeGaps(primes, from - 1);
+                } else {
+                    count = SegmentedSieve.countPrimes(from, to);
+                    encoded = new byte[0];
+                }
+                out.writeInt(1 + WorkProtocol.RESULT_HEADER_LENGTH + encoded.length);
+                out.writeByte(WorkProtocol.OP_RESULT);
+                out.writeLong(unit);
+                out.writeLong(count);
+                out.write(encoded);
+                out.flush();
+                unitsCompleted.incrementAndGet();
+            }
+        } finally {
+            channels.remove(channel);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Constantes y utilidades del protocolo binario del servidor de encriptacion.
+ * <p>
+ * Cada trama comienza con un entero de 4 bytes (big-endian) con la longitud del
+ * resto de la trama. Una solicitud continua con un byte de operacion y los
+ * datos de la operacion; una respuesta continua con un byte de estado y los
+ * datos del resultado.
+ * </p>
+ * <ul>
+ * <li>{@code PING}: sin datos; responde sin datos.</li>
+ * <li>{@code ENCRYPT} / {@code DECRYPT}: int codigo primo, long posicion del
+ * primer caracter y el texto en UTF-16BE; responde el texto transformado en
+ * UTF-16BE. La posicion permite procesar un texto largo en varios bloques.</li>
+ * <li>{@code IS_PRIME}: long numero; responde un byte 1 o 0.</li>
+ * <li>{@code COUNT_PRIMES}: long inicio y long fin (inclusive); responde un long.</li>
+ * <li>{@code STATS}: sin datos; responde las metricas en UTF-8.</li>
+ * </ul>
+ * <p>
+ * Un estado {@code STATUS_ERROR} va seguido de un mensaje de error en UTF-8.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+final class Protocol {
+    
+    static final byte OP_PING = 0;
+    static final byte OP_ENCRYPT = 1;
+    static final byte OP_DECRYPT = 2;
+    static final byte OP_IS_PRIME = 3;
+    static final byte OP_COUNT_PRIMES = 4;
+    static final byte OP_STATS = 5;
+    
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+    
+    /** Longitud maxima de una trama, para rechazar solicitudes corruptas */
+    static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+    
+    /** Bytes de la cabecera de ENCRYPT/DECRYPT: codigo primo y posicion */
+    static final int CIPHER_HEADER_LENGTH = 12;
+    
+    private Protocol() {
+    }
+    
+    /**
+    * Lee la longitud de una trama y la valida.
+    * 
+    * @param in El flujo de entrada
+    * @return La longitud del resto de la trama
+    * @throws IOException Si la longitud es invalida o falla la lectura
+    */
+    static int readFrameLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Longitud de trama invalida: " + length);
+        }
+        return length;
+    }
+    
+    /**
+    * Convierte bytes UTF-16BE en caracteres.
+    * 
+    * @param bytes Los bytes leidos
+    * @param chars El buffer donde guardar los caracteres
+    * @param count El numero de caracteres a convertir
+    */
+    static void decodeChars(byte[] bytes, char[] chars, int count) {
+        for (int i = 0, b = 0; i < count; i++, b += 2) {
+            chars[i] = (char) (((bytes[b] & 0xFF) << 8) | (bytes[b + 1] & 0xFF));
+        }
+    }
+    
+    /**
+    * Convierte caracteres en bytes UTF-16BE.
+    * 
+    * @param chars Los caracteres a convertir
+    * @param bytes El buffer donde guardar los bytes
+    * @param count El numero de caracteres a convertir
+    */
+    static void encodeChars(char[] chars, byte[] bytes, int count) {
+        for (int i = 0, b = 0; i < count; i++, b += 2) {
+            bytes[b] = (byte) (chars[i] >>> 8);
+            bytes[b + 1] = (byte) chars[i];
+        }
+    }
+    
+    /**
+    * Escribe una respuesta de error.
+    * 
+    * @param out El flujo de salida
+    * @param message El mensaje de error
+    * @throws IOException Si falla la escritura
+    */
+    static void writeError(DataOutputStream out, String message) throws IOException {
+        byte[] bytes = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(1 + bytes.length);
+        out.writeByte(STATUS_ERROR);
+        out.write(bytes);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,110 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.server;
+
+import com.primesecure.model.LongPrimesList;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Constantes y utilidades del protocolo entre {@link PrimeSearchCoordinator} y
+ * {@link PrimeSearchWorker}.
+ * <p>
+ * Usa las mismas tramas con prefijo de longitud que {@link Protocol}: un entero
+ * de 4 bytes con la longitud del resto, un byte de operacion y los datos.
+ * </p>
+ * <ul>
+ * <li>{@code REQUEST} (trabajador): sin datos; pide una unidad de trabajo.</li>
+ * <li>{@code RESULT} (trabajador): long unidad, long cantidad de primos y, si la
+ * unidad pide los primos, sus distancias sucesivas como enteros de longitud
+ * variable; tambien pide la siguiente unidad.</li>
+ * <li>{@code ASSIGN} (coordinador): long unidad, long inicio, long fin y un byte
+ * 1 si se deben enviar los primos o 0 si basta la cantidad.</li>
+ * <li>{@code WAIT} (coordinador): int milisegundos a esperar antes de volver a pedir.</li>
+ * <li>{@code FINISHED} (coordinador): sin datos; no queda trabajo.</li>
+ * </ul>
+ * <p>
+ * Un error usa el byte {@link Protocol#STATUS_ERROR} seguido del mensaje en UTF-8.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+final class WorkProtocol {
+    
+    static final byte OP_REQUEST = 0;
+    static final byte OP_ASSIGN = 2;
+    static final byte OP_WAIT = 3;
+    static final byte OP_FINISHED = 4;
+    static final byte OP_RESULT = 5;
+    
+    /** Bytes fijos de RESULT despues de la operacion: unidad y cantidad */
+    static final int RESULT_HEADER_LENGTH = 16;
+    
+    private WorkProtocol() {
+    }
+    
+    /**
+    * Codifica los primos como distancias sucesivas, de 1 a 2 bytes por primo en la practica.
+    * 
+    * @param primes Los primos en orden creciente
+    * @param previous El valor anterior al primer primo, normalmente el inicio de la unidad menos 1
+    * @return Los bytes codificados
+    */
+    static byte[] encodeGaps(LongPrimesList primes, long previous) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(primes.size() * 2);
+        for (int i = 0; i < primes.size(); i++) {
+            long prime = primes.getLong(i);
+            long gap = prime - previous;
+            while ((gap & ~0x7FL) != 0) {
+                bytes.write((int) ((gap & 0x7F) | 0x80));
+                gap >>>= 7;
+            }
+            bytes.write((int) gap);
+            previous = prime;
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+    * Decodifica los primos de una unidad.
+    * 
+    * @param bytes Los bytes codificados
+    * @param count La cantidad de primos esperada
+    * @param previous El mismo valor inicial usado al codificar
+    * @return Los primos
+    * @throws IOException Si los datos no contienen exactamente count primos
+    */
+    static long[] decodeGaps(byte[] bytes, long count, long previous) throws IOException {
+        if (count > bytes.length) {
+            throw new IOException("Cantidad de primos invalida: " + count);
+        }
+        long[] primes = new long[(int) count];
+        int position = 0;
+        for (int i = 0; i < primes.length; i++) {
+            long gap = 0;
+            int shift = 0;
+            while (true) {
+                if (position == bytes.length || shift > 63) {
+                    throw new IOException("Resultado truncado");
+                }
+                int b = bytes[position++];
+                gap |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+                shift += 7;
+            }
+            previous += gap;
+            primes[i] = previous;
+        }
+        if (position != bytes.length) {
+            throw new IOException("Datos sobrantes en el resultado");
+        }
+        return primes;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,446 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.thread;
+
+import com.primesecure.metrics.MetricsRegistry;
+import com.primesecure.model.Message;
+import com.primesecure.security.PrimeDecoder;
+import com.primesecure.security.PrimeEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Servicio de larga duracion que encripta o desencripta mensajes de forma continua.
+ * <p>
+ * Los productores envian mensajes a una cola acotada y un grupo de hilos
+ * consumidores los procesa a medida que llegan. Cuando la cola esta llena, el
+ * comportamiento del productor depende de la {@link BackpressurePolicy}
+ * configurada. El servicio lleva metricas de profundidad de cola y de mensajes
+ * enviados, procesados, descartados y fallidos.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public class MessageProcessingService {
+    
+    /**
+    * Politica aplicada cuando un productor envia un mensaje con la cola llena.
+    */
+    public enum BackpressurePolicy {
+        /** El productor espera hasta que haya espacio en la cola */
+        BLOCK,
+        /** El mensaje se descarta y se contabiliza como descartado */
+        DROP,
+        /** El productor procesa el mensaje en su propio hilo */
+        CALLER_RUNS
+    }
+    
+    /** Tiempo maximo de espera de un consumidor antes de revisar si el servicio sigue activo */
+    private static final long POLL_TIMEOUT_MS = 50;
+    
+    /** Contador para identificar los servicios en las metricas */
+    private static final AtomicInteger serviceCounter = new AtomicInteger();
+    
+    /** Prefijo de las metricas de este servicio */
+    private final String metricsPrefix = "messages.service-" + serviceCounter.incrementAndGet();
+    
+    /** La cola acotada de mensajes pendientes */
+    private final BlockingQueue<Message> queue;
+    
+    /** La capacidad de la cola */
+    private final int capacity;
+    
+    /** Indicador de si se debe encriptar (true) o desencriptar (false) */
+    private final boolean encrypt;
+    
+    /** La politica aplicada cuando la cola esta llena */
+    private final BackpressurePolicy policy;
+    
+    /** Destino opcional que recibe cada mensaje ya procesado */
+    private final Consumer<Message> sink;
+    
+    /** Los hilos consumidores */
+    private final List<Thread> consumers = new ArrayList<>();
+    
+    /** El numero de hilos consumidores */
+    private final int consumerCount;
+    
+    /** Indicador de si el servicio acepta mensajes nuevos */
+    private volatile boolean running;
+    
+    /** Los productores encolan con el candado compartido; detener el servicio toma el exclusivo */
+    private final ReadWriteLock shutdownLock = new ReentrantReadWriteLock();
+    
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder callerRunsCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    
+    /** Numero de consumidores que siguen en ejecucion */
+    private final AtomicInteger liveConsumers = new AtomicInteger();
+    
+    /**
+    * Crea un nuevo servicio de procesamiento de mensajes.
+    * 
+    * @param capacity La capacidad maxima de la cola
+    * @param consumerCount El numero de hilos consumidores
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @param policy La politica aplicada cuando la cola esta llena
+    * @param sink Destino que recibe cada mensaje procesado, o null si no se necesita
+    */
+    public MessageProcessingService(int capacity, int consumerCount, boolean encrypt,
+                                    BackpressurePolicy policy, Consumer<Message> sink) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("La capacidad de la cola debe ser mayor que cero");
+        }
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.consumerCount = Math.max(1, consumerCount);
+        this.encrypt = encrypt;
+        this.policy = policy;
+        this.sink = sink;
+    }
+    
+    /**
+    * Inicia los hilos consumidores.
+    * 
+    * @throws IllegalStateException Si el servicio ya fue iniciado
+    */
+    public synchronized void start() {
+        if (!consumers.isEmpty()) {
+            throw new IllegalStateException("El servicio ya fue iniciado");
+        }
+        
+        running = true;
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.gauge(metricsPrefix + ".queue.depth", queue::size);
+        metrics.gauge(metricsPrefix + ".processed", processedCount::sum);
+        metrics.gauge(metricsPrefix + ".dropped", droppedCount::sum);
+        liveConsumers.set(consumerCount);
+        for (int i = 0; i < consumerCount; i++) {
+            Thread consumer = new Thread(this::consume, "MessageConsumer-" + (i + 1));
+            consumer.setDaemon(true);
+            consumers.add(consumer);
+            consumer.start();
+        }
+    }
+    
+    /**
+    * Envia un mensaje para ser procesado.
+    * <p>
+    * Si la cola esta llena, se aplica la politica configurada: BLOCK espera
+    * espacio, DROP descarta el mensaje y CALLER_RUNS lo procesa en el hilo
+    * que invoca este metodo.
+    * </p>
+    * <p>
+    * Un mensaje aceptado siempre se procesa: la verificacion de que el
+    * servicio esta activo y el encolado ocurren juntos respecto de
+    * {@link #shutdown()}. Un productor que espera espacio con BLOCK vuelve a
+    * verificarlo periodicamente, asi que deja de esperar si el servicio se detiene.
+    * Un mensaje solo se cuenta como enviado cuando se encola, se procesa en el
+    * hilo que invoca o se descarta, de modo que uno rechazado por una detencion
+    * o una interrupcion no aparece en las metricas.
+    * </p>
+    * 
+    * @param message El mensaje a procesar
+    * @return true si el mensaje fue aceptado, false si fue descartado
+    * @throws InterruptedException Si el hilo es interrumpido mientras espera espacio
+    * @throws IllegalStateException Si el servicio no esta activo o se detuvo mientras se esperaba espacio
+    */
+    public boolean submit(Message message) throws InterruptedException {
+        if (enqueue(message, 0)) {
+            submittedCount.increment();
+            return true;
+        }
+        
+        switch (policy) {
+            case BLOCK:
+                while (!enqueue(message, POLL_TIMEOUT_MS)) {
+                    // Seguir esperando espacio mientras el servicio siga activo
+                }
+                submittedCount.increment();
+                return true;
+            case CALLER_RUNS:
+                submittedCount.increment();
+                callerRunsCount.increment();
+                process(message, new PrimeEncoder(), new PrimeDecoder());
+                return true;
+            case DROP:
+            default:
+                submittedCount.increment();
+                droppedCount.increment();
+                return false;
+        }
+    }
+    
+    /**
+    * Encola un mensaje si el servicio esta activo, sin que pueda detenerse entre ambos pasos.
+    * 
+    * @param timeoutMillis El tiempo maximo de espera por espacio en la cola
+    * @return true si el mensaje se encolo, false si la cola siguio llena
+    * @throws IllegalStateException Si el servicio no esta activo
+    */
+    private boolean enqueue(Message message, long timeoutMillis) throws InterruptedException {
+        shutdownLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("El servicio no esta activo");
+            }
+            if (!queue.offer(message, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+        } finally {
+            shutdownLock.readLock().unlock();
+        }
+        recordDepth();
+        return true;
+    }
+    
+    /**
+    * Detiene la aceptacion de mensajes nuevos.
+    * <p>
+    * Los consumidores terminan despues de procesar los mensajes que quedan en la cola.
+    * </p>
+    */
+    public void shutdown() {
+        shutdownLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            shutdownLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+    * Detiene el servicio inmediatamente y retorna los mensajes no procesados.
+    * <p>
+    * Los productores que esperan espacio con BLOCK terminan con
+    * {@link IllegalStateException} en cuanto vuelven a verificar el estado.
+    * </p>
+    * 
+    * @return Los mensajes que quedaban en la cola
+    */
+    public synchronized List<Message> shutdownNow() {
+        shutdown();
+        List<Message> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (Thread consumer : consumers) {
+            consumer.interrupt();
+        }
+        return pending;
+    }
+    
+    /**
+    * Espera a que los consumidores terminen despues de detener el servicio.
+    * 
+    * @param timeout El tiempo maximo de espera
+    * @param unit La unidad del tiempo de espera
+    * @return true si todos los consumidores terminaron, false si se agoto el tiempo
+    * @throws InterruptedException Si el hilo es interrumpido mientras espera
+    */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<Thread> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(consumers);
+        }
+        for (Thread consumer : snapshot) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return !consumer.isAlive();
+            }
+            consumer.join(remaining);
+            if (consumer.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+    * Ciclo de un hilo consumidor: procesa mensajes hasta que el servicio se detiene y la cola se vacia.
+    */
+    private void consume() {
+        PrimeEncoder encoder = new PrimeEncoder();
+        PrimeDecoder decoder = new PrimeDecoder();
+        try {
+            while (running || !queue.isEmpty()) {
+                Message message = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (message != null) {
+                    process(message, encoder, decoder);
+                }
+            }
+            // Tras shutdown() nadie puede encolar, asi que este vaciado final no pierde mensajes
+            Message message;
+            while ((message = queue.poll()) != null) {
+                process(message, encoder, decoder);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (liveConsumers.decrementAndGet() == 0) {
+                unregisterMetrics();
+            }
+        }
+    }
+    
+    /**
+    * Retira los medidores del servicio del registro de metricas una vez detenido.
+    */
+    private void unregisterMetrics() {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.removeGauge(metricsPrefix + ".queue.depth");
+        metrics.removeGauge(metricsPrefix + ".processed");
+        metrics.removeGauge(metricsPrefix + ".dropped");
+    }
+    
+    /**
+    * Encripta o desencripta un mensaje y lo entrega al destino.
+    * <p>
+    * Un fallo en un mensaje se contabiliza pero no detiene el servicio.
+    * </p>
+    */
+    private void process(Message message, PrimeEncoder encoder, PrimeDecoder decoder) {
+        try {
+            if (encrypt) {
+                message.encrypt(encoder);
+            } else {
+                message.decrypt(decoder);
+            }
+            if (sink != null) {
+                sink.accept(message);
+            }
+            processedCount.increment();
+        } catch (RuntimeException e) {
+            failedCount.increment();
+        }
+    }
+    
+    /**
+    * Actualiza la profundidad maxima observada de la cola.
+    */
+    private void recordDepth() {
+        int depth = queue.size();
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+    
+    /**
+    * Verifica si el servicio acepta mensajes nuevos.
+    * 
+    * @return true si el servicio esta activo
+    */
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+    * Obtiene el numero de mensajes esperando en la cola.
+    * 
+    * @return La profundidad actual de la cola
+    */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    /**
+    * Obtiene la mayor profundidad de cola observada desde el inicio.
+    * 
+    * @return La profundidad maxima de la cola
+    */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+    
+    /**
+    * Obtiene la capacidad de la cola.
+    * 
+    * @return La capacidad maxima de la cola
+    */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+    * Obtiene el numero de mensajes enviados por los productores.
+    * 
+    * @return El numero de mensajes enviados
+    */
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+    
+    /**
+    * Obtiene el numero de mensajes procesados correctamente.
+    * 
+    * @return El numero de mensajes procesados
+    */
+    public long getProcessedCount() {
+        return processedCount.sum();
+    }
+    
+    /**
+    * Obtiene el numero de mensajes descartados por tener la cola llena.
+    * 
+    * @return El numero de mensajes descartados
+    */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+    
+    /**
+    * Obtiene el numero de mensajes procesados por el hilo productor.
+    * 
+    * @return El numero de mensajes procesados por el productor
+    */
+    public long getCallerRunsCount() {
+        return callerRunsCount.sum();
+    }
+    
+    /**
+    * Obtiene el numero de mensajes cuyo procesamiento fallo.
+    * 
+    * @return El numero de mensajes fallidos
+    */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+    
+    /**
+    * Genera un resumen de las metricas del servicio.
+    * 
+    * @return Las metricas como una cadena
+    */
+    public String getStatistics() {
+        return String.format(
+            "Politica: %s\n" +
+            "Cola: %d/%d (maximo %d)\n" +
+            "Mensajes enviados: %d\n" +
+            "Mensajes procesados: %d\n" +
+            "Procesados por el productor: %d\n" +
+            "Mensajes descartados: %d\n" +
+            "Mensajes fallidos: %d",
+            policy,
+            getQueueDepth(), capacity, getMaxQueueDepth(),
+            getSubmittedCount(),
+            getProcessedCount(),
+            getCallerRunsCount(),
+            getDroppedCount(),
+            getFailedCount()
+        );
+    }
+}
\ No newline at end of file
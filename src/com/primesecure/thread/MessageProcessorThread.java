@@ -6,6 +6,8 @@
 package com.primesecure.thread;
 
 import com.primesecure.model.Message;
+import com.primesecure.security.PrimeDecoder;
+import com.primesecure.security.PrimeEncoder;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
@@ -54,18 +56,15 @@ public class MessageProcessorThread extends Thread {
     @Override
     public void run() {
         try {
+            PrimeEncoder encoder = new PrimeEncoder();
+            PrimeDecoder decoder = new PrimeDecoder();
             for (Message message : messages) {
                 if (encrypt) {
-                    message.encrypt();
+                    message.encrypt(encoder);
                 } else {
-                    message.decrypt();
+                    message.decrypt(decoder);
                 }
-                
-                // Opcional: Agregar un pequeño retraso para demostrar entrelazado de hilos
-                Thread.sleep(10);
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
         } finally {
             latch.countDown();
         }
@@ -74,46 +73,55 @@ public class MessageProcessorThread extends Thread {
     /**
     * Metodo estatico de utilidad para procesar un lote de mensajes usando multiples hilos.
     * <p>
-    * Este metodo distribuye la carga de trabajo entre el numero especificado de hilos
-    * y espera a que todos los hilos completen antes de retornar.
+    * Los mensajes se reparten entre los hilos del grupo compartido de trabajadores,
+    * que se reutiliza entre llamadas. Cada hilo reclama bloques de mensajes de
+    * forma dinamica hasta completar el lote, y este metodo espera a que todos
+    * terminen antes de retornar.
     * </p>
     * 
     * @param messages La lista de mensajes a procesar
     * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
     * @param threadCount El numero de hilos a usar para el procesamiento
+    * @return El reporte de rendimiento del lote
     */
-    public static void processMessagesBatch(List<Message> messages, boolean encrypt, int threadCount) {
-        if (messages == null || messages.isEmpty()) {
-            return;
-        }
-        
-        // Usar al menos un hilo, pero no mas que la cantidad de mensajes
-        int actualThreadCount = Math.min(Math.max(1, threadCount), messages.size());
-        CountDownLatch latch = new CountDownLatch(actualThreadCount);
-        
-        // Calcular mensajes por hilo
-        int messagesPerThread = messages.size() / actualThreadCount;
-        int remainingMessages = messages.size() % actualThreadCount;
-        
-        // Crear e iniciar hilos
-        int startIndex = 0;
-        for (int i = 0; i < actualThreadCount; i++) {
-            int threadMessageCount = messagesPerThread + (i < remainingMessages ? 1 : 0);
-            int endIndex = startIndex + threadMessageCount;
-            
-            List<Message> threadMessages = messages.subList(startIndex, endIndex);
-            MessageProcessorThread thread = new MessageProcessorThread(threadMessages, encrypt, latch);
-            thread.setName("MessageProcessor-" + (i + 1));
-            thread.start();
-            
-            startIndex = endIndex;
-        }
-        
-        // Esperar a que todos los hilos completen
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+    public static MessageWorkerPool.BatchReport processMessagesBatch(List<Message> messages, boolean encrypt, int threadCount) {
+        return getSharedPool().process(messages, encrypt, threadCount, 0);
+    }
+    
+    /**
+    * Procesa un lote de mensajes agrupandolos por codigo primo.
+    * <p>
+    * Pensado para lotes grandes de mensajes cortos: cada hilo usa un unico
+    * codificador con su buffer de trabajo para todos sus mensajes, y los
+    * mensajes con la misma clave se procesan juntos.
+    * </p>
+    * 
+    * @param messages La lista de mensajes a procesar
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @param threadCount El numero de hilos a usar para el procesamiento
+    * @return El reporte de rendimiento del lote
+    */
+    public static MessageWorkerPool.BatchReport processMessagesGrouped(List<Message> messages, boolean encrypt, int threadCount) {
+        return getSharedPool().processGrouped(messages, encrypt, threadCount);
+    }
+    
+    /**
+    * Obtiene el grupo compartido de trabajadores, creandolo en el primer uso.
+    * <p>
+    * El grupo tiene un hilo por cada procesador disponible.
+    * </p>
+    * 
+    * @return El grupo compartido de trabajadores
+    */
+    public static MessageWorkerPool getSharedPool() {
+        return SharedPoolHolder.POOL;
+    }
+    
+    /**
+    * Inicializacion diferida del grupo compartido de trabajadores.
+    */
+    private static class SharedPoolHolder {
+        private static final MessageWorkerPool POOL =
+            new MessageWorkerPool(Runtime.getRuntime().availableProcessors());
     }
 }
\ No newline at end of file
@@ -0,0 +1,375 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.thread;
+
+import com.primesecure.metrics.Counter;
+import com.primesecure.metrics.FlightRecording;
+import com.primesecure.metrics.LatencyHistogram;
+import com.primesecure.metrics.MessageBatchEvent;
+import com.primesecure.metrics.MessageWorkerEvent;
+import com.primesecure.metrics.MetricsRegistry;
+import com.primesecure.model.Message;
+import com.primesecure.security.PrimeDecoder;
+import com.primesecure.security.PrimeEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Un grupo reutilizable de hilos para encriptar o desencriptar mensajes en lote.
+ * <p>
+ * A diferencia de crear hilos nuevos en cada llamada, los hilos de este grupo
+ * se mantienen vivos entre lotes. Dentro de un lote, cada trabajador reclama
+ * bloques de mensajes mediante un cursor atomico sobre la lista, de modo que
+ * los hilos que terminan antes toman mas trabajo en lugar de quedar ociosos.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public class MessageWorkerPool {
+    
+    /** Tamaño maximo de bloque reclamado por un trabajador */
+    private static final int DEFAULT_CHUNK_SIZE = 64;
+    
+    /** Bloques por trabajador usados para reducir el bloque en lotes pequeños */
+    private static final int CHUNKS_PER_WORKER = 4;
+    
+    /** Contador para nombrar los hilos de todos los grupos */
+    private static final AtomicInteger poolCounter = new AtomicInteger();
+    
+    /** Numero de trabajadores procesando bloques en todos los grupos */
+    private static final AtomicInteger activeWorkers = new AtomicInteger();
+    
+    /** Latencia de cada lote procesado */
+    private static final LatencyHistogram batchLatency =
+        MetricsRegistry.getDefault().histogram("messages.batch.latency");
+    
+    /** Mensajes procesados en todos los lotes */
+    private static final Counter processedCounter = MetricsRegistry.getDefault().counter("messages.processed");
+    
+    static {
+        MetricsRegistry.getDefault().gauge("messages.workers.active", activeWorkers::get);
+    }
+    
+    /** El ejecutor que mantiene vivos los hilos trabajadores */
+    private final ExecutorService executor;
+    
+    /** El numero de hilos del grupo */
+    private final int poolSize;
+    
+    /**
+    * Crea un nuevo grupo de trabajadores.
+    * <p>
+    * Los hilos son de tipo daemon para no impedir que la aplicacion termine.
+    * </p>
+    * 
+    * @param poolSize El numero de hilos del grupo
+    */
+    public MessageWorkerPool(int poolSize) {
+        this.poolSize = Math.max(1, poolSize);
+        
+        int poolId = poolCounter.incrementAndGet();
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.poolSize, runnable -> {
+            Thread thread = new Thread(runnable,
+                "MessageWorker-" + poolId + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+    * Procesa un lote de mensajes usando todos los hilos del grupo.
+    * 
+    * @param messages La lista de mensajes a procesar
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @return El reporte de rendimiento del lote
+    */
+    public BatchReport process(List<Message> messages, boolean encrypt) {
+        return process(messages, encrypt, poolSize, 0);
+    }
+    
+    /**
+    * Procesa un lote de mensajes con un paralelismo y tamaño de bloque especificos.
+    * <p>
+    * El hilo que invoca este metodo tambien reclama bloques, por lo que solo se
+    * envian {@code parallelism - 1} tareas al grupo. Los mensajes se modifican
+    * en su lugar.
+    * </p>
+    * 
+    * @param messages La lista de mensajes a procesar
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @param parallelism El numero de trabajadores que reclaman bloques (como maximo poolSize + 1)
+    * @param chunkSize El numero de mensajes por bloque, o 0 para elegirlo automaticamente
+    * @return El reporte de rendimiento del lote
+    * @throws IllegalStateException Si el procesamiento de algun mensaje falla o algun
+    *         trabajador es interrumpido; en ese caso el lote puede quedar procesado solo
+    *         en parte, pero ningun trabajador sigue modificandolo cuando se lanza
+    */
+    public BatchReport process(List<Message> messages, boolean encrypt, int parallelism, int chunkSize) {
+        long startTime = System.nanoTime();
+        
+        if (messages == null || messages.isEmpty()) {
+            return new BatchReport(encrypt, 0, 0, 0, 0);
+        }
+        
+        // El cursor requiere acceso aleatorio eficiente
+        List<Message> batch = messages instanceof RandomAccess ? messages : new ArrayList<>(messages);
+        int size = batch.size();
+        // El hilo que invoca tambien trabaja, asi que no tiene sentido superar poolSize + 1
+        int workers = Math.min(Math.min(Math.max(1, parallelism), poolSize + 1), size);
+        int chunk = chunkSize > 0
+            ? chunkSize
+            : Math.max(1, Math.min(DEFAULT_CHUNK_SIZE, size / (workers * CHUNKS_PER_WORKER)));
+        
+        MessageBatchEvent event = FlightRecording.isActive() ? new MessageBatchEvent() : null;
+        AtomicInteger cursor = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+        Runnable worker = () -> claimAndProcess(batch, encrypt, cursor, chunk, stop);
+        
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i < workers; i++) {
+            futures.add(executor.submit(worker));
+        }
+        
+        try {
+            worker.run();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            // No se sabe cuantos mensajes alcanzaron a procesarse, asi que no hay reporte ni metricas
+            stopAndAwait(stop, futures);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Procesamiento de mensajes interrumpido", e);
+        } catch (ExecutionException e) {
+            stopAndAwait(stop, futures);
+            throw new IllegalStateException("Error procesando mensajes: " + e.getCause().getMessage(), e.getCause());
+        } catch (RuntimeException | Error e) {
+            stopAndAwait(stop, futures);
+            throw e;
+        }
+        if (stop.get()) {
+            // Un trabajador fue interrumpido y dejo de reclamar bloques sin fallar
+            throw new IllegalStateException("Procesamiento de mensajes interrumpido");
+        }
+        
+        processedCounter.add(size);
+        if (event != null) {
+            event.complete(encrypt, size, workers, chunk);
+        }
+        return new BatchReport(encrypt, size, workers, chunk, batchLatency.recordSince(startTime));
+    }
+    
+    /**
+    * Procesa un lote de mensajes agrupados por codigo primo.
+    * <p>
+    * Los mensajes se ordenan por su clave efectiva ({@code primeCode % 26}) con
+    * un ordenamiento por conteo, de modo que cada bloque reclamado usa casi
+    * siempre la misma tabla de transformacion. Cada trabajador reutiliza un
+    * unico codificador y su buffer de trabajo para todo el lote, y los
+    * resultados se escriben en los mismos mensajes.
+    * </p>
+    * 
+    * @param messages La lista de mensajes a procesar
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @param parallelism El numero de trabajadores que reclaman bloques (como maximo poolSize + 1)
+    * @return El reporte de rendimiento del lote
+    * @throws IllegalStateException Si el procesamiento de algun mensaje falla
+    */
+    public BatchReport processGrouped(List<Message> messages, boolean encrypt, int parallelism) {
+        if (messages == null || messages.isEmpty()) {
+            return new BatchReport(encrypt, 0, 0, 0, 0);
+        }
+        
+        long startTime = System.nanoTime();
+        BatchReport report = process(groupByKey(messages), encrypt, parallelism, 0);
+        
+        return new BatchReport(encrypt, report.getMessageCount(), report.getWorkerCount(),
+            report.getChunkSize(), System.nanoTime() - startTime);
+    }
+    
+    /**
+    * Ordena los mensajes por clave efectiva en tiempo lineal.
+    */
+    private static List<Message> groupByKey(List<Message> messages) {
+        // La clave primeCode % 26 esta entre -25 y 25
+        int[] offsets = new int[52];
+        for (Message message : messages) {
+            offsets[message.getPrimeCode() % 26 + 26]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        
+        Message[] grouped = new Message[messages.size()];
+        for (Message message : messages) {
+            grouped[--offsets[message.getPrimeCode() % 26 + 26]] = message;
+        }
+        return Arrays.asList(grouped);
+    }
+    
+    /**
+    * Reclama bloques del lote hasta que el cursor alcanza el final de la lista o
+    * el lote se detiene.
+    * <p>
+    * Un trabajador que falla o es interrumpido detiene el lote, y los demas
+    * dejan de reclamar bloques al terminar el que estan procesando.
+    * </p>
+    */
+    private static void claimAndProcess(List<Message> batch, boolean encrypt,
+                                        AtomicInteger cursor, int chunk, AtomicBoolean stop) {
+        int size = batch.size();
+        // Un codificador por trabajador, reutilizado para todos sus bloques
+        PrimeEncoder encoder = new PrimeEncoder();
+        PrimeDecoder decoder = new PrimeDecoder();
+        MessageWorkerEvent event = FlightRecording.isActive() ? new MessageWorkerEvent() : null;
+        int chunksClaimed = 0;
+        int processed = 0;
+        activeWorkers.incrementAndGet();
+        try {
+            int start;
+            while (!stop.get() && (start = cursor.getAndAdd(chunk)) < size) {
+                if (Thread.currentThread().isInterrupted()) {
+                    stop.set(true);
+                    break;
+                }
+                int end = Math.min(start + chunk, size);
+                chunksClaimed++;
+                processed += end - start;
+                for (int i = start; i < end; i++) {
+                    Message message = batch.get(i);
+                    if (encrypt) {
+                        message.encrypt(encoder);
+                    } else {
+                        message.decrypt(decoder);
+                    }
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            stop.set(true);
+            throw e;
+        } finally {
+            activeWorkers.decrementAndGet();
+            if (event != null) {
+                event.complete(chunksClaimed, processed);
+            }
+        }
+    }
+    
+    /**
+    * Detiene un lote y espera a que todos sus trabajadores terminen.
+    * <p>
+    * Cada trabajador termina como maximo al acabar su bloque actual; la espera
+    * no se corta por una interrupcion, que se restablece al final, para que el
+    * lote no se siga modificando despues de que el invocador recibe el error.
+    * </p>
+    */
+    private static void stopAndAwait(AtomicBoolean stop, List<Future<?>> futures) {
+        stop.set(true);
+        boolean interrupted = Thread.interrupted();
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException e) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+    * Obtiene el numero de hilos del grupo.
+    * 
+    * @return El numero de hilos
+    */
+    public int getPoolSize() {
+        return poolSize;
+    }
+    
+    /**
+    * Detiene los hilos del grupo una vez terminadas las tareas pendientes.
+    */
+    public void shutdown() {
+        executor.shutdown();
+    }
+    
+    /**
+    * Reporte de rendimiento de un lote de mensajes procesado.
+    */
+    public static class BatchReport {
+        private final boolean encrypt;
+        private final int messageCount;
+        private final int workerCount;
+        private final int chunkSize;
+        private final long elapsedNanos;
+        
+        public BatchReport(boolean encrypt, int messageCount, int workerCount, int chunkSize, long elapsedNanos) {
+            this.encrypt = encrypt;
+            this.messageCount = messageCount;
+            this.workerCount = workerCount;
+            this.chunkSize = chunkSize;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        public int getMessageCount() {
+            return messageCount;
+        }
+        
+        public int getWorkerCount() {
+            return workerCount;
+        }
+        
+        public int getChunkSize() {
+            return chunkSize;
+        }
+        
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        /**
+        * Calcula el rendimiento del lote.
+        * 
+        * @return Los mensajes procesados por segundo
+        */
+        public double getMessagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : messageCount * 1_000_000_000.0 / elapsedNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(
+                "Lote procesado exitosamente!\n" +
+                "Operacion: %s\n" +
+                "Mensajes procesados: %d\n" +
+                "Hilos utilizados: %d\n" +
+                "Tamano de bloque: %d\n" +
+                "Tiempo de ejecucion: %.3f ms\n" +
+                "Rendimiento: %.0f mensajes/s",
+                encrypt ? "Encriptacion" : "Desencriptacion",
+                messageCount,
+                workerCount,
+                chunkSize,
+                elapsedNanos / 1_000_000.0,
+                getMessagesPerSecond()
+            );
+        }
+    }
+}
\ No newline at end of file
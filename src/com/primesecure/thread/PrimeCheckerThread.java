@@ -5,13 +5,26 @@
 
 package com.primesecure.thread;
 
+import com.primesecure.metrics.Counter;
+import com.primesecure.metrics.FlightRecording;
+import com.primesecure.metrics.MetricsRegistry;
+import com.primesecure.metrics.PrimeSegmentEvent;
+import com.primesecure.model.LongPrimesList;
 import com.primesecure.model.PrimesList;
+import com.primesecure.util.SegmentedSieve;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Una implementacion de hilo para encontrar numeros primos dentro de un rango especificado.
  * <p>
  * Esta clase extiende Thread para permitir la verificacion concurrente de numeros primos.
- * Busca numeros primos dentro de un rango dado y los agrega a una PrimesList compartida.
+ * Busca numeros primos dentro de un rango dado y los agrega a una PrimesList compartida,
+ * o bien, para rangos de 64 bits, los guarda en orden en su propia {@link LongPrimesList}.
+ * </p>
+ * <p>
+ * La busqueda usa {@link SegmentedSieve} en lugar de verificar cada numero por
+ * separado, por lo que el costo por numero es casi constante aun en rangos
+ * cercanos a 10^15 o mayores.
  * </p>
  * 
  * @author PrimeSecure Team
@@ -20,17 +33,33 @@ import com.primesecure.model.PrimesList;
  */
 public class PrimeCheckerThread extends Thread {
     
+    /** Numero de hilos verificadores en ejecucion */
+    private static final AtomicInteger activeCount = new AtomicInteger();
+    
+    /** Numeros verificados por todos los hilos */
+    private static final Counter checkedCounter = MetricsRegistry.getDefault().counter("primes.checked");
+    
+    /** Primos encontrados por todos los hilos */
+    private static final Counter foundCounter = MetricsRegistry.getDefault().counter("primes.found");
+    
+    static {
+        MetricsRegistry.getDefault().gauge("primes.workers.active", activeCount::get);
+    }
+    
     /** El numero inicial del rango a verificar */
-    private int startRange;
+    private long startRange;
     
     /** El numero final del rango a verificar */
-    private int endRange;
+    private long endRange;
     
-    /** La lista compartida para almacenar los numeros primos encontrados */
+    /** La lista compartida para almacenar los numeros primos encontrados, o null si se usa primes */
     private PrimesList primesList;
     
+    /** Los primos encontrados por este hilo cuando no hay lista compartida */
+    private LongPrimesList primes;
+    
     /** Contador de numeros primos encontrados por este hilo */
-    private int foundCount;
+    private long foundCount;
     
     /**
     * Crea un nuevo hilo verificador de primos.
@@ -46,11 +75,27 @@ public class PrimeCheckerThread extends Thread {
         this.foundCount = 0;
     }
     
+    /**
+    * Crea un nuevo hilo verificador de primos para un rango de 64 bits.
+    * <p>
+    * Los primos encontrados se guardan en orden y se obtienen con
+    * {@link #getPrimes()} una vez terminado el hilo.
+    * </p>
+    * 
+    * @param startRange El numero inicial del rango (inclusive)
+    * @param endRange El numero final del rango (inclusive)
+    */
+    public PrimeCheckerThread(long startRange, long endRange) {
+        this.startRange = startRange;
+        this.endRange = endRange;
+        this.foundCount = 0;
+    }
+    
     /**
     * Ejecuta la busqueda de numeros primos cuando se inicia el hilo.
     * <p>
-    * Este metodo verifica cada numero en el rango especificado y agrega
-    * los numeros primos a la lista compartida.
+    * Este metodo criba el rango especificado y agrega los numeros primos
+    * a la lista compartida o a la lista propia del hilo.
     * </p>
     */
     @Override
@@ -58,25 +103,14 @@ public class PrimeCheckerThread extends Thread {
         System.out.println(Thread.currentThread().getName() + 
         " buscando primos entre " + startRange + " y " + endRange);
         
-        for (int num = startRange; num <= endRange; num++) {
-            if (PrimesList.isPrime(num)) {
-                try {
-                    synchronized(primesList) {
-                        primesList.add(num);
-                    }
-                    foundCount++;
-                } catch (IllegalArgumentException e) {
-                    // Este caso no debería ocurrir ya que verificamos isPrime antes
-                    System.out.println("Error inesperado: " + e.getMessage());
-                }
-                
-                // Opcional: Agregar un pequeño retraso para demostrar entrelazado de hilos
-                try {
-                    Thread.sleep(5);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return;
-                }
+        PrimeSegmentEvent event = FlightRecording.isActive() ? new PrimeSegmentEvent() : null;
+        activeCount.incrementAndGet();
+        try {
+            search();
+        } finally {
+            activeCount.decrementAndGet();
+            if (event != null) {
+                event.complete(startRange, endRange, foundCount);
             }
         }
         
@@ -84,12 +118,43 @@ public class PrimeCheckerThread extends Thread {
         " encontro " + foundCount + " numeros primos");
     }
     
+    /**
+    * Criba el rango y guarda los primos encontrados.
+    */
+    private void search() {
+        LongPrimesList found = SegmentedSieve.primes(startRange, endRange);
+        if (primesList != null) {
+            // Un solo bloqueo por rango en lugar de uno por primo
+            synchronized(primesList) {
+                for (int i = 0; i < found.size(); i++) {
+                    primesList.add((int) found.getLong(i));
+                }
+            }
+        } else {
+            primes = found;
+        }
+        foundCount = found.size();
+        
+        // Actualizar las metricas una sola vez por rango
+        checkedCounter.add(Math.max(0L, endRange - startRange + 1));
+        foundCounter.add(foundCount);
+    }
+    
     /**
     * Obtiene el numero de numeros primos encontrados por este hilo.
     * 
     * @return El conteo de numeros primos encontrados
     */
-    public int getFoundCount() {
+    public long getFoundCount() {
         return foundCount;
     }
+    
+    /**
+    * Obtiene los primos encontrados por un hilo creado con un rango de 64 bits.
+    * 
+    * @return Los primos del rango en orden creciente, o null si el hilo usa una lista compartida o no ha terminado
+    */
+    public LongPrimesList getPrimes() {
+        return primes;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.thread;
+
+import com.primesecure.model.Message;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Procesa mensajes usando un hilo virtual por mensaje.
+ * <p>
+ * Esta clase esta pensada para flujos donde la encriptacion se mezcla con
+ * operaciones de entrada/salida (leer de archivos, escribir a destinos), en los
+ * que un hilo de plataforma por mensaje seria demasiado costoso. Cada lote se
+ * ejecuta en su propio ejecutor de hilos virtuales que actua como un ambito:
+ * el lote no termina hasta que terminan todas sus tareas, y el primer fallo
+ * cancela las tareas restantes.
+ * </p>
+ * <p>
+ * Un semaforo limita el numero de tareas en curso, de modo que la memoria usada
+ * no depende del tamaño del lote aunque la fuente de mensajes sea muy grande.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public class VirtualMessagePipeline {
+    
+    /**
+    * Una operacion a aplicar sobre cada mensaje, que puede realizar entrada/salida.
+    */
+    @FunctionalInterface
+    public interface MessageTask {
+        
+        /**
+        * Procesa un mensaje.
+        * 
+        * @param message El mensaje a procesar
+        * @throws Exception Si el procesamiento falla
+        */
+        void handle(Message message) throws Exception;
+        
+        /**
+        * Crea una tarea que ejecuta esta operacion y luego otra.
+        * 
+        * @param next La operacion a ejecutar despues de esta
+        * @return La tarea compuesta
+        */
+        default MessageTask andThen(MessageTask next) {
+            return message -> {
+                handle(message);
+                next.handle(message);
+            };
+        }
+    }
+    
+    /** El numero maximo de tareas en curso al mismo tiempo */
+    private final int maxConcurrency;
+    
+    /**
+    * Crea una nueva tuberia de hilos virtuales.
+    * 
+    * @param maxConcurrency El numero maximo de mensajes procesandose al mismo tiempo
+    */
+    public VirtualMessagePipeline(int maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+    
+    /**
+    * Crea una tarea que encripta o desencripta cada mensaje.
+    * 
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @return La tarea de encriptacion o desencriptacion
+    */
+    public static MessageTask cipherTask(boolean encrypt) {
+        return encrypt ? Message::encrypt : Message::decrypt;
+    }
+    
+    /**
+    * Procesa todos los mensajes de una fuente, uno por hilo virtual.
+    * <p>
+    * Los mensajes se toman de la fuente a medida que hay capacidad disponible,
+    * por lo que la fuente puede generarlos de forma diferida. Si alguna tarea
+    * falla, no se inician tareas nuevas, las tareas en curso se interrumpen y
+    * el fallo se propaga al terminar el lote.
+    * </p>
+    * 
+    * @param messages La fuente de mensajes a procesar
+    * @param task La operacion a aplicar sobre cada mensaje
+    * @return El numero de mensajes procesados
+    * @throws ExecutionException Si alguna tarea falla; la causa es el primer fallo
+    * @throws InterruptedException Si el hilo es interrumpido mientras espera capacidad
+    */
+    public int process(Iterable<Message> messages, MessageTask task)
+            throws ExecutionException, InterruptedException {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger processed = new AtomicInteger();
+        
+        try (ExecutorService scope = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                for (Message message : messages) {
+                    permits.acquire();
+                    if (failure.get() != null) {
+                        permits.release();
+                        break;
+                    }
+                    
+                    try {
+                        scope.submit(() -> {
+                            try {
+                                task.handle(message);
+                                processed.incrementAndGet();
+                            } catch (Throwable t) {
+                                // El primer fallo cancela el resto del lote
+                                if (failure.compareAndSet(null, t)) {
+                                    scope.shutdownNow();
+                                }
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        // El lote fue cancelado por un fallo entre la verificacion y el envio
+                        permits.release();
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                scope.shutdownNow();
+                throw e;
+            }
+        }
+        
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new ExecutionException("Error procesando mensaje: " + cause.getMessage(), cause);
+        }
+        
+        return processed.get();
+    }
+    
+    /**
+    * Obtiene el numero maximo de tareas en curso.
+    * 
+    * @return El limite de concurrencia
+    */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+}
\ No newline at end of file
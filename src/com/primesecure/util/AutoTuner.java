@@ -0,0 +1,375 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.util;
+
+import com.primesecure.security.CipherTable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Elige el numero de hilos y el tamaño de los bloques segun la maquina.
+ * <p>
+ * Los metodos que reciben un numero de hilos aceptan {@link #AUTO} (o
+ * cualquier valor menor que uno) para que se elija aqui: solo se usan tantos
+ * hilos como para que cada uno tenga al menos {@link #MIN_TASK_NANOS} de
+ * trabajo, sin pasar de los nucleos que de verdad escalan. El costo por
+ * caracter y por numero y los nucleos utiles se miden una sola vez, con una
+ * calibracion de unos cientos de milisegundos, y se guardan en un archivo de
+ * perfil ({@code ~/.primesecure/tuning.properties}, configurable con
+ * primesecure.tuning.profile). El perfil se vuelve a medir si cambia el
+ * numero de procesadores, la arquitectura o la version de Java.
+ * </p>
+ * <p>
+ * El tamaño de los buffers de flujo se toma de la cache L2 que informa el
+ * sistema, o de 1 MB si no se puede leer.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class AutoTuner {
+    
+    /** Numero de hilos que pide la eleccion automatica */
+    public static final int AUTO = 0;
+    
+    /** Trabajo minimo por hilo para que valga la pena crearlo */
+    public static final long MIN_TASK_NANOS = 2_000_000;
+    
+    /** Version del formato del perfil */
+    private static final int PROFILE_VERSION = 1;
+    
+    /** Cache L2 supuesta si el sistema no informa la suya */
+    private static final long DEFAULT_L2_CACHE_BYTES = 1L << 20;
+    
+    /** Limites del buffer de flujo, en caracteres */
+    private static final int MIN_STREAM_BUFFER = 16 * 1024;
+    private static final int MAX_STREAM_BUFFER = 1 << 20;
+    
+    /** Caracteres y numeros de cada medicion de la calibracion */
+    private static final int CALIBRATION_CHARS = 1 << 20;
+    private static final long CALIBRATION_NUMBERS = 1L << 24;
+    private static final long CALIBRATION_FROM = 1_000_000_000_000L;
+    
+    private static AutoTuner defaultTuner;
+    
+    private final int cores;
+    private final double cipherNanosPerChar;
+    private final double sieveNanosPerNumber;
+    private final long l2CacheBytes;
+    
+    private AutoTuner(int cores, double cipherNanosPerChar, double sieveNanosPerNumber, long l2CacheBytes) {
+        this.cores = cores;
+        this.cipherNanosPerChar = cipherNanosPerChar;
+        this.sieveNanosPerNumber = sieveNanosPerNumber;
+        this.l2CacheBytes = l2CacheBytes;
+    }
+    
+    /**
+    * Obtiene el ajuste del proceso, leyendo el perfil guardado o calibrando
+    * y guardandolo la primera vez.
+    * 
+    * @return El ajuste compartido
+    */
+    public static synchronized AutoTuner getDefault() {
+        if (defaultTuner == null) {
+            Path profile = getProfilePath();
+            AutoTuner tuner = load(profile);
+            if (tuner == null) {
+                tuner = calibrate();
+                try {
+                    tuner.save(profile);
+                } catch (IOException e) {
+                    // Sin perfil se vuelve a calibrar en el siguiente proceso
+                    System.err.println("No se pudo guardar el perfil de ajuste: " + e.getMessage());
+                }
+            }
+            defaultTuner = tuner;
+        }
+        return defaultTuner;
+    }
+    
+    /**
+    * Vuelve a calibrar, guarda el perfil y lo usa en adelante.
+    * 
+    * @return El nuevo ajuste compartido
+    * @throws IOException Si no se puede guardar el perfil
+    */
+    public static synchronized AutoTuner recalibrate() throws IOException {
+        AutoTuner tuner = calibrate();
+        defaultTuner = tuner;
+        tuner.save(getProfilePath());
+        return tuner;
+    }
+    
+    /**
+    * Obtiene la ruta del archivo de perfil.
+    * 
+    * @return La ruta configurada con primesecure.tuning.profile, o la de por defecto
+    */
+    public static Path getProfilePath() {
+        String configured = System.getProperty("primesecure.tuning.profile");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".primesecure", "tuning.properties");
+    }
+    
+    /**
+    * Mide el costo del cifrado y de la criba y cuantos nucleos escalan.
+    * 
+    * @return Un ajuste con las mediciones de esta maquina
+    */
+    public static AutoTuner calibrate() {
+        // Texto tipico: la tabla cuesta lo mismo para cualquier caracter
+        char[] sample = new char[CALIBRATION_CHARS];
+        String words = "mensaje de prueba para calibrar el cifrado ";
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = words.charAt(i % words.length());
+        }
+        String text = new String(sample);
+        CipherTable table = CipherTable.forEncoding(101);
+        long cipherNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 8; i++) {
+            // Mismo trabajo que un fragmento: copiar, transformar y crear la cadena resultante
+            long start = System.nanoTime();
+            char[] chars = new char[text.length()];
+            text.getChars(0, chars.length, chars, 0);
+            table.apply(chars, 0, chars, 0, chars.length, 0);
+            if (new String(chars).isEmpty()) {
+                throw new IllegalStateException();
+            }
+            cipherNanos = Math.min(cipherNanos, System.nanoTime() - start);
+        }
+        
+        SegmentedSieve.countPrimes(CALIBRATION_FROM, CALIBRATION_FROM + CALIBRATION_NUMBERS - 1);
+        long sieveNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            SegmentedSieve.countPrimes(CALIBRATION_FROM, CALIBRATION_FROM + CALIBRATION_NUMBERS - 1);
+            sieveNanos = Math.min(sieveNanos, System.nanoTime() - start);
+        }
+        
+        return new AutoTuner(measureCores(sieveNanos),
+            (double) cipherNanos / CALIBRATION_CHARS,
+            (double) sieveNanos / CALIBRATION_NUMBERS,
+            detectL2CacheBytes());
+    }
+    
+    /**
+    * Cuenta los nucleos que escalan cribando a la vez en todos los procesadores;
+    * en contenedores o con hyperthreading suelen ser menos que los informados.
+    */
+    private static int measureCores(long singleNanos) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (processors == 1) {
+            return 1;
+        }
+        
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < processors; i++) {
+            long from = CALIBRATION_FROM + i * CALIBRATION_NUMBERS;
+            Thread thread = new Thread(() -> SegmentedSieve.countPrimes(from, from + CALIBRATION_NUMBERS - 1));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return processors;
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        
+        long scaling = Math.round((double) processors * singleNanos / elapsedNanos);
+        return (int) Math.max(1, Math.min(processors, scaling));
+    }
+    
+    /**
+    * Lee el tamaño de la cache L2 que informa Linux.
+    */
+    private static long detectL2CacheBytes() {
+        Path caches = Paths.get("/sys/devices/system/cpu/cpu0/cache");
+        for (int index = 0; index < 8; index++) {
+            Path dir = caches.resolve("index" + index);
+            try {
+                if (!"2".equals(Files.readString(dir.resolve("level")).trim())) {
+                    continue;
+                }
+                String size = Files.readString(dir.resolve("size")).trim();
+                long multiplier = 1;
+                if (size.endsWith("K")) {
+                    multiplier = 1L << 10;
+                } else if (size.endsWith("M")) {
+                    multiplier = 1L << 20;
+                }
+                if (multiplier > 1) {
+                    size = size.substring(0, size.length() - 1);
+                }
+                return Long.parseLong(size) * multiplier;
+            } catch (IOException | NumberFormatException e) {
+                // Sin informacion del sistema se usa el valor por defecto
+                break;
+            }
+        }
+        return DEFAULT_L2_CACHE_BYTES;
+    }
+    
+    /**
+    * Lee un perfil guardado.
+    * 
+    * @param profile La ruta del perfil
+    * @return El ajuste guardado, o null si no existe, es invalido o es de otra maquina
+    */
+    static AutoTuner load(Path profile) {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(profile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        
+        Properties current = environment();
+        for (String key : current.stringPropertyNames()) {
+            if (!current.getProperty(key).equals(properties.getProperty(key))) {
+                return null;
+            }
+        }
+        try {
+            int cores = Integer.parseInt(properties.getProperty("cores"));
+            double cipherNanos = Double.parseDouble(properties.getProperty("cipherNanosPerChar"));
+            double sieveNanos = Double.parseDouble(properties.getProperty("sieveNanosPerNumber"));
+            long l2 = Long.parseLong(properties.getProperty("l2CacheBytes"));
+            if (cores < 1 || !(cipherNanos > 0) || !(sieveNanos > 0) || l2 < 1) {
+                return null;
+            }
+            return new AutoTuner(cores, cipherNanos, sieveNanos, l2);
+        } catch (NullPointerException | NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+    * Guarda el ajuste en un archivo de perfil.
+    * 
+    * @param profile La ruta del perfil
+    * @throws IOException Si falla la escritura
+    */
+    public void save(Path profile) throws IOException {
+        Properties properties = environment();
+        properties.setProperty("cores", Integer.toString(cores));
+        properties.setProperty("cipherNanosPerChar", Double.toString(cipherNanosPerChar));
+        properties.setProperty("sieveNanosPerNumber", Double.toString(sieveNanosPerNumber));
+        properties.setProperty("l2CacheBytes", Long.toString(l2CacheBytes));
+        
+        Path parent = profile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (OutputStream out = Files.newOutputStream(profile)) {
+            properties.store(out, "Perfil de ajuste de PrimeSecure");
+        }
+    }
+    
+    /**
+    * Datos de la maquina con que se valida un perfil.
+    */
+    private static Properties environment() {
+        Properties properties = new Properties();
+        properties.setProperty("version", Integer.toString(PROFILE_VERSION));
+        properties.setProperty("processors", Integer.toString(Runtime.getRuntime().availableProcessors()));
+        properties.setProperty("arch", System.getProperty("os.arch"));
+        properties.setProperty("java", System.getProperty("java.version"));
+        return properties;
+    }
+    
+    /**
+    * Elige los hilos para encriptar o desencriptar un texto.
+    * 
+    * @param chars El numero de caracteres del texto
+    * @return Los hilos a usar, al menos uno
+    */
+    public int fileThreads(long chars) {
+        return threadsFor(chars * cipherNanosPerChar);
+    }
+    
+    /**
+    * Elige los hilos para buscar los primos de un rango.
+    * 
+    * @param numbers El numero de enteros del rango
+    * @return Los hilos a usar, al menos uno
+    */
+    public int primeThreads(long numbers) {
+        return threadsFor(numbers * sieveNanosPerNumber);
+    }
+    
+    private int threadsFor(double workNanos) {
+        return (int) Math.max(1, Math.min(cores, workNanos / MIN_TASK_NANOS));
+    }
+    
+    /**
+    * Elige el tamaño del buffer del procesamiento por flujo: el mayor que, junto
+    * con los bytes codificados, ocupa la mitad de la cache L2.
+    * 
+    * @return El tamaño del buffer, en caracteres
+    */
+    public int streamBufferChars() {
+        long chars = Long.highestOneBit(Math.max(1, l2CacheBytes / 4));
+        return (int) Math.max(MIN_STREAM_BUFFER, Math.min(MAX_STREAM_BUFFER, chars));
+    }
+    
+    /**
+    * Obtiene los nucleos que escalan segun la calibracion.
+    * 
+    * @return El numero de nucleos
+    */
+    public int getCores() {
+        return cores;
+    }
+    
+    /**
+    * Obtiene el costo medido del cifrado.
+    * 
+    * @return Nanosegundos por caracter en un hilo
+    */
+    public double getCipherNanosPerChar() {
+        return cipherNanosPerChar;
+    }
+    
+    /**
+    * Obtiene el costo medido de la criba.
+    * 
+    * @return Nanosegundos por numero en un hilo
+    */
+    public double getSieveNanosPerNumber() {
+        return sieveNanosPerNumber;
+    }
+    
+    /**
+    * Obtiene el tamaño de la cache L2 usada para los buffers.
+    * 
+    * @return El tamaño en bytes
+    */
+    public long getL2CacheBytes() {
+        return l2CacheBytes;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("AutoTuner[nucleos=%d, cifrado=%.3f ns/caracter, criba=%.3f ns/numero, L2=%d KB]",
+            cores, cipherNanosPerChar, sieveNanosPerNumber, l2CacheBytes >> 10);
+    }
+}
\ No newline at end of file
@@ -5,13 +5,29 @@
 
 package com.primesecure.util;
 
+import com.primesecure.metrics.FlightRecording;
+import com.primesecure.metrics.LatencyHistogram;
+import com.primesecure.metrics.MetricsRegistry;
+import com.primesecure.metrics.PrimeSearchEvent;
+import com.primesecure.model.LongPrimesList;
 import com.primesecure.model.Message;
+import com.primesecure.model.OffHeapPrimesList;
 import com.primesecure.model.PrimesList;
+import com.primesecure.server.PrimeSearchCoordinator;
+import com.primesecure.server.PrimeSearchWorker;
 import com.primesecure.thread.MessageProcessorThread;
+import com.primesecure.thread.MessageWorkerPool;
 import com.primesecure.thread.PrimeCheckerThread;
+import com.primesecure.thread.VirtualMessagePipeline;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
  * Utilidad para procesar lotes de operaciones usando multihilos.
@@ -27,6 +43,16 @@ import java.util.concurrent.CountDownLatch;
  */
 public class BatchProcessor {
     
+    /** Latencia de cada busqueda de primos por rango */
+    private static final LatencyHistogram primeSearchLatency =
+        MetricsRegistry.getDefault().histogram("primes.search.latency");
+    
+    /** Numeros por bloque en la busqueda con salida continua: un tramo de la criba */
+    private static final long STREAM_BLOCK_SIZE = 1L << 24;
+    
+    /** Numeros minimos por bloque cuando el rango se reparte en bloques mas pequeños */
+    private static final long MIN_STREAM_BLOCK_SIZE = 1L << 20;
+    
     /**
     * Busca numeros primos en un rango usando multiples hilos.
     * <p>
@@ -36,7 +62,7 @@ public class BatchProcessor {
     * 
     * @param startRange El inicio del rango (inclusive)
     * @param endRange El fin del rango (inclusive)
-    * @param threadCount El numero de hilos a utilizar
+    * @param threadCount El numero de hilos a utilizar, o {@link AutoTuner#AUTO} para elegirlo segun el rango
     * @return Una lista de los numeros primos encontrados
     */
     public static PrimesList findPrimesInRange(int startRange, int endRange, int threadCount) {
@@ -47,8 +73,10 @@ public class BatchProcessor {
             throw new IllegalArgumentException("El rango final debe ser mayor o igual al rango inicial");
         }
         
-        // Usar al menos un hilo
-        int actualThreadCount = Math.max(1, threadCount);
+        long startTime = System.nanoTime();
+        PrimeSearchEvent event = FlightRecording.isActive() ? new PrimeSearchEvent() : null;
+        
+        int actualThreadCount = resolveThreads(threadCount, startRange, endRange);
         
         // Calcular el tamaño del rango para cada hilo
         int rangeSize = (endRange - startRange + 1) / actualThreadCount;
@@ -80,18 +108,354 @@ public class BatchProcessor {
             }
         }
         
+        primeSearchLatency.recordSince(startTime);
+        
         // Imprimir estadisticas
         System.out.println("Busqueda de primos completada:");
-        int totalFound = 0;
+        long totalFound = 0;
         for (PrimeCheckerThread thread : threads) {
             totalFound += thread.getFoundCount();
             System.out.println(thread.getName() + " encontro " + thread.getFoundCount() + " primos");
         }
         System.out.println("Total de primos encontrados: " + totalFound);
+        if (event != null) {
+            event.complete(startRange, endRange, actualThreadCount, totalFound);
+        }
         
         return primesList;
     }
     
+    /**
+    * Busca numeros primos en un rango de 64 bits usando multiples hilos.
+    * <p>
+    * Cada hilo criba un segmento contiguo del rango y guarda sus primos en su
+    * propia lista, por lo que el resultado queda ordenado sin sincronizar las
+    * altas. Los primos se guardan como long, 8 bytes por primo; para rangos
+    * con decenas de millones de primos conviene
+    * {@link #streamPrimesInRange(long, long, int, LongConsumer)}.
+    * </p>
+    * <p>
+    * Los rangos que caben en {@link PrimeRangeCache#getDefault()} se resuelven
+    * con ella, cribando solo las partes que ninguna busqueda anterior cubrio.
+    * </p>
+    * 
+    * @param startRange El inicio del rango (inclusive)
+    * @param endRange El fin del rango (inclusive)
+    * @param threadCount El numero de hilos a utilizar, o {@link AutoTuner#AUTO} para elegirlo segun el rango
+    * @return Los numeros primos encontrados, en orden creciente
+    */
+    public static LongPrimesList findPrimesInRange(long startRange, long endRange, int threadCount) {
+        if (startRange < 2) startRange = 2; // El primer numero primo es 2
+        
+        // Validar parametros
+        if (endRange < startRange) {
+            throw new IllegalArgumentException("El rango final debe ser mayor o igual al rango inicial");
+        }
+        
+        long startTime = System.nanoTime();
+        PrimeSearchEvent event = FlightRecording.isActive() ? new PrimeSearchEvent() : null;
+        
+        int actualThreadCount = resolveThreads(threadCount, startRange, endRange);
+        PrimeRangeCache cache = PrimeRangeCache.getDefault();
+        if (cache.accepts(startRange, endRange)) {
+            LongPrimesList primes = cache.primes(startRange, endRange, actualThreadCount);
+            primeSearchLatency.recordSince(startTime);
+            
+            System.out.println("Busqueda de primos completada (aciertos de cache: "
+                + Math.round(cache.getHitRatio() * 100) + "%)");
+            System.out.println("Total de primos encontrados: " + primes.size());
+            if (event != null) {
+                event.complete(startRange, endRange, actualThreadCount, primes.size());
+            }
+            return primes;
+        }
+        
+        List<PrimeCheckerThread> threads = startCheckers(startRange, endRange, actualThreadCount);
+        joinAll(threads);
+        
+        primeSearchLatency.recordSince(startTime);
+        
+        // Unir los resultados en el orden de los segmentos
+        long totalFound = 0;
+        for (PrimeCheckerThread thread : threads) {
+            totalFound += thread.getFoundCount();
+        }
+        LongPrimesList primes = new LongPrimesList((int) Math.min(Integer.MAX_VALUE - 8, totalFound));
+        for (PrimeCheckerThread thread : threads) {
+            primes.appendAll(thread.getPrimes());
+        }
+        
+        System.out.println("Busqueda de primos completada:");
+        for (PrimeCheckerThread thread : threads) {
+            System.out.println(thread.getName() + " encontro " + thread.getFoundCount() + " primos");
+        }
+        System.out.println("Total de primos encontrados: " + totalFound);
+        if (event != null) {
+            event.complete(startRange, endRange, actualThreadCount, totalFound);
+        }
+        
+        return primes;
+    }
+    
+    /**
+    * Busca los numeros primos de un rango de 64 bits y los entrega en orden sin guardarlos.
+    * <p>
+    * El rango se recorre por rondas: en cada ronda cada hilo criba un bloque
+    * consecutivo de hasta 2^24 numeros y, cuando todos terminan, sus primos se
+    * entregan en orden al consumidor antes de empezar la siguiente ronda. Asi
+    * la memoria usada depende del numero de hilos y no del tamaño del rango,
+    * lo que permite recorrer ventanas como [10^15, 10^15 + 10^9] escribiendo
+    * los primos a medida que aparecen. Los rangos que caben en
+    * {@link PrimeRangeCache#getDefault()} se resuelven con ella.
+    * </p>
+    * 
+    * @param startRange El inicio del rango (inclusive)
+    * @param endRange El fin del rango (inclusive)
+    * @param threadCount El numero de hilos a utilizar, o {@link AutoTuner#AUTO} para elegirlo segun el rango
+    * @param consumer El consumidor que recibe cada primo, desde el hilo que llama
+    * @return El numero de primos encontrados; si el hilo que llama es interrumpido,
+    *         la busqueda termina con la ronda en curso y se cuentan solo los entregados
+    */
+    public static long streamPrimesInRange(long startRange, long endRange, int threadCount, LongConsumer consumer) {
+        if (startRange < 2) startRange = 2; // El primer numero primo es 2
+        
+        // Validar parametros
+        if (endRange < startRange) {
+            throw new IllegalArgumentException("El rango final debe ser mayor o igual al rango inicial");
+        }
+        
+        long startTime = System.nanoTime();
+        PrimeSearchEvent event = FlightRecording.isActive() ? new PrimeSearchEvent() : null;
+        
+        int actualThreadCount = resolveThreads(threadCount, startRange, endRange);
+        PrimeRangeCache cache = PrimeRangeCache.getDefault();
+        long totalFound = cache.accepts(startRange, endRange)
+            ? cache.forEachPrime(startRange, endRange, actualThreadCount, consumer)
+            : searchInRounds(startRange, endRange, actualThreadCount, primes -> {
+                for (int i = 0; i < primes.size(); i++) {
+                    consumer.accept(primes.getLong(i));
+                }
+            });
+        
+        primeSearchLatency.recordSince(startTime);
+        System.out.println("Total de primos encontrados: " + totalFound);
+        if (event != null) {
+            event.complete(startRange, endRange, actualThreadCount, totalFound);
+        }
+        
+        return totalFound;
+    }
+    
+    /**
+    * Busca los numeros primos de un rango de 64 bits y los guarda fuera del heap.
+    * <p>
+    * Recorre el rango por rondas como
+    * {@link #streamPrimesInRange(long, long, int, LongConsumer)}, pero cada bloque
+    * se copia completo a la lista con una sola operacion, por lo que el rango
+    * puede tener miles de millones de primos sin que el heap crezca con el.
+    * </p>
+    * 
+    * @param startRange El inicio del rango (inclusive)
+    * @param endRange El fin del rango (inclusive)
+    * @param threadCount El numero de hilos a utilizar, o {@link AutoTuner#AUTO} para elegirlo segun el rango
+    * @param store La lista donde se agregan los primos, en orden creciente
+    * @return El numero de primos encontrados
+    * @throws IOException Si no se puede ampliar el archivo de respaldo de la lista
+    */
+    public static long findPrimesInRange(long startRange, long endRange, int threadCount, OffHeapPrimesList store)
+            throws IOException {
+        if (startRange < 2) startRange = 2; // El primer numero primo es 2
+        
+        // Validar parametros
+        if (endRange < startRange) {
+            throw new IllegalArgumentException("El rango final debe ser mayor o igual al rango inicial");
+        }
+        
+        long startTime = System.nanoTime();
+        PrimeSearchEvent event = FlightRecording.isActive() ? new PrimeSearchEvent() : null;
+        
+        int actualThreadCount = resolveThreads(threadCount, startRange, endRange);
+        long totalFound;
+        try {
+            totalFound = searchInRounds(startRange, endRange, actualThreadCount, primes -> {
+                try {
+                    store.appendAll(primes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        
+        primeSearchLatency.recordSince(startTime);
+        System.out.println("Total de primos encontrados: " + totalFound);
+        if (event != null) {
+            event.complete(startRange, endRange, actualThreadCount, totalFound);
+        }
+        
+        return totalFound;
+    }
+    
+    /**
+    * Criba un rango por rondas de un bloque por hilo y entrega los bloques en orden.
+    * 
+    * @return El numero de primos entregados; una interrupcion termina la busqueda con la ronda en curso
+    */
+    private static long searchInRounds(long startRange, long endRange, int threadCount,
+                                       Consumer<LongPrimesList> sink) {
+        // Rangos de menos de un bloque por hilo se reparten en bloques mas pequeños para ocupar todos los hilos
+        long perThread = (endRange - startRange) / threadCount + 1;
+        long blockSize = Math.min(STREAM_BLOCK_SIZE, Math.max(MIN_STREAM_BLOCK_SIZE, perThread));
+        long totalFound = 0;
+        long blockStart = startRange;
+        boolean done = false;
+        
+        while (!done) {
+            List<PrimeCheckerThread> threads = new ArrayList<>();
+            for (int i = 0; i < threadCount && !done; i++) {
+                // Evitar el desborde al sumar el tamaño del bloque cerca de Long.MAX_VALUE
+                long blockEnd = endRange - blockStart < blockSize
+                    ? endRange
+                    : blockStart + blockSize - 1;
+                PrimeCheckerThread thread = new PrimeCheckerThread(blockStart, blockEnd);
+                thread.setName("PrimeChecker-" + (i + 1));
+                threads.add(thread);
+                thread.start();
+                
+                done = blockEnd == endRange;
+                blockStart = blockEnd + 1;
+            }
+            joinAll(threads);
+            
+            for (PrimeCheckerThread thread : threads) {
+                LongPrimesList primes = thread.getPrimes();
+                sink.accept(primes);
+                totalFound += primes.size();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+        return totalFound;
+    }
+    
+    /**
+    * Busca los numeros primos de un rango repartiendolo entre procesos trabajadores.
+    * <p>
+    * Inicia un {@link PrimeSearchCoordinator} en la direccion indicada, que presta
+    * unidades de unitSize numeros a los {@link PrimeSearchWorker} que se conecten,
+    * sean de este proceso o de otras JVM, y presta de nuevo las unidades de los
+    * trabajadores que se desconectan o vencen. Los primos llegan al consumidor en
+    * orden creciente desde el hilo del coordinador que recibe cada resultado.
+    * </p>
+    * 
+    * @param startRange El inicio del rango (inclusive)
+    * @param endRange El fin del rango (inclusive)
+    * @param address La direccion donde escucha el coordinador
+    * @param unitSize Los numeros por unidad de trabajo
+    * @param localWorkers Los hilos trabajadores de este proceso; 0 para usar solo trabajadores externos
+    * @param consumer El consumidor que recibe cada primo, o null para solo contarlos
+    * @return El numero de primos encontrados
+    * @throws IOException Si no se puede abrir el socket del coordinador
+    * @throws InterruptedException Si el hilo es interrumpido mientras espera
+    */
+    public static long findPrimesInRangeDistributed(long startRange, long endRange, SocketAddress address,
+                                                    long unitSize, int localWorkers, LongConsumer consumer)
+            throws IOException, InterruptedException {
+        long startTime = System.nanoTime();
+        PrimeSearchEvent event = FlightRecording.isActive() ? new PrimeSearchEvent() : null;
+        
+        long totalFound;
+        try (PrimeSearchCoordinator coordinator =
+                 new PrimeSearchCoordinator(address, startRange, endRange, unitSize, consumer)) {
+            coordinator.start();
+            System.out.println("Coordinador escuchando en " + coordinator.getLocalAddress()
+                + " con " + coordinator.getUnitCount() + " unidades");
+            
+            Thread localThread = null;
+            if (localWorkers > 0) {
+                PrimeSearchWorker worker = new PrimeSearchWorker(coordinator.getLocalAddress(), localWorkers);
+                localThread = new Thread(() -> {
+                    try {
+                        worker.run();
+                    } catch (IOException e) {
+                        System.err.println("Error en el trabajador local: " + e.getMessage());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, "PrimeSearchWorker-local");
+                localThread.setDaemon(true);
+                localThread.start();
+            }
+            
+            totalFound = coordinator.awaitCompletion();
+            if (localThread != null) {
+                localThread.join();
+            }
+        }
+        
+        primeSearchLatency.recordSince(startTime);
+        System.out.println("Total de primos encontrados: " + totalFound);
+        if (event != null) {
+            event.complete(Math.max(2, startRange), endRange, localWorkers, totalFound);
+        }
+        return totalFound;
+    }
+    
+    /**
+    * Obtiene el numero de hilos pedido o, con {@link AutoTuner#AUTO}, el que
+    * elige el ajuste segun el tamaño del rango.
+    */
+    private static int resolveThreads(int threadCount, long startRange, long endRange) {
+        return threadCount > 0 ? threadCount : AutoTuner.getDefault().primeThreads(endRange - startRange + 1);
+    }
+    
+    /**
+    * Divide un rango en segmentos contiguos e inicia un verificador por segmento.
+    */
+    private static List<PrimeCheckerThread> startCheckers(long startRange, long endRange, int threadCount) {
+        long rangeSize = (endRange - startRange + 1) / threadCount;
+        List<PrimeCheckerThread> threads = new ArrayList<>();
+        
+        for (int i = 0; i < threadCount; i++) {
+            long threadStartRange = startRange + (i * rangeSize);
+            long threadEndRange = (i == threadCount - 1)
+                ? endRange
+                : threadStartRange + rangeSize - 1;
+            
+            PrimeCheckerThread thread = new PrimeCheckerThread(threadStartRange, threadEndRange);
+            thread.setName("PrimeChecker-" + (i + 1));
+            threads.add(thread);
+            thread.start();
+        }
+        return threads;
+    }
+    
+    /**
+    * Espera a que terminen todos los hilos de una lista.
+    * <p>
+    * Una interrupcion no corta la espera, para que los resultados de los hilos
+    * esten completos; solo se restaura el estado de interrupcion al final.
+    * </p>
+    */
+    private static void joinAll(List<PrimeCheckerThread> threads) {
+        boolean interrupted = false;
+        for (PrimeCheckerThread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
     /**
     * Procesa un lote de mensajes usando multiples hilos.
     * <p>
@@ -102,14 +466,76 @@ public class BatchProcessor {
     * @param messages La lista de mensajes a procesar
     * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
     * @param threadCount El numero de hilos a utilizar
+    * @return El reporte de rendimiento del lote
+    */
+    public static MessageWorkerPool.BatchReport processMessages(List<Message> messages, boolean encrypt, int threadCount) {
+        // Usar el metodo estatico de MessageProcessorThread
+        return MessageProcessorThread.processMessagesBatch(messages, encrypt, threadCount);
+    }
+    
+    /**
+    * Procesa un lote grande de mensajes cortos agrupandolos por codigo primo.
+    * <p>
+    * Cada hilo reutiliza un unico codificador y buffer de trabajo, por lo que
+    * el costo por mensaje se reduce practicamente al ciclo de transformacion.
+    * </p>
+    * 
+    * @param messages La lista de mensajes a procesar
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @param threadCount El numero de hilos a utilizar
+    * @return El reporte de rendimiento del lote
+    */
+    public static MessageWorkerPool.BatchReport processMessagesGrouped(List<Message> messages, boolean encrypt, int threadCount) {
+        return MessageProcessorThread.processMessagesGrouped(messages, encrypt, threadCount);
+    }
+    
+    /**
+    * Procesa un lote de mensajes usando un hilo virtual por mensaje.
+    * <p>
+    * Esta variante conviene cuando el procesamiento de cada mensaje incluye
+    * entrada/salida; la concurrencia maxima limita la memoria usada y el primer
+    * fallo cancela el resto del lote.
+    * </p>
+    * 
+    * @param messages La lista de mensajes a procesar
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @param maxConcurrency El numero maximo de mensajes procesandose al mismo tiempo
+    * @return El numero de mensajes procesados
+    * @throws ExecutionException Si el procesamiento de algun mensaje falla
+    * @throws InterruptedException Si el hilo es interrumpido durante el procesamiento
     */
-    public static void processMessages(List<Message> messages, boolean encrypt, int threadCount) {
+    public static int processMessagesVirtual(List<Message> messages, boolean encrypt, int maxConcurrency)
+            throws ExecutionException, InterruptedException {
         if (messages == null || messages.isEmpty()) {
-            return;
+            return 0;
         }
         
-        // Usar el metodo estatico de MessageProcessorThread
-        MessageProcessorThread.processMessagesBatch(messages, encrypt, threadCount);
+        return new VirtualMessagePipeline(maxConcurrency)
+            .process(messages, VirtualMessagePipeline.cipherTask(encrypt));
+    }
+    
+    /**
+    * Importa y procesa los mensajes de un archivo de texto exportado.
+    * <p>
+    * Cada region del archivo se encripta o desencripta en cuanto termina su
+    * analisis, mientras las regiones siguientes aun se estan importando.
+    * </p>
+    * 
+    * @param filePath La ruta del archivo de texto
+    * @param encrypt Indicador de si se debe encriptar (true) o desencriptar (false)
+    * @param threadCount El numero de hilos a utilizar
+    * @return La lista de mensajes importados y procesados
+    * @throws IOException Si ocurre un error de lectura o el archivo tiene un registro invalido
+    */
+    public static List<Message> processMessagesFromText(String filePath, boolean encrypt, int threadCount) throws IOException {
+        List<Message> messages = new ArrayList<>();
+        
+        TextMessageImporter.importMessages(filePath, threadCount, regionMessages -> {
+            processMessages(regionMessages, encrypt, threadCount);
+            messages.addAll(regionMessages);
+        });
+        
+        return messages;
     }
     
     /**
@@ -6,7 +6,14 @@
 package com.primesecure.util;
 
 import com.primesecure.model.Message;
+import com.primesecure.security.CipherCache;
+import com.primesecure.security.PrimeEncoder;
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,6 +30,9 @@ import java.util.List;
  */
 public class MessageExporter {
     
+    /** Peso maximo de la cache de encriptacion usada al generar mensajes de ejemplo */
+    private static final long SAMPLE_CACHE_WEIGHT = 64 * 1024;
+    
     /**
     * Exporta una lista de mensajes a un archivo binario.
     * 
@@ -53,8 +63,56 @@ public class MessageExporter {
         }
     }
     
+    /**
+    * Cambia el codigo primo de todos los mensajes de un archivo binario.
+    * <p>
+    * Los mensajes encriptados pasan directamente al nuevo codigo con
+    * {@link Message#rekey(int)}, sin desencriptarlos y volver a encriptarlos.
+    * El formato binario es una lista serializada completa, por lo que el
+    * archivo se carga entero en memoria; el resultado se escribe en un archivo
+    * temporal que reemplaza al destino de una sola vez, asi que una caida a
+    * mitad de la escritura no pierde el archivo aunque origen y destino sean el mismo.
+    * </p>
+    * 
+    * @param inputPath El archivo binario de origen
+    * @param outputPath El archivo binario de destino; puede ser el mismo que el de origen
+    * @param newPrimeCode El nuevo codigo primo
+    * @return El numero de mensajes procesados
+    * @throws IOException Si ocurre un error de lectura o escritura
+    * @throws ClassNotFoundException Si la clase de los objetos serializados no se encuentra
+    */
+    public static int rekeyMessages(String inputPath, String outputPath, int newPrimeCode)
+            throws IOException, ClassNotFoundException {
+        List<Message> messages = importMessages(inputPath);
+        for (Message message : messages) {
+            message.rekey(newPrimeCode);
+        }
+        
+        Path output = Paths.get(outputPath);
+        Path temporary = output.resolveSibling(output.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(file))) {
+            oos.writeObject(messages);
+            oos.flush();
+            file.getFD().sync();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        try {
+            Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return messages.size();
+    }
+    
     /**
     * Exporta una lista de mensajes a un archivo de texto.
+    * <p>
+    * Cada mensaje ocupa una linea; los saltos de linea y las barras invertidas
+    * de los campos se escriben como secuencias de escape.
+    * </p>
     * 
     * @param messages La lista de mensajes a exportar
     * @param filePath La ruta del archivo donde guardar los mensajes
@@ -69,13 +127,13 @@ public class MessageExporter {
             writer.println();
             
             for (Message message : messages) {
-                writer.print(message.getSender() + " | ");
-                writer.print(message.getRecipient() + " | ");
+                writer.print(TextMessageImporter.escape(String.valueOf(message.getSender())) + " | ");
+                writer.print(TextMessageImporter.escape(String.valueOf(message.getRecipient())) + " | ");
                 writer.print((message.isEncrypted() ? "Encriptado" : "Desencriptado") + " | ");
                 writer.print(message.getPrimeCode());
                 
                 if (includeContent) {
-                    writer.print(" | " + message.getContent());
+                    writer.print(" | " + TextMessageImporter.escape(String.valueOf(message.getContent())));
                 }
                 
                 writer.println();
@@ -85,6 +143,53 @@ public class MessageExporter {
         }
     }
     
+    /**
+    * Importa una lista de mensajes desde un archivo de texto exportado.
+    * <p>
+    * El archivo se analiza en paralelo por regiones usando {@link TextMessageImporter}.
+    * </p>
+    * 
+    * @param filePath La ruta del archivo de texto
+    * @param threadCount El numero de hilos a utilizar
+    * @return La lista de mensajes importados, en el orden del archivo
+    * @throws IOException Si ocurre un error de lectura o el archivo tiene un registro invalido
+    */
+    public static List<Message> importMessagesFromText(String filePath, int threadCount) throws IOException {
+        return TextMessageImporter.importMessages(filePath, threadCount);
+    }
+    
+    /**
+    * Exporta una lista de mensajes a un archivo dividido en particiones.
+    * <p>
+    * Cada particion se escribe en su propio archivo por un hilo distinto y un
+    * manifiesto las une; ver {@link ShardedArchive}.
+    * </p>
+    * 
+    * @param messages La lista de mensajes a exportar
+    * @param manifestPath La ruta del manifiesto; las particiones se crean junto a el
+    * @param shardCount El numero de particiones
+    * @param partition El criterio con que se reparten los mensajes
+    * @param threadCount El numero de hilos a utilizar
+    * @return El numero de mensajes exportados
+    * @throws IOException Si ocurre un error durante la escritura
+    */
+    public static int exportMessagesSharded(List<Message> messages, String manifestPath, int shardCount,
+                                            ShardedArchive.Partition partition, int threadCount) throws IOException {
+        return ShardedArchive.write(messages, manifestPath, shardCount, partition, threadCount);
+    }
+    
+    /**
+    * Importa los mensajes de un archivo dividido en particiones, leyendolas en paralelo.
+    * 
+    * @param manifestPath La ruta del manifiesto
+    * @param threadCount El numero de hilos a utilizar
+    * @return Los mensajes importados, agrupados por particion
+    * @throws IOException Si ocurre un error de lectura o una particion no coincide con el manifiesto
+    */
+    public static List<Message> importMessagesSharded(String manifestPath, int threadCount) throws IOException {
+        return ShardedArchive.read(manifestPath, threadCount);
+    }
+    
     /**
     * Genera un archivo de ejemplo con mensajes aleatorios.
     * 
@@ -105,6 +210,10 @@ public class MessageExporter {
             "Necesitamos discutir el nuevo proyecto"
         };
         
+        // Los contenidos se repiten, asi que una cache pequeña evita recalcular la encriptacion
+        PrimeEncoder encoder = new PrimeEncoder(
+            new CipherCache(SAMPLE_CACHE_WEIGHT, CipherCache.EvictionPolicy.LRU));
+        
         for (int i = 0; i < count; i++) {
             int senderIdx = i % senders.length;
             int recipientIdx = (i + 1) % recipients.length;
@@ -120,7 +229,7 @@ public class MessageExporter {
             
             // Encriptar algunos mensajes aleatoriamente
             if (i % 2 == 0) {
-                message.encrypt();
+                message.encrypt(encoder);
             }
             
             sampleMessages.add(message);
@@ -0,0 +1,654 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.util;
+
+import com.primesecure.metrics.Counter;
+import com.primesecure.metrics.LatencyHistogram;
+import com.primesecure.metrics.MetricsRegistry;
+import com.primesecure.model.Message;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Registro de mensajes en disco en el que solo se agrega al final.
+ * <p>
+ * El registro es un directorio de segmentos; cada segmento se llama con el
+ * numero de secuencia de su primer mensaje y se cierra al llegar a su tamaño
+ * maximo. Cada mensaje es un registro {@code [largo][CRC32C][datos]} con
+ * enteros big-endian y textos en UTF-8, de modo que agregar un mensaje no
+ * reescribe los anteriores.
+ * </p>
+ * <p>
+ * Los productores codifican su mensaje en su propio hilo y lo encolan; un
+ * unico hilo escritor junta lo encolado y hace una sola escritura y un solo
+ * {@link FileChannel#force(boolean)} por confirmacion en grupo, como maximo
+ * una vez por intervalo de confirmacion. {@link #append(Message)} retorna
+ * cuando el mensaje ya esta en disco, y {@link #appendAsync(Message)} permite
+ * que un productor siga encolando sin esperar cada confirmacion. La cola es
+ * acotada, asi que los productores esperan si el disco no da abasto.
+ * </p>
+ * <p>
+ * Al abrir el registro se recorre el ultimo segmento y se trunca el primer
+ * registro incompleto o con CRC invalido, que es lo que deja una caida a
+ * mitad de una escritura; los mensajes anteriores quedan intactos.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class MessageLog implements AutoCloseable {
+    
+    /** Tamaño maximo por defecto de un segmento */
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    
+    /** Intervalo de confirmacion en grupo por defecto */
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 2;
+    
+    /** Mensajes que pueden esperar en la cola antes de que los productores se bloqueen */
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    
+    /** Bytes que se juntan como maximo en una confirmacion */
+    private static final int MAX_BATCH_BYTES = 8 << 20;
+    
+    /** Mayor registro aceptado; protege la recuperacion de largos dañados */
+    private static final int MAX_RECORD_BYTES = 64 << 20;
+    
+    /** Cabecera de cada segmento: "PSLG" y la version del formato */
+    private static final int SEGMENT_MAGIC = 0x50534C47;
+    private static final int SEGMENT_VERSION = 1;
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    
+    /** Largo y CRC antes de los datos de cada registro */
+    private static final int RECORD_HEADER_BYTES = 8;
+    
+    /** Extension de los archivos de segmento */
+    private static final String SEGMENT_SUFFIX = ".log";
+    
+    private static final Counter appended = MetricsRegistry.getDefault().counter("log.records.appended");
+    private static final Counter commits = MetricsRegistry.getDefault().counter("log.commits");
+    private static final Counter truncatedBytes = MetricsRegistry.getDefault().counter("log.recovery.truncatedBytes");
+    private static final LatencyHistogram commitLatency = MetricsRegistry.getDefault().histogram("log.commit.latency");
+    
+    /** El directorio de los segmentos */
+    private final Path directory;
+    
+    /** Tamaño a partir del cual se abre un segmento nuevo */
+    private final long maxSegmentBytes;
+    
+    /** Tiempo minimo entre dos confirmaciones */
+    private final long commitIntervalNanos;
+    
+    /** Mensajes codificados que esperan al escritor */
+    private final BlockingQueue<PendingRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    
+    /** Los productores toman el candado compartido; close() el exclusivo para que nadie encole despues */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    
+    /** El hilo que escribe y confirma los grupos */
+    private final Thread flusher;
+    
+    /** El segmento en que se escribe; solo lo usa el escritor tras abrir el registro */
+    private FileChannel segment;
+    private long segmentSize;
+    
+    /** Numero de secuencia del siguiente mensaje que se escriba */
+    private long nextSequence;
+    
+    /** Bytes descartados al recuperar el registro */
+    private final long recoveredBytes;
+    
+    private volatile boolean closed;
+    private volatile IOException failure;
+    
+    /**
+    * Un mensaje codificado y la confirmacion que espera su productor.
+    */
+    private static final class PendingRecord {
+        final byte[] bytes;
+        final CompletableFuture<Long> committed = new CompletableFuture<>();
+        
+        PendingRecord(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+    
+    private MessageLog(Path directory, long maxSegmentBytes, long commitIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(commitIntervalMillis);
+        this.recoveredBytes = recover();
+        this.flusher = new Thread(this::flushLoop, "MessageLog-" + directory.getFileName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+    
+    /**
+    * Abre o crea un registro con el tamaño de segmento y el intervalo por defecto.
+    * 
+    * @param directory El directorio del registro; se crea si no existe
+    * @return El registro abierto, listo para agregar mensajes
+    * @throws IOException Si no se puede crear o recuperar el registro
+    */
+    public static MessageLog open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_COMMIT_INTERVAL_MILLIS);
+    }
+    
+    /**
+    * Abre o crea un registro, recuperando el final del ultimo segmento.
+    * 
+    * @param directory El directorio del registro; se crea si no existe
+    * @param maxSegmentBytes El tamaño a partir del cual se abre un segmento nuevo
+    * @param commitIntervalMillis El tiempo minimo entre confirmaciones; 0 confirma en cuanto puede
+    * @return El registro abierto, listo para agregar mensajes
+    * @throws IOException Si no se puede crear o recuperar el registro
+    */
+    public static MessageLog open(Path directory, long maxSegmentBytes, long commitIntervalMillis)
+            throws IOException {
+        if (maxSegmentBytes <= SEGMENT_HEADER_BYTES) {
+            throw new IllegalArgumentException("El tamaño de segmento es demasiado pequeño");
+        }
+        if (commitIntervalMillis < 0) {
+            throw new IllegalArgumentException("El intervalo de confirmacion no puede ser negativo");
+        }
+        Files.createDirectories(directory);
+        return new MessageLog(directory, maxSegmentBytes, commitIntervalMillis);
+    }
+    
+    /**
+    * Agrega un mensaje y espera a que este en disco.
+    * 
+    * @param message El mensaje a agregar
+    * @return El numero de secuencia del mensaje
+    * @throws IOException Si el registro no pudo escribir o confirmar el mensaje
+    * @throws InterruptedException Si el hilo es interrumpido mientras espera
+    * @throws IllegalArgumentException Si el mensaje codificado supera el mayor registro aceptado
+    */
+    public long append(Message message) throws IOException, InterruptedException {
+        try {
+            return appendAsync(message).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException
+                ? (IOException) e.getCause()
+                : new IOException("Error agregando mensaje: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+    
+    /**
+    * Encola un mensaje sin esperar a que se confirme.
+    * <p>
+    * Los mensajes de un mismo productor quedan en el registro en el orden en
+    * que se encolan. Si la cola esta llena, espera a que el escritor la vacie;
+    * la espera se hace por intervalos sin retener el candado, de modo que un
+    * fallo del escritor o un cierre no quedan bloqueados por el productor.
+    * </p>
+    * 
+    * @param message El mensaje a agregar
+    * @return Una tarea que se completa con el numero de secuencia cuando el
+    *         mensaje esta en disco, o con el error si no se pudo escribir
+    * @throws InterruptedException Si el hilo es interrumpido mientras espera lugar en la cola
+    * @throws IllegalArgumentException Si el mensaje codificado supera el mayor registro aceptado
+    */
+    public CompletableFuture<Long> appendAsync(Message message) throws InterruptedException {
+        PendingRecord record = new PendingRecord(encode(message));
+        while (true) {
+            closeLock.readLock().lock();
+            try {
+                if (closed) {
+                    throw new IllegalStateException("El registro esta cerrado");
+                }
+                IOException error = failure;
+                if (error != null) {
+                    record.committed.completeExceptionally(error);
+                    return record.committed;
+                }
+                if (queue.offer(record, 50, TimeUnit.MILLISECONDS)) {
+                    return record.committed;
+                }
+            } finally {
+                closeLock.readLock().unlock();
+            }
+        }
+    }
+    
+    /**
+    * Lee los mensajes de un registro en orden, desde un numero de secuencia.
+    * <p>
+    * La lectura se detiene en el primer registro incompleto o dañado, por lo
+    * que puede hacerse mientras otro proceso agrega mensajes.
+    * </p>
+    * 
+    * @param directory El directorio del registro
+    * @param fromSequence El primer numero de secuencia a entregar
+    * @param consumer El consumidor que recibe cada mensaje
+    * @return El numero de mensajes entregados
+    * @throws IOException Si falla la lectura
+    */
+    public static long read(Path directory, long fromSequence, Consumer<Message> consumer) throws IOException {
+        List<Long> bases = listSegments(directory);
+        long delivered = 0;
+        for (int i = 0; i < bases.size(); i++) {
+            // Saltar los segmentos que terminan antes del primer mensaje pedido
+            if (i + 1 < bases.size() && bases.get(i + 1) <= fromSequence) {
+                continue;
+            }
+            long sequence = bases.get(i);
+            try (FileChannel channel = FileChannel.open(segmentPath(directory, sequence), StandardOpenOption.READ)) {
+                ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (!hasValidHeader(data)) {
+                    return delivered;
+                }
+                data.position(SEGMENT_HEADER_BYTES);
+                byte[] payload;
+                while ((payload = nextRecord(data)) != null) {
+                    if (sequence++ >= fromSequence) {
+                        consumer.accept(decode(payload));
+                        delivered++;
+                    }
+                }
+                if (data.hasRemaining()) {
+                    // Un registro dañado: lo que sigue no es confiable
+                    return delivered;
+                }
+            }
+        }
+        return delivered;
+    }
+    
+    /**
+    * Obtiene el numero de secuencia del siguiente mensaje que se confirme.
+    * 
+    * @return El numero de mensajes escritos en el registro
+    */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+    
+    /**
+    * Obtiene los bytes descartados al recuperar el registro.
+    * 
+    * @return Los bytes del final dañado que se truncaron al abrir
+    */
+    public long getRecoveredBytes() {
+        return recoveredBytes;
+    }
+    
+    /**
+    * Confirma los mensajes encolados y cierra el registro.
+    * 
+    * @throws IOException Si fallo la escritura de algun mensaje
+    */
+    @Override
+    public void close() throws IOException {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (segment != null) {
+                segment.close();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    /**
+    * Junta los mensajes encolados y los confirma por grupos hasta que el registro se cierra.
+    */
+    private void flushLoop() {
+        List<PendingRecord> batch = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        long lastCommit = System.nanoTime() - commitIntervalNanos;
+        try {
+            while (true) {
+                PendingRecord first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed && queue.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                int batchBytes = first.bytes.length;
+                
+                // Seguir juntando hasta que se cumpla el intervalo desde la confirmacion anterior
+                long remaining;
+                while (batchBytes < MAX_BATCH_BYTES
+                        && (remaining = lastCommit + commitIntervalNanos - System.nanoTime()) > 0) {
+                    PendingRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    batchBytes += next.bytes.length;
+                }
+                PendingRecord next;
+                while (batchBytes < MAX_BATCH_BYTES && (next = queue.poll()) != null) {
+                    batch.add(next);
+                    batchBytes += next.bytes.length;
+                }
+                
+                buffer = commit(batch, buffer);
+                lastCommit = System.nanoTime();
+                batch.clear();
+            }
+        } catch (IOException e) {
+            fail(batch, e);
+        } catch (InterruptedException e) {
+            fail(batch, new IOException("El escritor del registro fue interrumpido"));
+        }
+    }
+    
+    /**
+    * Escribe un grupo con una escritura por segmento y lo confirma con un solo force().
+    */
+    private synchronized ByteBuffer commit(List<PendingRecord> batch, ByteBuffer buffer) throws IOException {
+        long start = System.nanoTime();
+        long firstSequence = nextSequence;
+        int i = 0;
+        while (i < batch.size()) {
+            if (segmentSize > SEGMENT_HEADER_BYTES && segmentSize + batch.get(i).bytes.length > maxSegmentBytes) {
+                roll();
+            }
+            
+            // Reunir los registros que caben en el segmento actual
+            int end = i;
+            long bytes = 0;
+            while (end < batch.size() && (end == i || segmentSize + bytes + batch.get(end).bytes.length <= maxSegmentBytes)) {
+                bytes += batch.get(end).bytes.length;
+                end++;
+            }
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocateDirect((int) Math.max(bytes, buffer.capacity() * 2L));
+            }
+            buffer.clear();
+            for (int j = i; j < end; j++) {
+                buffer.put(batch.get(j).bytes);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+            segmentSize += bytes;
+            nextSequence += end - i;
+            i = end;
+        }
+        segment.force(false);
+        
+        commitLatency.recordSince(start);
+        commits.increment();
+        appended.add(batch.size());
+        for (int j = 0; j < batch.size(); j++) {
+            batch.get(j).committed.complete(firstSequence + j);
+        }
+        return buffer;
+    }
+    
+    /**
+    * Marca el registro como fallido y rechaza lo que esperaba confirmacion.
+    */
+    private void fail(List<PendingRecord> batch, IOException error) {
+        closeLock.writeLock().lock();
+        try {
+            failure = error;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        for (PendingRecord record : batch) {
+            record.committed.completeExceptionally(error);
+        }
+        PendingRecord record;
+        while ((record = queue.poll()) != null) {
+            record.committed.completeExceptionally(error);
+        }
+    }
+    
+    /**
+    * Confirma y cierra el segmento actual y abre uno nuevo que empieza en el siguiente mensaje.
+    */
+    private void roll() throws IOException {
+        segment.force(false);
+        segment.close();
+        openSegment(nextSequence, true);
+    }
+    
+    /**
+    * Abre un segmento para escribir al final; si es nuevo, escribe su cabecera.
+    */
+    private void openSegment(long baseSequence, boolean create) throws IOException {
+        Path path = segmentPath(directory, baseSequence);
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (create) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES).putInt(SEGMENT_MAGIC).putInt(SEGMENT_VERSION);
+            segment.truncate(0);
+            segment.write(header.flip(), 0);
+            segment.force(true);
+            syncDirectory();
+        }
+        segmentSize = segment.size();
+        segment.position(segmentSize);
+    }
+    
+    /**
+    * Recorre el ultimo segmento, trunca su final dañado y deja el registro listo para escribir.
+    * 
+    * @return Los bytes truncados
+    */
+    private long recover() throws IOException {
+        List<Long> bases = listSegments(directory);
+        if (bases.isEmpty()) {
+            nextSequence = 0;
+            openSegment(0, true);
+            return 0;
+        }
+        
+        long base = bases.get(bases.size() - 1);
+        long valid;
+        long size;
+        long records = 0;
+        try (FileChannel channel = FileChannel.open(segmentPath(directory, base), StandardOpenOption.READ)) {
+            size = channel.size();
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (!hasValidHeader(data)) {
+                // El segmento se creo pero su cabecera no llego al disco
+                nextSequence = base;
+                openSegment(base, true);
+                truncatedBytes.add(size);
+                return size;
+            }
+            data.position(SEGMENT_HEADER_BYTES);
+            while (nextRecord(data) != null) {
+                records++;
+            }
+            valid = data.position();
+        }
+        
+        nextSequence = base + records;
+        openSegment(base, false);
+        if (valid < size) {
+            segment.truncate(valid);
+            segment.force(true);
+            segmentSize = valid;
+            segment.position(valid);
+            truncatedBytes.add(size - valid);
+        }
+        return size - valid;
+    }
+    
+    /**
+    * Lee el siguiente registro valido y deja la posicion despues de el.
+    * 
+    * @return Los datos del registro, o null si lo que sigue esta incompleto o
+    *         dañado; en ese caso la posicion queda al inicio de ese registro
+    */
+    static byte[] nextRecord(ByteBuffer data) {
+        int start = data.position();
+        if (data.remaining() < RECORD_HEADER_BYTES) {
+            return null;
+        }
+        int length = data.getInt();
+        int crc = data.getInt();
+        if (length < 0 || length > MAX_RECORD_BYTES || length > data.remaining()) {
+            data.position(start);
+            return null;
+        }
+        byte[] payload = new byte[length];
+        data.get(payload);
+        CRC32C checksum = new CRC32C();
+        checksum.update(payload);
+        if ((int) checksum.getValue() != crc) {
+            data.position(start);
+            return null;
+        }
+        return payload;
+    }
+    
+    /**
+    * Codifica un mensaje como un registro completo, con su largo y su CRC.
+    * <p>
+    * {@link ShardedArchive} usa el mismo formato de registro en sus particiones.
+    * Un mensaje mayor que el mayor registro aceptado se rechaza, porque al
+    * leerlo se tomaria por un registro dañado. Un texto nulo se guarda con
+    * largo -1 para distinguirlo de un texto vacio.
+    * </p>
+    * 
+    * @throws IllegalArgumentException Si el mensaje codificado supera el mayor registro aceptado
+    */
+    static byte[] encode(Message message) {
+        byte[] content = bytes(message.getContent());
+        byte[] sender = bytes(message.getSender());
+        byte[] recipient = bytes(message.getRecipient());
+        long total = 4L + 1 + 12 + length(content) + length(sender) + length(recipient);
+        if (total > MAX_RECORD_BYTES) {
+            // La recuperacion y la lectura tratan un largo mayor como un registro dañado
+            throw new IllegalArgumentException("El mensaje ocupa " + total + " bytes; el maximo es " + MAX_RECORD_BYTES);
+        }
+        int length = (int) total;
+        
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + length);
+        record.putInt(length).putInt(0);
+        record.putInt(message.getPrimeCode()).put((byte) (message.isEncrypted() ? 1 : 0));
+        putString(record, content);
+        putString(record, sender);
+        putString(record, recipient);
+        
+        CRC32C checksum = new CRC32C();
+        checksum.update(record.array(), RECORD_HEADER_BYTES, length);
+        record.putInt(4, (int) checksum.getValue());
+        return record.array();
+    }
+    
+    /**
+    * Reconstruye un mensaje a partir de los datos de un registro.
+    */
+    static Message decode(byte[] payload) {
+        ByteBuffer data = ByteBuffer.wrap(payload);
+        int primeCode = data.getInt();
+        boolean encrypted = data.get() != 0;
+        String content = string(data);
+        String sender = string(data);
+        String recipient = string(data);
+        return new Message(content, sender, recipient, primeCode, encrypted);
+    }
+    
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+    
+    private static void putString(ByteBuffer record, byte[] value) {
+        if (value == null) {
+            record.putInt(-1);
+        } else {
+            record.putInt(value.length).put(value);
+        }
+    }
+    
+    private static String string(ByteBuffer data) {
+        int length = data.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(data.array(), data.position(), length, StandardCharsets.UTF_8);
+        data.position(data.position() + length);
+        return value;
+    }
+    
+    private static boolean hasValidHeader(ByteBuffer data) {
+        return data.limit() >= SEGMENT_HEADER_BYTES
+            && data.getInt(0) == SEGMENT_MAGIC && data.getInt(4) == SEGMENT_VERSION;
+    }
+    
+    /**
+    * Obtiene los numeros de secuencia iniciales de los segmentos, en orden.
+    */
+    private static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> bases = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return bases;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                .forEach(name -> {
+                    try {
+                        bases.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        // No es un segmento del registro
+                    }
+                });
+        }
+        bases.sort(null);
+        return bases;
+    }
+    
+    private static Path segmentPath(Path directory, long baseSequence) {
+        return directory.resolve(String.format("%020d%s", baseSequence, SEGMENT_SUFFIX));
+    }
+    
+    /**
+    * Confirma la entrada de un segmento nuevo en el directorio, donde el sistema lo permite.
+    */
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Algunos sistemas no permiten abrir directorios; el segmento igual queda confirmado
+        }
+    }
+}
\ No newline at end of file
@@ -14,6 +14,11 @@ import java.util.Random;
  * Esta clase proporciona metodos para generar numeros primos aleatorios
  * y verificar si un numero es primo.
  * </p>
+ * <p>
+ * Tambien permite contar los primos de un rango y obtener el n-esimo primo sin
+ * enumerarlos, mediante el conteo de Meissel-Lehmer, para valores hasta
+ * {@link #MAX_COUNT_LIMIT}.
+ * </p>
  * 
  * @author PrimeSecure Team
  * @version 1.0
@@ -24,6 +29,15 @@ public class PrimeCalculator {
     /** Generador de numeros aleatorios */
     private static final Random random = new Random();
     
+    /** Mayor valor admitido por {@link #nthPrime} y por el conteo sin cribar de {@link #countPrimes} */
+    public static final long MAX_COUNT_LIMIT = PrimeCounter.MAX_LIMIT;
+    
+    /** Ventanas menores que este tamaño se cuentan cribando, que es mas rapido que el conteo global */
+    private static final long SIEVE_COUNT_WINDOW = 1L << 26;
+    
+    /** Mayor ventana que se criba para contar por encima de MAX_COUNT_LIMIT */
+    public static final long MAX_SIEVE_COUNT_WINDOW = 10_000_000_000L;
+    
     /**
     * Genera un numero primo aleatorio dentro de un rango especificado.
     * <p>
@@ -93,4 +107,50 @@ public class PrimeCalculator {
         
         return -1; // No hay primos menores que 2
     }
+    
+    /**
+    * Cuenta los numeros primos de un rango sin enumerarlos.
+    * <p>
+    * Calcula pi(hi) - pi(lo - 1) con la formula de Meissel-Lehmer, en tiempo
+    * sublineal: para valores de 10^12 la respuesta tarda milisegundos en lugar
+    * de los minutos que requiere cribar el rango completo. Las ventanas
+    * pequeñas, y las que superan {@link #MAX_COUNT_LIMIT}, se cuentan con
+    * {@link SegmentedSieve}.
+    * </p>
+    * 
+    * @param lo El inicio del rango (inclusive)
+    * @param hi El fin del rango (inclusive)
+    * @return El numero de primos en el rango, 0 si el rango esta vacio
+    * @throws IllegalArgumentException Si hi supera {@link #MAX_COUNT_LIMIT} y la
+    *         ventana supera {@link #MAX_SIEVE_COUNT_WINDOW}
+    */
+    public static long countPrimes(long lo, long hi) {
+        if (hi < 2 || hi < lo) {
+            return 0;
+        }
+        lo = Math.max(lo, 0);
+        if (hi - lo < SIEVE_COUNT_WINDOW) {
+            return SegmentedSieve.countPrimes(lo, hi);
+        }
+        if (hi > MAX_COUNT_LIMIT) {
+            if (hi - lo > MAX_SIEVE_COUNT_WINDOW) {
+                throw new IllegalArgumentException("Por encima de " + MAX_COUNT_LIMIT
+                    + " solo se pueden contar ventanas de hasta " + MAX_SIEVE_COUNT_WINDOW + " numeros");
+            }
+            return SegmentedSieve.countPrimes(lo, hi);
+        }
+        long upper = PrimeCounter.pi(hi);
+        return lo <= 2 ? upper : upper - PrimeCounter.pi(lo - 1);
+    }
+    
+    /**
+    * Obtiene el n-esimo numero primo, contando el 2 como el primero.
+    * 
+    * @param n La posicion del primo, desde 1
+    * @return El n-esimo numero primo
+    * @throws IllegalArgumentException Si n es menor que 1 o el primo supera {@link #MAX_COUNT_LIMIT}
+    */
+    public static long nthPrime(long n) {
+        return PrimeCounter.nthPrime(n);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,489 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.util;
+
+import com.primesecure.model.LongPrimesList;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+
+/**
+ * Implementacion de la funcion contadora de primos pi(x) y de la busqueda del n-esimo primo.
+ * <p>
+ * pi(x) se calcula con la formula de Meissel-Lehmer:
+ * {@code pi(x) = phi(x, a) + a - 1 - P2(x, a)} con {@code a = pi(x^(1/3))}, donde
+ * phi(x, a) cuenta los enteros hasta x sin factores entre los primeros a primos.
+ * phi se evalua recursivamente, usando tablas para los primeros siete primos y
+ * una tabla de pi hasta {@code x^(2/3)} para cortar la recursion; P2 solo
+ * necesita esa misma tabla. La tabla es un arreglo de bits de los impares con
+ * conteos acumulados por palabra, por lo que para 10^12 ocupa unos 10 MB y
+ * evita enumerar los 3.7 * 10^10 primos del rango.
+ * </p>
+ * <p>
+ * La ultima tabla calculada se conserva mediante una referencia suave, de modo
+ * que las consultas consecutivas de un mismo orden de magnitud la reutilizan.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+final class PrimeCounter {
+    
+    /** Mayor valor de x soportado por {@link #pi(long)}, limitado por la memoria de la tabla */
+    static final long MAX_LIMIT = 10_000_000_000_000L;
+    
+    /** Hasta este valor pi(x) se responde directamente con la tabla */
+    private static final long DIRECT_LIMIT = 10_000_000L;
+    
+    /** Numero de primos cubiertos por las tablas de phi */
+    private static final int SMALL_A = 7;
+    
+    /** Impares por segmento de criba: 32 KB de bits, para trabajar dentro de la cache */
+    private static final int SEGMENT_ODDS = 1 << 18;
+    
+    /** Limite (exclusivo) de x para guardar phi(x, a); los valores caben en un char */
+    private static final int PHI_CACHE_X = 1 << 16;
+    
+    /** Mayor a para el que se guarda phi(x, a) */
+    private static final int PHI_CACHE_A = 100;
+    
+    /** La ultima tabla de pi calculada */
+    private static volatile SoftReference<PiTable> cachedTable = new SoftReference<>(null);
+    
+    private PrimeCounter() {
+    }
+    
+    /**
+    * Cuenta los primos menores o iguales a x.
+    * 
+    * @param x El limite superior (inclusive)
+    * @return El numero de primos hasta x
+    * @throws IllegalArgumentException Si x supera {@link #MAX_LIMIT}
+    */
+    static long pi(long x) {
+        if (x < 2) {
+            return 0;
+        }
+        if (x > MAX_LIMIT) {
+            throw new IllegalArgumentException("El conteo de primos solo admite valores hasta " + MAX_LIMIT);
+        }
+        if (x <= DIRECT_LIMIT) {
+            return table(x).pi(x);
+        }
+        
+        long cbrt = icbrt(x);
+        long sqrt = isqrt(x);
+        PiTable table = table(Math.max(sqrt + 1, cbrt * cbrt + 2 * cbrt + 1));
+        int a = (int) table.pi(cbrt);
+        int b = (int) table.pi(sqrt);
+        
+        long result = table.phi(x, a) + a - 1;
+        // P2: enteros hasta x con exactamente dos factores primos mayores que p_a
+        for (int i = a + 1; i <= b; i++) {
+            result -= table.pi(x / table.primes[i]) - (i - 1);
+        }
+        return result;
+    }
+    
+    /**
+    * Obtiene el k-esimo numero primo (el primero es 2).
+    * <p>
+    * Estima la posicion con la inversa de la integral logaritmica, cuenta los
+    * primos hasta la estimacion con {@link #pi(long)} y criba solo el tramo
+    * entre la estimacion y el primo buscado.
+    * </p>
+    * 
+    * @param k La posicion del primo, desde 1
+    * @return El k-esimo primo
+    * @throws IllegalArgumentException Si k es menor que 1 o el primo supera {@link #MAX_LIMIT}
+    */
+    static long nthPrime(long k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("La posicion del primo debe ser mayor que cero");
+        }
+        if (k <= 664_579) {
+            // Los primeros 664579 primos son los menores que 10^7
+            PiTable table = table(DIRECT_LIMIT);
+            return table.select(k);
+        }
+        
+        long estimate = (long) inverseLi((double) k);
+        if (estimate > MAX_LIMIT) {
+            throw new IllegalArgumentException("El primo buscado supera el limite soportado de " + MAX_LIMIT);
+        }
+        long count = pi(estimate);
+        
+        // El tramo a cribar es del orden de sqrt(x) * log(x) alrededor de la estimacion
+        int window = 1 << 20;
+        if (count >= k) {
+            // Retroceder: el k-esimo es el (count - k + 1)-esimo primo contando hacia abajo desde estimate
+            long remaining = count - k + 1;
+            long hi = estimate;
+            while (true) {
+                long lo = Math.max(2, hi - window + 1);
+                LongPrimesList primes = SegmentedSieve.primes(lo, hi);
+                if (primes.size() >= remaining) {
+                    return primes.getLong((int) (primes.size() - remaining));
+                }
+                remaining -= primes.size();
+                hi = lo - 1;
+            }
+        } else {
+            long remaining = k - count;
+            long lo = estimate + 1;
+            while (true) {
+                long hi = lo + window - 1;
+                LongPrimesList primes = SegmentedSieve.primes(lo, hi);
+                if (primes.size() >= remaining) {
+                    return primes.getLong((int) (remaining - 1));
+                }
+                remaining -= primes.size();
+                lo = hi + 1;
+            }
+        }
+    }
+    
+    /**
+    * Obtiene una tabla de pi que cubra al menos hasta un limite, reutilizando la ultima si alcanza.
+    */
+    private static PiTable table(long limit) {
+        PiTable table = cachedTable.get();
+        if (table == null || table.limit < limit) {
+            // Redondear hacia arriba para que limites cercanos compartan la tabla
+            table = new PiTable(Math.max(limit, Math.min(DIRECT_LIMIT, limit * 2)));
+            cachedTable = new SoftReference<>(table);
+        }
+        return table;
+    }
+    
+    /**
+    * Aproxima la inversa de la integral logaritmica li(x) con el metodo de Newton.
+    */
+    static double inverseLi(double k) {
+        double x = k * Math.log(k);
+        for (int i = 0; i < 50; i++) {
+            double step = (li(x) - k) * Math.log(x);
+            x -= step;
+            if (Math.abs(step) < 1) {
+                break;
+            }
+        }
+        return x;
+    }
+    
+    /**
+    * Calcula la integral logaritmica li(x) con la serie de Ramanujan.
+    */
+    static double li(double x) {
+        double gamma = 0.5772156649015329;
+        double logX = Math.log(x);
+        double sum = 0;
+        double term = 1;
+        double innerSum = 0;
+        for (int n = 1; n < 200; n++) {
+            term *= logX / n;
+            if ((n - 1) % 2 == 0) {
+                innerSum += 1.0 / n;
+            }
+            double value = term / Math.pow(2, n - 1) * innerSum;
+            sum += (n % 2 == 1) ? value : -value;
+            if (Math.abs(value) < 1e-12 * Math.abs(sum)) {
+                break;
+            }
+        }
+        return gamma + Math.log(logX) + Math.sqrt(x) * sum;
+    }
+    
+    /**
+    * Raiz cuadrada entera (piso) de un valor no negativo.
+    */
+    static long isqrt(long n) {
+        if (n < 2) {
+            return n;
+        }
+        long r = (long) Math.sqrt((double) n);
+        // Comparar con divisiones para no desbordar cerca de Long.MAX_VALUE
+        while (r > n / r) {
+            r--;
+        }
+        while (r + 1 <= n / (r + 1)) {
+            r++;
+        }
+        return r;
+    }
+    
+    /**
+    * Raiz cubica entera (piso) de un valor no negativo.
+    */
+    static long icbrt(long n) {
+        long r = (long) Math.cbrt((double) n);
+        while (r * r * r > n) {
+            r--;
+        }
+        while ((r + 1) * (r + 1) * (r + 1) <= n) {
+            r++;
+        }
+        return r;
+    }
+    
+    /**
+    * Tablas de phi(x, a) para a hasta {@link #SMALL_A}, creadas al primer uso.
+    * <p>
+    * Como los enteros coprimos con los primeros a primos se repiten con periodo
+    * igual al producto de esos primos, {@code phi(x, a) = (x / P) * totiente(P) + tabla[x % P]}.
+    * </p>
+    */
+    private static final class SmallPhi {
+        private static final int[] PRIMES = {2, 3, 5, 7, 11, 13, 17};
+        private static final int[] PRODUCTS = new int[SMALL_A + 1];
+        private static final int[] TOTIENTS = new int[SMALL_A + 1];
+        private static final int[][] TABLES = new int[SMALL_A + 1][];
+        
+        static {
+            PRODUCTS[0] = 1;
+            TOTIENTS[0] = 1;
+            for (int a = 1; a <= SMALL_A; a++) {
+                PRODUCTS[a] = PRODUCTS[a - 1] * PRIMES[a - 1];
+                TOTIENTS[a] = TOTIENTS[a - 1] * (PRIMES[a - 1] - 1);
+                int[] table = new int[PRODUCTS[a]];
+                int count = 0;
+                for (int r = 0; r < table.length; r++) {
+                    if (r > 0 && isCoprime(r, a)) {
+                        count++;
+                    }
+                    table[r] = count;
+                }
+                TABLES[a] = table;
+            }
+        }
+        
+        private static boolean isCoprime(int n, int a) {
+            for (int i = 0; i < a; i++) {
+                if (n % PRIMES[i] == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        static long phi(long x, int a) {
+            if (a == 0) {
+                return x;
+            }
+            return (x / PRODUCTS[a]) * TOTIENTS[a] + TABLES[a][(int) (x % PRODUCTS[a])];
+        }
+    }
+    
+    /**
+    * Tabla de pi hasta un limite: bits de los impares primos y conteos acumulados por palabra.
+    */
+    private static final class PiTable {
+        private final long limit;
+        
+        /** Bit i de la palabra w indica si 2 * (64 * w + i) + 1 es primo */
+        private final long[] bits;
+        
+        /** Numero de impares primos en las palabras anteriores a cada palabra */
+        private final int[] counts;
+        
+        /** Valores de phi(x, a) ya calculados para x menor que PHI_CACHE_X y a hasta PHI_CACHE_A; 0 si falta */
+        private final char[][] phiCache = new char[PHI_CACHE_A + 1][];
+        
+        /** Primos hasta limite^(3/4), que cubre la raiz de cualquier x con x^(2/3) <= limite; indexados desde 1 */
+        private final int[] primes;
+        
+        PiTable(long limit) {
+            this.limit = limit;
+            long odds = limit / 2 + 1;
+            int words = (int) ((odds + 63) >>> 6);
+            this.bits = new long[words];
+            Arrays.fill(bits, -1L);
+            // El 1 no es primo y los bits posteriores al limite no cuentan
+            bits[0] &= ~1L;
+            int tail = (int) (odds & 63);
+            if (tail != 0) {
+                bits[words - 1] &= (1L << tail) - 1;
+            }
+            if (limit % 2 == 0) {
+                // limit / 2 + 1 incluye al impar limit + 1, que esta fuera de la tabla
+                clear(limit / 2);
+            }
+            
+            sieve(odds);
+            
+            this.counts = new int[words];
+            int total = 0;
+            for (int w = 0; w < words; w++) {
+                counts[w] = total;
+                total += Long.bitCount(bits[w]);
+            }
+            
+            long primeLimit = Math.min(limit, (long) Math.pow(limit, 0.75) + 2);
+            int primeCount = (int) pi(primeLimit);
+            this.primes = new int[primeCount + 1];
+            int index = 1;
+            for (int n = 2; index <= primeCount; n++) {
+                if (isPrime(n)) {
+                    primes[index++] = n;
+                }
+            }
+        }
+        
+        /**
+        * Criba de Eratostenes sobre los impares, por segmentos que caben en la cache.
+        */
+        private void sieve(long odds) {
+            int root = (int) isqrt(limit);
+            // Primos base hasta la raiz con una criba simple
+            boolean[] composite = new boolean[root + 1];
+            int[] base = new int[root + 1];
+            int baseCount = 0;
+            for (int p = 3; p <= root; p += 2) {
+                if (!composite[p]) {
+                    base[baseCount++] = p;
+                    for (long m = (long) p * p; m <= root; m += 2L * p) {
+                        composite[(int) m] = true;
+                    }
+                }
+            }
+            
+            // Siguiente indice impar a tachar para cada primo base
+            long[] next = new long[baseCount];
+            for (int i = 0; i < baseCount; i++) {
+                next[i] = ((long) base[i] * base[i]) / 2;
+            }
+            
+            for (long segmentStart = 0; segmentStart < odds; segmentStart += SEGMENT_ODDS) {
+                long segmentEnd = Math.min(odds, segmentStart + SEGMENT_ODDS);
+                for (int i = 0; i < baseCount; i++) {
+                    int p = base[i];
+                    long j = next[i];
+                    for (; j < segmentEnd; j += p) {
+                        bits[(int) (j >>> 6)] &= ~(1L << j);
+                    }
+                    next[i] = j;
+                }
+            }
+        }
+        
+        private void clear(long index) {
+            bits[(int) (index >>> 6)] &= ~(1L << index);
+        }
+        
+        boolean isPrime(long n) {
+            if (n < 2) {
+                return false;
+            }
+            if (n % 2 == 0) {
+                return n == 2;
+            }
+            long index = n >>> 1;
+            return (bits[(int) (index >>> 6)] & (1L << index)) != 0;
+        }
+        
+        /**
+        * Cuenta los primos hasta v, con v dentro de la tabla.
+        */
+        long pi(long v) {
+            if (v < 2) {
+                return 0;
+            }
+            long index = (v - 1) >>> 1;
+            int w = (int) (index >>> 6);
+            long mask = -1L >>> (63 - (index & 63));
+            return 1 + counts[w] + Long.bitCount(bits[w] & mask);
+        }
+        
+        /**
+        * Obtiene el k-esimo primo de la tabla.
+        */
+        long select(long k) {
+            if (k == 1) {
+                return 2;
+            }
+            long target = k - 1;
+            // Busqueda binaria de la palabra que contiene el primo buscado
+            int lo = 0;
+            int hi = counts.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (counts[mid] < target) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            long word = bits[lo];
+            for (long remaining = target - counts[lo]; remaining > 1; remaining--) {
+                word &= word - 1;
+            }
+            long index = ((long) lo << 6) + Long.numberOfTrailingZeros(word);
+            return 2 * index + 1;
+        }
+        
+        /**
+        * Calcula phi(x, a) con la recursion de Legendre.
+        * <p>
+        * {@code phi(x, a) = phi(x, 7) - suma(phi(x / p_i, i - 1))} para i entre 8 y a.
+        * Cuando x es menor que el cuadrado de p_(a+1), los unicos enteros sin
+        * factores pequeños son el 1 y los primos mayores que p_a, por lo que la
+        * tabla de pi responde directamente, sin descender un nivel mas.
+        * </p>
+        * <p>
+        * Las hojas con x pequeño se repiten mucho, por lo que se guardan en
+        * {@code phiCache}. La cache se comparte entre hilos sin sincronizacion:
+        * un hilo que no vea un valor ya guardado solo lo vuelve a calcular.
+        * </p>
+        */
+        long phi(long x, int a) {
+            if (a <= SMALL_A) {
+                return SmallPhi.phi(x, a);
+            }
+            if (a + 1 < primes.length) {
+                long next = primes[a + 1];
+                if (x < next * next && x <= limit) {
+                    return 1 + Math.max(0, pi(x) - a);
+                }
+            }
+            
+            boolean cacheable = x < PHI_CACHE_X && a <= PHI_CACHE_A;
+            if (cacheable) {
+                char[] row = phiCache[a];
+                if (row != null && row[(int) x] != 0) {
+                    return row[(int) x];
+                }
+            }
+            
+            long sum = SmallPhi.phi(x, SMALL_A);
+            for (int i = SMALL_A + 1; i <= a; i++) {
+                long p = primes[i];
+                long y = x / p;
+                if (y < p) {
+                    // Para este y los siguientes terminos, phi(y, i - 1) vale 1 mientras p_i <= x
+                    long last = Math.min(a, pi(x));
+                    sum -= Math.max(0, last - i + 1);
+                    break;
+                }
+                if (y < p * p) {
+                    // Mismo corte que al inicio de phi(y, i - 1), sin la llamada
+                    sum -= 1 + Math.max(0, pi(y) - (i - 1));
+                } else {
+                    sum -= phi(y, i - 1);
+                }
+            }
+            
+            if (cacheable) {
+                char[] row = phiCache[a];
+                if (row == null) {
+                    row = new char[PHI_CACHE_X];
+                    phiCache[a] = row;
+                }
+                row[(int) x] = (char) sum;
+            }
+            return sum;
+        }
+    }
+}
\ No newline at end of file
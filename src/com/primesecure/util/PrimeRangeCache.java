@@ -0,0 +1,384 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.util;
+
+import com.primesecure.metrics.Counter;
+import com.primesecure.metrics.MetricsRegistry;
+import com.primesecure.model.LongPrimesList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Cache de los intervalos de numeros ya cribados, compartida por todo el proceso.
+ * <p>
+ * Cada intervalo se guarda como un arreglo de bits de los impares (un bit por
+ * cada dos numeros, 1 MB por cada 16 millones de numeros). Los intervalos
+ * empiezan y terminan en multiplos de 128, de modo que cada palabra de bits
+ * cubre los mismos numeros en cualquier intervalo y dos intervalos contiguos
+ * se unen concatenando sus palabras.
+ * </p>
+ * <p>
+ * Una consulta solo criba los huecos que ningun intervalo cubre; los huecos
+ * se agregan a la cache, unidos a sus vecinos, y se entrega el resultado
+ * combinando lo guardado con lo nuevo. Cuando los bits superan el presupuesto
+ * de memoria se descartan los intervalos usados hace mas tiempo. Las
+ * consultas que ocuparian mas de la mitad del presupuesto no se guardan y se
+ * criban directamente.
+ * </p>
+ * <p>
+ * Las metricas {@code primes.cache.hits} y {@code primes.cache.misses}
+ * cuentan los numeros consultados que estaban o no en la cache, y los
+ * medidores {@code primes.cache.bytes} y {@code primes.cache.hitPercent}
+ * muestran la memoria usada y el porcentaje de aciertos de la cache por
+ * defecto.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class PrimeRangeCache {
+    
+    /** Presupuesto por defecto de la cache compartida, configurable con primesecure.primecache.maxBytes */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+    
+    /** Numeros por palabra de bits; los limites de los intervalos son multiplos de este valor */
+    private static final int ALIGNMENT = 128;
+    
+    /** Palabras que puede tener un intervalo formado por uniones: 8 MB */
+    private static final int MAX_MERGED_WORDS = 1 << 20;
+    
+    /** Numeros por parte al cribar un hueco con varios hilos */
+    private static final long GAP_PIECE = 1L << 24;
+    
+    /** Numeros consultados que ya estaban cribados */
+    private static final Counter hitCounter = MetricsRegistry.getDefault().counter("primes.cache.hits");
+    
+    /** Numeros consultados que hubo que cribar */
+    private static final Counter missCounter = MetricsRegistry.getDefault().counter("primes.cache.misses");
+    
+    /** La cache compartida por todo el proceso */
+    private static final PrimeRangeCache DEFAULT =
+        new PrimeRangeCache(Long.getLong("primesecure.primecache.maxBytes", DEFAULT_MAX_BYTES));
+    
+    static {
+        MetricsRegistry.getDefault().gauge("primes.cache.bytes", DEFAULT::getBytes);
+        MetricsRegistry.getDefault().gauge("primes.cache.hitPercent", () -> Math.round(DEFAULT.getHitRatio() * 100));
+    }
+    
+    /** Memoria maxima de los bits guardados; 0 desactiva la cache */
+    private final long maxBytes;
+    
+    /** Los intervalos guardados por su inicio; nunca se solapan */
+    private final TreeMap<Long, Interval> intervals = new TreeMap<>();
+    
+    /** Memoria usada por los bits guardados */
+    private long bytes;
+    
+    /** Reloj logico para saber que intervalo se uso hace mas tiempo */
+    private long tick;
+    
+    /** Numeros consultados que estaban y no estaban en esta cache */
+    private long hits;
+    private long misses;
+    
+    /**
+    * Crea una cache vacia.
+    * 
+    * @param maxBytes La memoria maxima para los bits guardados; 0 desactiva la cache
+    */
+    public PrimeRangeCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+    
+    /**
+    * Obtiene la cache compartida por todo el proceso.
+    * 
+    * @return La cache por defecto
+    */
+    public static PrimeRangeCache getDefault() {
+        return DEFAULT;
+    }
+    
+    /**
+    * Indica si una consulta se resuelve con la cache o se criba directamente.
+    * 
+    * @param from El inicio del rango (inclusive)
+    * @param to El fin del rango (inclusive)
+    * @return true si el rango cabe en la cache
+    */
+    public boolean accepts(long from, long to) {
+        if (maxBytes == 0 || to > Long.MAX_VALUE - ALIGNMENT) {
+            return false;
+        }
+        long lo = Math.max(0, from) / ALIGNMENT;
+        long hi = to / ALIGNMENT;
+        return (hi - lo + 1) * Long.BYTES <= maxBytes / 2;
+    }
+    
+    /**
+    * Entrega en orden creciente cada primo de un rango, cribando solo lo que falta.
+    * 
+    * @param from El inicio del rango (inclusive)
+    * @param to El fin del rango (inclusive)
+    * @param threadCount Los hilos con que se criban los huecos
+    * @param action La accion a ejecutar con cada primo, desde el hilo que llama
+    * @return El numero de primos del rango
+    */
+    public long forEachPrime(long from, long to, int threadCount, LongConsumer action) {
+        if (to < 2 || to < from) {
+            return 0;
+        }
+        from = Math.max(0, from);
+        if (!accepts(from, to)) {
+            record(0, to - from + 1);
+            return SegmentedSieve.forEachPrime(from, to, action);
+        }
+        
+        long lo = from - from % ALIGNMENT;
+        long hi = to - to % ALIGNMENT + ALIGNMENT - 1;
+        List<Interval> pieces = new ArrayList<>();
+        List<long[]> gaps = new ArrayList<>();
+        synchronized (this) {
+            long now = ++tick;
+            Long first = intervals.floorKey(lo);
+            long cursor = lo;
+            for (Interval interval : intervals.subMap(first != null ? first : lo, true, hi, true).values()) {
+                if (interval.hi < lo) {
+                    continue;
+                }
+                interval.lastUsed = now;
+                pieces.add(interval);
+                if (interval.lo > cursor) {
+                    gaps.add(new long[] {cursor, interval.lo - 1});
+                }
+                cursor = interval.hi + 1;
+            }
+            if (cursor <= hi) {
+                gaps.add(new long[] {cursor, hi});
+            }
+        }
+        
+        long missed = 0;
+        List<Interval> computed = new ArrayList<>();
+        for (long[] gap : gaps) {
+            computed.add(sieve(gap[0], gap[1], threadCount));
+            // Los huecos pueden caer solo en el relleno de alineacion, fuera de la consulta
+            missed += Math.max(0, Math.min(gap[1], to) - Math.max(gap[0], from) + 1);
+        }
+        record(to - from + 1 - missed, missed);
+        if (!computed.isEmpty()) {
+            synchronized (this) {
+                for (Interval interval : computed) {
+                    insert(interval);
+                }
+                evict();
+            }
+            pieces.addAll(computed);
+            pieces.sort(Comparator.comparingLong(interval -> interval.lo));
+        }
+        
+        long count = 0;
+        if (from <= 2 && to >= 2) {
+            action.accept(2);
+            count++;
+        }
+        for (Interval interval : pieces) {
+            count += interval.forEachPrime(Math.max(from, interval.lo), Math.min(to, interval.hi), action);
+        }
+        return count;
+    }
+    
+    /**
+    * Obtiene los primos de un rango como una lista compacta, cribando solo lo que falta.
+    * 
+    * @param from El inicio del rango (inclusive)
+    * @param to El fin del rango (inclusive)
+    * @param threadCount Los hilos con que se criban los huecos
+    * @return Los primos del rango, en orden creciente
+    */
+    public LongPrimesList primes(long from, long to, int threadCount) {
+        LongPrimesList primes = new LongPrimesList();
+        forEachPrime(from, to, threadCount, primes::append);
+        return primes;
+    }
+    
+    /**
+    * Descarta todos los intervalos guardados.
+    */
+    public synchronized void clear() {
+        intervals.clear();
+        bytes = 0;
+    }
+    
+    /**
+    * Obtiene la memoria usada por los bits guardados.
+    * 
+    * @return Los bytes usados
+    */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+    
+    /**
+    * Obtiene la proporcion de numeros consultados que ya estaban en la cache.
+    * 
+    * @return Un valor entre 0 y 1, o 0 si no hubo consultas
+    */
+    public synchronized double getHitRatio() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+    
+    private synchronized void record(long hit, long miss) {
+        hits += hit;
+        misses += miss;
+        hitCounter.add(hit);
+        missCounter.add(miss);
+    }
+    
+    /**
+    * Criba un hueco alineado a un arreglo de bits nuevo, repartiendolo entre hilos.
+    */
+    private static Interval sieve(long lo, long hi, int threadCount) {
+        Interval interval = new Interval(lo, hi, new long[(int) ((hi - lo + 1) / ALIGNMENT)]);
+        long pieces = (hi - lo) / GAP_PIECE + 1;
+        if (threadCount <= 1 || pieces == 1) {
+            interval.fill(lo, hi);
+            return interval;
+        }
+        
+        // Las partes son multiplos de 128 numeros, asi que cada hilo escribe sus propias palabras
+        AtomicInteger nextPiece = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < Math.min(threadCount, pieces); i++) {
+            Thread thread = new Thread(() -> {
+                for (long p = nextPiece.getAndIncrement(); p < pieces; p = nextPiece.getAndIncrement()) {
+                    long pieceLo = lo + p * GAP_PIECE;
+                    interval.fill(pieceLo, Math.min(hi, pieceLo + GAP_PIECE - 1));
+                }
+            }, "PrimeRangeCache-" + (i + 1));
+            threads.add(thread);
+            thread.start();
+        }
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return interval;
+    }
+    
+    /**
+    * Guarda un intervalo nuevo uniendolo a sus vecinos contiguos.
+    */
+    private void insert(Interval interval) {
+        Map.Entry<Long, Interval> before = intervals.floorEntry(interval.hi);
+        if (before != null && before.getValue().hi >= interval.lo) {
+            // Otra consulta simultanea ya guardo estos numeros
+            return;
+        }
+        bytes += interval.bits.length * (long) Long.BYTES;
+        
+        if (before != null && before.getValue().hi + 1 == interval.lo
+                && before.getValue().bits.length + interval.bits.length <= MAX_MERGED_WORDS) {
+            intervals.remove(before.getKey());
+            interval = before.getValue().concat(interval);
+        }
+        Interval after = intervals.get(interval.hi + 1);
+        if (after != null && interval.bits.length + after.bits.length <= MAX_MERGED_WORDS) {
+            intervals.remove(after.lo);
+            interval = interval.concat(after);
+        }
+        interval.lastUsed = ++tick;
+        intervals.put(interval.lo, interval);
+    }
+    
+    /**
+    * Descarta los intervalos usados hace mas tiempo hasta respetar el presupuesto.
+    */
+    private void evict() {
+        while (bytes > maxBytes && !intervals.isEmpty()) {
+            Interval oldest = null;
+            for (Interval interval : intervals.values()) {
+                if (oldest == null || interval.lastUsed < oldest.lastUsed) {
+                    oldest = interval;
+                }
+            }
+            intervals.remove(oldest.lo);
+            bytes -= oldest.bits.length * (long) Long.BYTES;
+        }
+    }
+    
+    /**
+    * Un intervalo cribado: el bit k representa el impar lo + 2k + 1.
+    * <p>
+    * Los bits no cambian despues de cribar, asi que una consulta puede leerlos
+    * sin bloqueo aunque el intervalo se una a otro o se descarte mientras tanto.
+    * </p>
+    */
+    private static final class Interval {
+        private final long lo;
+        private final long hi;
+        private final long[] bits;
+        private long lastUsed;
+        
+        Interval(long lo, long hi, long[] bits) {
+            this.lo = lo;
+            this.hi = hi;
+            this.bits = bits;
+        }
+        
+        void fill(long from, long to) {
+            SegmentedSieve.forEachPrime(from, to, prime -> {
+                if (prime != 2) {
+                    long k = (prime - lo - 1) >>> 1;
+                    bits[(int) (k >>> 6)] |= 1L << k;
+                }
+            });
+        }
+        
+        Interval concat(Interval next) {
+            long[] joined = new long[bits.length + next.bits.length];
+            System.arraycopy(bits, 0, joined, 0, bits.length);
+            System.arraycopy(next.bits, 0, joined, bits.length, next.bits.length);
+            return new Interval(lo, next.hi, joined);
+        }
+        
+        long forEachPrime(long from, long to, LongConsumer action) {
+            long first = (from - lo) >>> 1;
+            long last = Math.floorDiv(to - lo - 1, 2);
+            long count = 0;
+            for (long k = first; k <= last; ) {
+                int w = (int) (k >>> 6);
+                long word = bits[w] & (-1L << k);
+                if (last < ((long) w << 6) + 63) {
+                    word &= -1L >>> (63 - (last & 63));
+                }
+                while (word != 0) {
+                    action.accept(lo + 2 * (((long) w << 6) + Long.numberOfTrailingZeros(word)) + 1);
+                    word &= word - 1;
+                    count++;
+                }
+                k = ((long) w + 1) << 6;
+            }
+            return count;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,290 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.util;
+
+import com.primesecure.model.LongPrimesList;
+import com.primesecure.model.PrimesList;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Criba de Eratostenes segmentada para ventanas [from, to] de cualquier valor long.
+ * <p>
+ * La ventana se recorre por tramos de 2^23 impares (un arreglo de bits de 1 MB
+ * que se reutiliza), por lo que la memoria no depende del tamaño de la
+ * ventana y los primos salen en orden a medida que se criba cada tramo. Cada
+ * primo base recuerda donde cae su siguiente multiplo, asi que solo se divide
+ * una vez por ventana y no una vez por tramo. Los primos base menores que un
+ * bloque de 32 KB tachan el tramo bloque por bloque, para que sus muchas
+ * escrituras caigan en la cache L1; los mayores tachan pocas veces por tramo y
+ * recorren el tramo completo. Los multiplos de 3, 5, 7, 11 y 13, que son cerca
+ * de la mitad de las marcas, se quitan copiando un patron precalculado.
+ * </p>
+ * <p>
+ * Los primos base se calculan al primer uso, con esta misma criba, y se
+ * conservan entre llamadas hasta {@link #BASE_LIMIT}. Eso cubre la raiz de
+ * cualquier ventana por debajo de 2^52 (unos 4.5 * 10^15); por encima, los
+ * numeros que sobreviven a la criba con esos primos se confirman con
+ * {@link PrimesList#isPrime(long)}, de modo que la memoria sigue acotada.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class SegmentedSieve {
+    
+    /** Impares por tramo de criba */
+    private static final int CHUNK_ODDS = 1 << 23;
+    
+    /** Impares por bloque dentro de un tramo: 32 KB de bits, el tamaño de la cache L1 */
+    private static final int BLOCK_ODDS = 1 << 18;
+    
+    /** Primos que se tachan copiando un patron en lugar de recorrer sus multiplos */
+    private static final int[] PRESIEVE_PRIMES = {3, 5, 7, 11, 13};
+    
+    /** Periodo del patron en impares: 3 * 5 * 7 * 11 * 13 */
+    private static final int PRESIEVE_PERIOD = 15015;
+    
+    /**
+    * Patron de impares sin los multiplos de PRESIEVE_PRIMES. Tiene PRESIEVE_PERIOD
+    * palabras, es decir 64 periodos, para que se repita palabra a palabra.
+    */
+    private static final long[] PRESIEVE_PATTERN = createPresievePattern();
+    
+    /** Mayor primo base que se guarda */
+    static final int BASE_LIMIT = 1 << 26;
+    
+    /** Por encima de este valor un sobreviviente puede tener todos sus factores mayores que BASE_LIMIT */
+    private static final long VERIFIED_LIMIT = (long) BASE_LIMIT * BASE_LIMIT;
+    
+    /** Primos base conocidos, del 2 en adelante */
+    private static volatile int[] basePrimes = {2, 3, 5, 7};
+    
+    /** Limite hasta el que basePrimes esta completo */
+    private static volatile int baseLimit = 10;
+    
+    private SegmentedSieve() {
+    }
+    
+    /**
+    * Entrega en orden creciente cada primo de una ventana.
+    * 
+    * @param from El inicio de la ventana (inclusive)
+    * @param to El fin de la ventana (inclusive)
+    * @param action La accion a ejecutar con cada primo
+    * @return El numero de primos de la ventana
+    */
+    public static long forEachPrime(long from, long to, LongConsumer action) {
+        return sieve(from, to, action);
+    }
+    
+    /**
+    * Cuenta los primos de una ventana sin enumerarlos uno por uno.
+    * 
+    * @param from El inicio de la ventana (inclusive)
+    * @param to El fin de la ventana (inclusive)
+    * @return El numero de primos de la ventana
+    */
+    public static long countPrimes(long from, long to) {
+        return sieve(from, to, null);
+    }
+    
+    /**
+    * Obtiene los primos de una ventana como una lista compacta.
+    * 
+    * @param from El inicio de la ventana (inclusive)
+    * @param to El fin de la ventana (inclusive)
+    * @return Los primos de la ventana, en orden creciente
+    */
+    public static LongPrimesList primes(long from, long to) {
+        LongPrimesList primes = new LongPrimesList();
+        sieve(from, to, primes::append);
+        return primes;
+    }
+    
+    private static long sieve(long from, long to, LongConsumer action) {
+        if (to < 2 || to < from) {
+            return 0;
+        }
+        long count = 0;
+        if (from <= 2) {
+            count++;
+            if (action != null) {
+                action.accept(2);
+            }
+            from = 3;
+        }
+        // Solo se criban los impares: el bit k del tramo representa chunkLo + 2k
+        long start = from | 1;
+        if (start > to) {
+            return count;
+        }
+        long oddCount = (to - start) / 2 + 1;
+        
+        long root = PrimeCounter.isqrt(to);
+        int[] primes = basePrimes((int) Math.min(root, BASE_LIMIT));
+        int baseCount = Arrays.binarySearch(primes, (int) Math.min(root, BASE_LIMIT));
+        baseCount = baseCount >= 0 ? baseCount + 1 : -baseCount - 1;
+        
+        // Siguiente multiplo de cada primo base, relativo al inicio del tramo actual
+        int[] next = new int[baseCount];
+        // Los primos se activan cuando su cuadrado entra en la ventana; 2 y los del patron no se recorren
+        int active = PRESIEVE_PRIMES.length + 1;
+        long[] bits = new long[(int) ((Math.min(CHUNK_ODDS, oddCount) + 63) >>> 6)];
+        
+        for (long chunk = 0; chunk < oddCount; chunk += CHUNK_ODDS) {
+            int length = (int) Math.min(CHUNK_ODDS, oddCount - chunk);
+            long chunkLo = start + 2 * chunk;
+            long chunkHi = chunkLo + 2L * (length - 1);
+            
+            int words = (length + 63) >>> 6;
+            presieve(bits, words, chunkLo, chunkHi);
+            if ((length & 63) != 0) {
+                bits[words - 1] &= (1L << length) - 1;
+            }
+            
+            while (active < baseCount && (long) primes[active] * primes[active] <= chunkHi) {
+                next[active] = firstMultiple(primes[active], chunkLo);
+                active++;
+            }
+            // Primos pequeños: bloque por bloque, todos los primos sobre el mismo bloque
+            int small = PRESIEVE_PRIMES.length + 1;
+            while (small < active && primes[small] < BLOCK_ODDS) {
+                small++;
+            }
+            for (int blockEnd = Math.min(BLOCK_ODDS, length); ; blockEnd = Math.min(blockEnd + BLOCK_ODDS, length)) {
+                for (int i = PRESIEVE_PRIMES.length + 1; i < small; i++) {
+                    int p = primes[i];
+                    int j = next[i];
+                    for (; j < blockEnd; j += p) {
+                        bits[j >>> 6] &= ~(1L << j);
+                    }
+                    next[i] = j;
+                }
+                if (blockEnd == length) {
+                    break;
+                }
+            }
+            for (int i = PRESIEVE_PRIMES.length + 1; i < small; i++) {
+                next[i] -= length;
+            }
+            // Primos grandes: pocas marcas por tramo
+            for (int i = small; i < active; i++) {
+                int p = primes[i];
+                int j = next[i];
+                for (; j < length; j += p) {
+                    bits[j >>> 6] &= ~(1L << j);
+                }
+                next[i] = j - length;
+            }
+            
+            boolean verify = chunkHi > VERIFIED_LIMIT && root > BASE_LIMIT;
+            if (action == null && !verify) {
+                for (int w = 0; w < words; w++) {
+                    count += Long.bitCount(bits[w]);
+                }
+                continue;
+            }
+            for (int w = 0; w < words; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    long n = chunkLo + 2L * ((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                    if (verify && n > VERIFIED_LIMIT && !PrimesList.isPrime(n)) {
+                        continue;
+                    }
+                    count++;
+                    if (action != null) {
+                        action.accept(n);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+    
+    /**
+    * Inicializa los bits de un tramo con el patron, ya sin los multiplos de PRESIEVE_PRIMES.
+    */
+    private static void presieve(long[] bits, int words, long chunkLo, long chunkHi) {
+        // Posicion del primer impar del tramo dentro del patron
+        int offset = (int) (((chunkLo - 1) / 2) % PRESIEVE_PERIOD);
+        int word = offset >>> 6;
+        int shift = offset & 63;
+        for (int w = 0; w < words; w++) {
+            int nextWord = word + 1 == PRESIEVE_PERIOD ? 0 : word + 1;
+            bits[w] = shift == 0
+                ? PRESIEVE_PATTERN[word]
+                : (PRESIEVE_PATTERN[word] >>> shift) | (PRESIEVE_PATTERN[nextWord] << (64 - shift));
+            word = nextWord;
+        }
+        // El patron tambien quita a los propios primos del patron
+        for (int p : PRESIEVE_PRIMES) {
+            if (p >= chunkLo && p <= chunkHi) {
+                int index = (int) ((p - chunkLo) / 2);
+                bits[index >>> 6] |= 1L << index;
+            }
+        }
+    }
+    
+    private static long[] createPresievePattern() {
+        long[] pattern = new long[PRESIEVE_PERIOD];
+        for (int bit = 0; bit < PRESIEVE_PERIOD * 64; bit++) {
+            long n = 2L * bit + 1;
+            boolean survives = true;
+            for (int p : PRESIEVE_PRIMES) {
+                if (n % p == 0) {
+                    survives = false;
+                    break;
+                }
+            }
+            if (survives) {
+                pattern[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return pattern;
+    }
+    
+    /**
+    * Calcula el indice del primer multiplo impar de p, a partir de p^2, dentro de un tramo.
+    */
+    private static int firstMultiple(int p, long chunkLo) {
+        long square = (long) p * p;
+        if (square >= chunkLo) {
+            return (int) ((square - chunkLo) / 2);
+        }
+        long offset = (p - chunkLo % p) % p;
+        if ((offset & 1) != 0) {
+            // chunkLo es impar, asi que un desplazamiento impar da un multiplo par
+            offset += p;
+        }
+        return (int) (offset / 2);
+    }
+    
+    /**
+    * Obtiene los primos base hasta al menos un limite, ampliando la tabla si hace falta.
+    */
+    private static int[] basePrimes(int limit) {
+        if (limit <= baseLimit) {
+            return basePrimes;
+        }
+        synchronized (SegmentedSieve.class) {
+            if (limit > baseLimit) {
+                // Duplicar el limite para no recalcular con cada ventana un poco mas alta
+                int newLimit = (int) Math.min(BASE_LIMIT, Math.max(limit, 2L * baseLimit));
+                LongPrimesList primes = primes(2, newLimit);
+                int[] values = new int[primes.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = (int) primes.getLong(i);
+                }
+                basePrimes = values;
+                baseLimit = newLimit;
+            }
+            return basePrimes;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,390 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.util;
+
+import com.primesecure.model.Message;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+/**
+ * Archivo de mensajes dividido en particiones que se escriben y leen en paralelo.
+ * <p>
+ * Los mensajes se reparten en N particiones segun el hash del destinatario o
+ * segun el codigo primo, y cada particion se escribe en su propio archivo con
+ * el formato de registro de {@link MessageLog}. Cada hilo escribe o lee
+ * particiones completas, de modo que la exportacion y la importacion no pasan
+ * por un unico flujo y pueden repartirse entre nucleos y discos.
+ * </p>
+ * <p>
+ * Un manifiesto de texto une las particiones. Cada particion se escribe
+ * primero con un nombre temporal y se confirma en disco; solo cuando todas
+ * estan completas se renombran y despues se reemplaza el manifiesto de una
+ * sola vez. El manifiesto temporal y el directorio tambien se confirman en
+ * disco, asi que un manifiesto nunca apunta a particiones a medio escribir. Si el proceso se cae mientras se renombran, el manifiesto
+ * anterior puede quedar apuntando a particiones nuevas; la lectura lo
+ * detecta por el tamaño y el CRC32C que el manifiesto guarda de cada una:
+ * </p>
+ * <pre>
+ * # Archivo de mensajes particionado de PrimeSecure
+ * partition recipient|prime PARTICIONES
+ * shard INDICE ARCHIVO MENSAJES BYTES CRC32C
+ * </pre>
+ * <p>
+ * Los archivos de las particiones se nombran a partir del manifiesto y se
+ * guardan en su mismo directorio.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class ShardedArchive {
+    
+    /** Encabezado del manifiesto */
+    private static final String MANIFEST_HEADER = "# Archivo de mensajes particionado de PrimeSecure";
+    
+    /** Buffer de escritura de cada particion */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    
+    /**
+    * Criterio con que se reparten los mensajes entre las particiones.
+    */
+    public enum Partition {
+        /** Hash del destinatario: los mensajes de un destinatario quedan juntos */
+        RECIPIENT,
+        /** Codigo primo: los mensajes de una misma clave quedan juntos */
+        PRIME
+    }
+    
+    private ShardedArchive() {
+    }
+    
+    /**
+    * Escribe los mensajes en particiones y su manifiesto.
+    * 
+    * @param messages Los mensajes a escribir
+    * @param manifestPath La ruta del manifiesto; las particiones se crean junto a el
+    * @param shardCount El numero de particiones
+    * @param partition El criterio de reparto
+    * @param threadCount El numero de hilos que escriben particiones
+    * @return El numero de mensajes escritos
+    * @throws IOException Si falla la escritura de alguna particion o del manifiesto
+    */
+    public static int write(List<Message> messages, String manifestPath, int shardCount, Partition partition,
+                            int threadCount) throws IOException {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("El numero de particiones debe ser positivo");
+        }
+        
+        // Repartir una sola vez los indices de los mensajes entre las particiones
+        int[] shardIndex = new int[messages.size()];
+        int[] counts = new int[shardCount];
+        for (int i = 0; i < messages.size(); i++) {
+            shardIndex[i] = shardOf(messages.get(i), shardCount, partition);
+            counts[shardIndex[i]]++;
+        }
+        int[][] members = new int[shardCount][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            members[shard] = new int[counts[shard]];
+            counts[shard] = 0;
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            members[shardIndex[i]][counts[shardIndex[i]]++] = i;
+        }
+        
+        List<long[]> shards;
+        try {
+            shards = runShards(shardCount, threadCount, manifestPath, shard -> {
+                CRC32C crc = new CRC32C();
+                long bytes = 0;
+                try (FileChannel channel = FileChannel.open(temporaryPath(shardPath(manifestPath, shard)),
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE);
+                    for (int i : members[shard]) {
+                        byte[] record = MessageLog.encode(messages.get(i));
+                        out.write(record);
+                        crc.update(record);
+                        bytes += record.length;
+                    }
+                    out.flush();
+                    channel.force(true);
+                }
+                return new long[] {members[shard].length, bytes, crc.getValue()};
+            });
+        } catch (IOException e) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                Files.deleteIfExists(temporaryPath(shardPath(manifestPath, shard)));
+            }
+            throw e;
+        }
+        
+        // Todas las particiones estan en disco: darles su nombre y despues publicar el manifiesto
+        for (int shard = 0; shard < shardCount; shard++) {
+            replace(temporaryPath(shardPath(manifestPath, shard)), Paths.get(shardPath(manifestPath, shard)));
+        }
+        syncDirectory(manifestDirectory(manifestPath));
+        writeManifest(manifestPath, partition, shards);
+        
+        // Borrar las particiones sobrantes de una exportacion anterior con mas particiones
+        Path stale;
+        for (int shard = shardCount; Files.exists(stale = Paths.get(shardPath(manifestPath, shard))); shard++) {
+            Files.delete(stale);
+        }
+        return messages.size();
+    }
+    
+    /**
+    * Lee todas las particiones de un archivo en paralelo.
+    * <p>
+    * Los mensajes se retornan agrupados por particion, en el orden de las
+    * particiones; dentro de cada una conservan el orden en que se escribieron.
+    * </p>
+    * 
+    * @param manifestPath La ruta del manifiesto
+    * @param threadCount El numero de hilos que leen particiones
+    * @return Los mensajes leidos
+    * @throws IOException Si el manifiesto es invalido o alguna particion no coincide con el
+    */
+    public static List<Message> read(String manifestPath, int threadCount) throws IOException {
+        List<String[]> manifest = readManifest(manifestPath);
+        Path directory = manifestDirectory(manifestPath);
+        
+        List<List<Message>> shards = runShards(manifest.size(), threadCount, manifestPath, shard -> {
+            String[] entry = manifest.get(shard);
+            Path path = directory.resolve(entry[2]);
+            long count = Long.parseLong(entry[3]);
+            long bytes = Long.parseLong(entry[4]);
+            int expectedCrc = (int) Long.parseLong(entry[5], 16);
+            
+            List<Message> messages = new ArrayList<>((int) Math.min(count, Integer.MAX_VALUE));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() != bytes) {
+                    throw new IOException("El tamaño de " + path + " es " + channel.size()
+                        + " bytes; se esperaban " + bytes);
+                }
+                ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+                CRC32C crc = new CRC32C();
+                crc.update(data.duplicate());
+                if ((int) crc.getValue() != expectedCrc) {
+                    throw new IOException("La particion " + path + " no coincide con su CRC32C");
+                }
+                byte[] payload;
+                while ((payload = MessageLog.nextRecord(data)) != null) {
+                    messages.add(MessageLog.decode(payload));
+                }
+                if (data.hasRemaining() || messages.size() != count) {
+                    throw new IOException("La particion " + path + " tiene un registro invalido");
+                }
+            }
+            return messages;
+        });
+        
+        List<Message> messages = new ArrayList<>();
+        for (List<Message> shard : shards) {
+            messages.addAll(shard);
+        }
+        return messages;
+    }
+    
+    /**
+    * Obtiene las rutas de las particiones de un manifiesto.
+    * 
+    * @param manifestPath La ruta del manifiesto
+    * @return Las rutas de las particiones, en orden
+    * @throws IOException Si el manifiesto no se puede leer o es invalido
+    */
+    public static List<String> shardPaths(String manifestPath) throws IOException {
+        Path directory = manifestDirectory(manifestPath);
+        List<String> paths = new ArrayList<>();
+        for (String[] entry : readManifest(manifestPath)) {
+            paths.add(directory.resolve(entry[2]).toString());
+        }
+        return paths;
+    }
+    
+    /**
+    * Calcula la particion de un mensaje.
+    */
+    private static int shardOf(Message message, int shardCount, Partition partition) {
+        int key = partition == Partition.PRIME
+            ? message.getPrimeCode()
+            : (message.getRecipient() == null ? 0 : message.getRecipient().hashCode());
+        // Mezclar los bits para que claves consecutivas no caigan en particiones vecinas
+        key *= 0x9E3779B9;
+        return Math.floorMod(key ^ (key >>> 16), shardCount);
+    }
+    
+    /**
+    * Una tarea que procesa una particion completa.
+    */
+    private interface ShardTask<T> {
+        T run(int shard) throws IOException;
+    }
+    
+    /**
+    * Ejecuta una tarea por particion con un grupo de hilos y retorna sus resultados en orden.
+    */
+    private static <T> List<T> runShards(int shardCount, int threadCount, String manifestPath, ShardTask<T> task)
+            throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, shardCount)));
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < shardCount; i++) {
+                int shard = i;
+                futures.add(executor.submit(() -> task.run(shard)));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error procesando " + manifestPath + ": " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Procesamiento de " + manifestPath + " interrumpido");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+    * Escribe el manifiesto en un archivo temporal, lo confirma en disco y lo mueve sobre el definitivo.
+    */
+    private static void writeManifest(String manifestPath, Partition partition, List<long[]> shards)
+            throws IOException {
+        Path manifest = Paths.get(manifestPath);
+        Path temporary = temporaryPath(manifestPath);
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new BufferedOutputStream(Channels.newOutputStream(channel)), StandardCharsets.UTF_8));
+            writer.println(MANIFEST_HEADER);
+            writer.println("partition " + partition.name().toLowerCase(Locale.ROOT) + " " + shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                long[] shard = shards.get(i);
+                writer.println("shard " + i + " " + Paths.get(shardPath(manifestPath, i)).getFileName() + " "
+                    + shard[0] + " " + shard[1] + " " + Long.toHexString(shard[2]));
+            }
+            if (writer.checkError()) {
+                throw new IOException("Error escribiendo " + temporary);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        replace(temporary, manifest);
+        syncDirectory(manifestDirectory(manifestPath));
+    }
+    
+    /**
+    * Confirma en disco los cambios de nombre de un directorio.
+    */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Algunos sistemas no permiten abrir directorios; los archivos igual quedan confirmados
+        }
+    }
+    
+    /**
+    * Mueve un archivo sobre otro de una sola vez cuando el sistema de archivos lo permite.
+    */
+    private static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+    * Lee las lineas de particion de un manifiesto, comprobando que esten completas y en orden.
+    */
+    private static List<String[]> readManifest(String manifestPath) throws IOException {
+        List<String[]> shards = new ArrayList<>();
+        int declared = -1;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(manifestPath))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(" ");
+                try {
+                    if ("partition".equals(fields[0]) && fields.length == 3) {
+                        Partition.valueOf(fields[1].toUpperCase(Locale.ROOT));
+                        declared = Integer.parseInt(fields[2]);
+                    } else if ("shard".equals(fields[0]) && fields.length == 6
+                            && Integer.parseInt(fields[1]) == shards.size()
+                            && Paths.get(fields[2]).getFileName().toString().equals(fields[2])) {
+                        Long.parseLong(fields[3]);
+                        Long.parseLong(fields[4]);
+                        Long.parseLong(fields[5], 16);
+                        shards.add(fields);
+                    } else {
+                        throw new IOException("Linea " + lineNumber + " invalida en " + manifestPath);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Linea " + lineNumber + " invalida en " + manifestPath);
+                }
+            }
+        }
+        if (declared != shards.size()) {
+            throw new IOException("El manifiesto " + manifestPath + " declara " + declared
+                + " particiones y lista " + shards.size());
+        }
+        return shards;
+    }
+    
+    /**
+    * Obtiene la ruta del archivo de una particion.
+    */
+    private static String shardPath(String manifestPath, int shard) {
+        return String.format("%s.%03d", manifestPath, shard);
+    }
+    
+    /**
+    * Obtiene la ruta temporal con que se escribe un archivo antes de reemplazar el definitivo.
+    */
+    private static Path temporaryPath(String path) {
+        return Paths.get(path + ".tmp");
+    }
+    
+    private static Path manifestDirectory(String manifestPath) {
+        Path parent = Paths.get(manifestPath).toAbsolutePath().getParent();
+        return parent != null ? parent : Paths.get(".");
+    }
+}
\ No newline at end of file
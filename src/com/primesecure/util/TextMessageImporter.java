@@ -0,0 +1,395 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.util;
+
+import com.primesecure.model.Message;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Importa mensajes desde archivos generados por {@link MessageExporter#exportMessagesToText}.
+ * <p>
+ * El archivo se mapea en memoria y se divide en regiones que terminan en un
+ * limite de linea, de modo que cada region pueda analizarse en paralelo por un
+ * hilo distinto. El analisis recorre directamente los bytes de cada linea sin
+ * usar expresiones regulares ni String.split, y solo crea las cadenas de los
+ * campos que forman parte del mensaje.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public class TextMessageImporter {
+    
+    /** Separador de campos escrito por el exportador de texto */
+    private static final byte[] SEPARATOR = {' ', '|', ' '};
+    
+    /** Valor del campo de estado para mensajes encriptados */
+    private static final byte[] ENCRYPTED_STATE = "Encriptado".getBytes(StandardCharsets.UTF_8);
+    
+    /** Tamaño minimo de una region para que valga la pena dividir el archivo */
+    private static final long MIN_REGION_SIZE = 64 * 1024;
+    
+    /** Tamaño nominal maximo de una region (un MappedByteBuffer admite hasta 2 GB) */
+    private static final long MAX_REGION_SIZE = Integer.MAX_VALUE / 2;
+    
+    /** Regiones por hilo, para equilibrar la carga cuando las lineas varian de tamaño */
+    private static final int REGIONS_PER_THREAD = 4;
+    
+    /**
+    * Importa todos los mensajes de un archivo de texto exportado.
+    * <p>
+    * Los mensajes se retornan en el mismo orden en que aparecen en el archivo.
+    * Si el archivo se exporto sin contenido, los mensajes se crean con contenido vacio.
+    * </p>
+    * 
+    * @param filePath La ruta del archivo de texto
+    * @param threadCount El numero de hilos a utilizar
+    * @return La lista de mensajes importados
+    * @throws IOException Si ocurre un error de lectura o el archivo tiene un registro invalido
+    */
+    public static List<Message> importMessages(String filePath, int threadCount) throws IOException {
+        List<Message> messages = new ArrayList<>();
+        importMessages(filePath, threadCount, messages::addAll);
+        return messages;
+    }
+    
+    /**
+    * Importa los mensajes de un archivo de texto entregandolos por regiones.
+    * <p>
+    * Cada region se entrega al consumidor tan pronto como termina su analisis,
+    * respetando el orden del archivo y siempre desde el hilo que invoca este
+    * metodo, por lo que el consumidor no necesita sincronizacion. Esto permite
+    * procesar las primeras regiones mientras las siguientes aun se analizan.
+    * </p>
+    * 
+    * @param filePath La ruta del archivo de texto
+    * @param threadCount El numero de hilos a utilizar
+    * @param sink El consumidor que recibe los mensajes de cada region
+    * @return El numero total de mensajes importados
+    * @throws IOException Si ocurre un error de lectura o el archivo tiene un registro invalido
+    */
+    public static int importMessages(String filePath, int threadCount,
+                                     Consumer<List<Message>> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return 0;
+            }
+            
+            int actualThreadCount = Math.max(1, threadCount);
+            long[] bounds = computeRegionBounds(channel, size, actualThreadCount);
+            
+            ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(actualThreadCount, bounds.length - 1));
+            List<Future<List<Message>>> futures = new ArrayList<>();
+            
+            try {
+                for (int i = 0; i < bounds.length - 1; i++) {
+                    long start = bounds[i];
+                    long length = bounds[i + 1] - start;
+                    if (length > Integer.MAX_VALUE) {
+                        throw new IOException("Linea demasiado larga cerca del byte " + start);
+                    }
+                    MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                    futures.add(executor.submit(() -> parseRegion(region, start)));
+                }
+                
+                // Entregar las regiones en orden a medida que terminan
+                int total = 0;
+                for (Future<List<Message>> future : futures) {
+                    List<Message> regionMessages = future.get();
+                    total += regionMessages.size();
+                    sink.accept(regionMessages);
+                }
+                return total;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Importacion interrumpida", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Error importando archivo: " + e.getCause().getMessage(), e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+    
+    /**
+    * Calcula los limites de las regiones ajustandolos al inicio de la siguiente linea.
+    * 
+    * @param channel El canal del archivo
+    * @param size El tamaño del archivo
+    * @param threadCount El numero de hilos disponibles
+    * @return Los desplazamientos de inicio de cada region, terminando con el tamaño del archivo
+    * @throws IOException Si falla la lectura del archivo
+    */
+    private static long[] computeRegionBounds(FileChannel channel, long size, int threadCount) throws IOException {
+        long regionCount = Math.min((long) threadCount * REGIONS_PER_THREAD, size / MIN_REGION_SIZE);
+        regionCount = Math.max(regionCount, (size + MAX_REGION_SIZE - 1) / MAX_REGION_SIZE);
+        regionCount = Math.max(1, regionCount);
+        
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(512);
+        
+        for (long i = 1; i < regionCount; i++) {
+            long nominal = size * i / regionCount;
+            long previous = bounds.get(bounds.size() - 1);
+            if (nominal <= previous) {
+                continue;
+            }
+            long lineStart = nextLineStart(channel, nominal, size, probe);
+            if (lineStart >= size) {
+                break;
+            }
+            if (lineStart > previous) {
+                bounds.add(lineStart);
+            }
+        }
+        bounds.add(size);
+        
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+    
+    /**
+    * Busca el inicio de la primera linea que comienza despues de una posicion.
+    * 
+    * @param channel El canal del archivo
+    * @param position La posicion desde donde buscar el fin de linea
+    * @param size El tamaño del archivo
+    * @param probe Buffer temporal para la lectura
+    * @return La posicion siguiente al primer salto de linea, o el tamaño del archivo
+    * @throws IOException Si falla la lectura del archivo
+    */
+    private static long nextLineStart(FileChannel channel, long position, long size,
+                                      ByteBuffer probe) throws IOException {
+        long current = position;
+        while (current < size) {
+            probe.clear();
+            int read = channel.read(probe, current);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return current + i + 1;
+                }
+            }
+            current += read;
+        }
+        return size;
+    }
+    
+    /**
+    * Analiza todas las lineas de una region mapeada.
+    * 
+    * @param region La region del archivo mapeada en memoria
+    * @param baseOffset El desplazamiento de la region dentro del archivo
+    * @return Los mensajes encontrados en la region, en orden
+    * @throws IOException Si una linea no tiene el formato esperado
+    */
+    private static List<Message> parseRegion(MappedByteBuffer region, long baseOffset) throws IOException {
+        List<Message> messages = new ArrayList<>();
+        byte[] scratch = new byte[256];
+        int limit = region.limit();
+        int lineStart = 0;
+        
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && region.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && region.get(contentEnd - 1) == '\r') {
+                contentEnd--;
+            }
+            
+            // Ignorar lineas vacias y comentarios de cabecera
+            if (contentEnd > lineStart && region.get(lineStart) != '#') {
+                messages.add(parseRecord(region, lineStart, contentEnd, baseOffset, scratch));
+            }
+            
+            lineStart = lineEnd + 1;
+        }
+        
+        return messages;
+    }
+    
+    /**
+    * Analiza una linea con el formato "Remitente | Destinatario | Estado | Codigo Primo [| Contenido]".
+    */
+    private static Message parseRecord(ByteBuffer line, int start, int end, long baseOffset,
+                                       byte[] scratch) throws IOException {
+        int senderEnd = indexOfSeparator(line, start, end);
+        int recipientStart = senderEnd + SEPARATOR.length;
+        int recipientEnd = senderEnd < 0 ? -1 : indexOfSeparator(line, recipientStart, end);
+        int stateStart = recipientEnd + SEPARATOR.length;
+        int stateEnd = recipientEnd < 0 ? -1 : indexOfSeparator(line, stateStart, end);
+        
+        if (stateEnd < 0) {
+            throw new IOException("Registro invalido en el byte " + (baseOffset + start));
+        }
+        
+        int codeStart = stateEnd + SEPARATOR.length;
+        int codeEnd = indexOfSeparator(line, codeStart, end);
+        String content = "";
+        if (codeEnd < 0) {
+            codeEnd = end;
+        } else {
+            content = decode(line, codeEnd + SEPARATOR.length, end, scratch);
+        }
+        
+        int primeCode = parseInt(line, codeStart, codeEnd, baseOffset);
+        boolean encrypted = regionEquals(line, stateStart, stateEnd, ENCRYPTED_STATE);
+        
+        return new Message(
+            content,
+            decode(line, start, senderEnd, scratch),
+            decode(line, recipientStart, recipientEnd, scratch),
+            primeCode,
+            encrypted
+        );
+    }
+    
+    /**
+    * Busca la siguiente aparicion del separador de campos dentro de una linea.
+    * 
+    * @return La posicion del separador, o -1 si no existe
+    */
+    private static int indexOfSeparator(ByteBuffer line, int from, int end) {
+        for (int i = from; i + SEPARATOR.length <= end; i++) {
+            if (line.get(i + 1) == '|' && line.get(i) == ' ' && line.get(i + 2) == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+    * Compara un rango de bytes con un valor esperado.
+    */
+    private static boolean regionEquals(ByteBuffer line, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (line.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+    * Convierte un rango de digitos ASCII en un entero sin crear cadenas intermedias.
+    */
+    private static int parseInt(ByteBuffer line, int start, int end, long baseOffset) throws IOException {
+        int i = start;
+        boolean negative = false;
+        if (i < end && line.get(i) == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == end || end - i > 10) {
+            throw new IOException("Codigo primo invalido en el byte " + (baseOffset + start));
+        }
+        
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = line.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Codigo primo invalido en el byte " + (baseOffset + start));
+            }
+            value = value * 10 + digit;
+        }
+        
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Codigo primo invalido en el byte " + (baseOffset + start));
+        }
+        return (int) value;
+    }
+    
+    /**
+    * Decodifica un campo UTF-8 usando un buffer reutilizable y deshace sus secuencias de escape.
+    */
+    private static String decode(ByteBuffer line, int start, int end, byte[] scratch) {
+        int length = end - start;
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        line.get(start, bytes, 0, length);
+        String value = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        return value.indexOf('\\') < 0 ? value : unescape(value);
+    }
+    
+    /**
+    * Escapa un campo para el formato de texto, que tiene un registro por linea.
+    * <p>
+    * Los saltos de linea del texto plano o del texto encriptado se escriben
+    * como {@code \n} y {@code \r}, y la barra invertida como {@code \\}.
+    * </p>
+    * 
+    * @param value El valor del campo
+    * @return El valor sin saltos de linea
+    */
+    static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+    
+    /**
+    * Deshace las secuencias de escape de {@link #escape(String)}.
+    */
+    private static String unescape(String value) {
+        StringBuilder plain = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                plain.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                plain.append(c);
+            }
+        }
+        return plain.toString();
+    }
+}
\ No newline at end of file
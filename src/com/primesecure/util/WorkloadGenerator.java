@@ -0,0 +1,570 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+
+package com.primesecure.util;
+
+import com.primesecure.model.LongPrimesList;
+import com.primesecure.model.Message;
+import com.primesecure.security.CipherTable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+
+/**
+ * Genera mensajes y archivos de texto sinteticos para pruebas de carga.
+ * <p>
+ * La salida depende solo de la semilla y de la configuracion: el trabajo se
+ * divide en bloques (de {@value #BLOCK_MESSAGES} mensajes o de 1 MB de texto)
+ * y cada bloque usa su propio generador derivado de la semilla y del numero
+ * de bloque. Los bloques se generan en paralelo y se escriben en orden desde
+ * el hilo que llama, con pocos bloques en curso por hilo, por lo que el mismo
+ * archivo se obtiene con cualquier numero de hilos y la memoria no depende
+ * del tamaño de la salida.
+ * </p>
+ * <p>
+ * Se configuran la distribucion del largo del contenido (o de las lineas en
+ * los archivos de texto), la mezcla de caracteres, cuantos remitentes y
+ * destinatarios distintos hay y la fraccion de mensajes encriptados.
+ * </p>
+ * 
+ * @author PrimeSecure Team
+ * @version 1.0
+ * @since 2023-07-01
+ */
+public final class WorkloadGenerator {
+    
+    /**
+    * Distribucion del largo de cada contenido o linea.
+    */
+    public enum SizeDistribution {
+        /** Siempre el largo minimo */
+        FIXED,
+        /** Cualquier largo entre el minimo y el maximo con la misma probabilidad */
+        UNIFORM,
+        /** Mayormente cortos y pocos largos: exponencial desde el minimo, cortada en el maximo */
+        EXPONENTIAL
+    }
+    
+    /**
+    * Caracteres con que se forma el texto.
+    */
+    public enum CharMix {
+        /** Palabras en ASCII con signos de puntuacion */
+        ASCII,
+        /** Grupos de digitos */
+        DIGITS,
+        /** Palabras con acentos, griego, cirilico, CJK y simbolos */
+        UNICODE,
+        /** Mayormente ASCII, con digitos y palabras Unicode */
+        MIXED
+    }
+    
+    /** Mensajes por bloque de generacion */
+    public static final int BLOCK_MESSAGES = 8192;
+    
+    /** Bytes por bloque en los archivos de texto */
+    private static final int BLOCK_BYTES = 1 << 20;
+    
+    /** Bloques en curso por hilo */
+    private static final int BLOCKS_PER_THREAD = 2;
+    
+    private static final Word[] ASCII_WORDS = words(
+        "hola", "mensaje", "proyecto", "reunion", "informe", "equipo", "cliente", "servidor",
+        "archivo", "revisar", "enviar", "urgente", "gracias", "semana", "datos", "primo",
+        "clave", "seguridad", "ventas", "soporte", "gerencia", "adjunto", "pendiente", "listo",
+        "Por", "favor", "la", "el", "de", "con", "para", "un");
+    
+    private static final Word[] UNICODE_WORDS = words(
+        "mañana", "canción", "año", "pingüino", "información", "Ñandú", "él", "está",
+        "αβγ", "λόγος", "δεδομένα", "привет", "данные", "ключ", "日本", "数据",
+        "安全", "€", "¿qué?", "¡sí!", "ÁÉÍÓÚ", "façade", "Straße", "naïve");
+    
+    private static final char[] PUNCTUATION = {',', '.', ';', ':', '!', '?'};
+    
+    /** Campos fijos de cada linea del formato de texto de mensajes */
+    private static final String SENDER_PREFIX = "remitente";
+    private static final String RECIPIENT_PREFIX = "destinatario";
+    private static final Word SENDER_CHARS = new Word(SENDER_PREFIX);
+    private static final Word RECIPIENT_CHARS = new Word(RECIPIENT_PREFIX);
+    private static final Word SEPARATOR_CHARS = new Word(" | ");
+    private static final Word ENCRYPTED_CHARS = new Word("Encriptado");
+    private static final Word DECRYPTED_CHARS = new Word("Desencriptado");
+    
+    /** Codigos primos de los mensajes, los mismos que usa el generador de ejemplo */
+    private static final int[] PRIME_CODES = createPrimeCodes();
+    
+    private final long seed;
+    private SizeDistribution sizeDistribution = SizeDistribution.UNIFORM;
+    private int minLength = 20;
+    private int maxLength = 120;
+    private CharMix charMix = CharMix.ASCII;
+    private int senderCount = 1000;
+    private int recipientCount = 1000;
+    private double encryptedRatio = 0.5;
+    
+    /**
+    * Crea un generador.
+    * 
+    * @param seed La semilla de la que depende toda la salida
+    */
+    public WorkloadGenerator(long seed) {
+        this.seed = seed;
+    }
+    
+    /**
+    * Configura el largo del contenido de los mensajes y de las lineas de texto.
+    * 
+    * @param distribution La distribucion del largo
+    * @param minLength El largo minimo, en caracteres
+    * @param maxLength El largo maximo, en caracteres
+    */
+    public void setContentLength(SizeDistribution distribution, int minLength, int maxLength) {
+        if (minLength < 1 || maxLength < minLength) {
+            throw new IllegalArgumentException("Los largos deben cumplir 1 <= minimo <= maximo");
+        }
+        this.sizeDistribution = distribution;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+    
+    /**
+    * Configura los caracteres con que se forma el texto.
+    * 
+    * @param charMix La mezcla de caracteres
+    */
+    public void setCharMix(CharMix charMix) {
+        this.charMix = charMix;
+    }
+    
+    /**
+    * Configura cuantos remitentes y destinatarios distintos hay.
+    * 
+    * @param senderCount El numero de remitentes
+    * @param recipientCount El numero de destinatarios
+    */
+    public void setCardinality(int senderCount, int recipientCount) {
+        if (senderCount < 1 || recipientCount < 1) {
+            throw new IllegalArgumentException("Debe haber al menos un remitente y un destinatario");
+        }
+        this.senderCount = senderCount;
+        this.recipientCount = recipientCount;
+    }
+    
+    /**
+    * Configura la fraccion de mensajes que se generan encriptados.
+    * 
+    * @param encryptedRatio Un valor entre 0 y 1
+    */
+    public void setEncryptedRatio(double encryptedRatio) {
+        if (!(encryptedRatio >= 0 && encryptedRatio <= 1)) {
+            throw new IllegalArgumentException("La fraccion de encriptados debe estar entre 0 y 1");
+        }
+        this.encryptedRatio = encryptedRatio;
+    }
+    
+    /**
+    * Genera mensajes en memoria.
+    * <p>
+    * Son los mismos mensajes, en el mismo orden, que escribe
+    * {@link #writeMessagesText} con la misma semilla y configuracion.
+    * </p>
+    * 
+    * @param count El numero de mensajes
+    * @param threadCount El numero de hilos a utilizar
+    * @return Los mensajes generados
+    * @throws IOException Si falla la generacion de un bloque
+    */
+    public List<Message> generateMessages(int count, int threadCount) throws IOException {
+        List<Message> messages = new ArrayList<>(count);
+        long blocks = (count + (long) BLOCK_MESSAGES - 1) / BLOCK_MESSAGES;
+        runBlocks(blocks, threadCount, block -> {
+            int blockCount = (int) Math.min(BLOCK_MESSAGES, count - block * BLOCK_MESSAGES);
+            SplittableRandom random = blockRandom(block);
+            Record record = new Record();
+            List<Message> blockMessages = new ArrayList<>(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                nextRecord(random, record);
+                blockMessages.add(new Message(new String(record.content.chars, 0, record.content.length),
+                    SENDER_PREFIX + record.sender, RECIPIENT_PREFIX + record.recipient,
+                    record.primeCode, record.encrypted));
+            }
+            return blockMessages;
+        }, messages::addAll);
+        return messages;
+    }
+    
+    /**
+    * Escribe mensajes en el formato de {@link MessageExporter#exportMessagesToText}
+    * sin tenerlos en memoria.
+    * 
+    * @param filePath La ruta del archivo de texto
+    * @param count El numero de mensajes
+    * @param threadCount El numero de hilos a utilizar
+    * @param includeContent Si se debe incluir el contenido de los mensajes
+    * @return El numero de bytes escritos
+    * @throws IOException Si falla la escritura
+    */
+    public long writeMessagesText(String filePath, long count, int threadCount, boolean includeContent)
+            throws IOException {
+        char[] lineSeparator = System.lineSeparator().toCharArray();
+        try (FileChannel channel = openForWrite(filePath)) {
+            String header = "# Mensajes exportados desde PrimeSecure" + System.lineSeparator()
+                + "# Formato: Remitente | Destinatario | Estado | Codigo Primo | Contenido (opcional)"
+                + System.lineSeparator() + System.lineSeparator();
+            long[] written = {write(channel, ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8)))};
+            
+            long blocks = (count + BLOCK_MESSAGES - 1) / BLOCK_MESSAGES;
+            runBlocks(blocks, threadCount, block -> {
+                long blockCount = Math.min(BLOCK_MESSAGES, count - block * BLOCK_MESSAGES);
+                SplittableRandom random = blockRandom(block);
+                Record record = new Record();
+                TextBuffer lines = new TextBuffer(BLOCK_MESSAGES * (maxLength + 64));
+                for (int i = 0; i < blockCount; i++) {
+                    nextRecord(random, record);
+                    lines.append(SENDER_CHARS);
+                    lines.appendNumber(record.sender);
+                    lines.append(SEPARATOR_CHARS);
+                    lines.append(RECIPIENT_CHARS);
+                    lines.appendNumber(record.recipient);
+                    lines.append(SEPARATOR_CHARS);
+                    lines.append(record.encrypted ? ENCRYPTED_CHARS : DECRYPTED_CHARS);
+                    lines.append(SEPARATOR_CHARS);
+                    lines.appendNumber(record.primeCode);
+                    if (includeContent) {
+                        lines.append(SEPARATOR_CHARS);
+                        lines.appendEscaped(record.content.chars, 0, record.content.length);
+                    }
+                    lines.append(lineSeparator, 0, lineSeparator.length);
+                }
+                return lines.encode();
+            }, bytes -> written[0] += write(channel, bytes));
+            return written[0];
+        }
+    }
+    
+    /**
+    * Escribe un archivo de texto de un tamaño exacto, en UTF-8, con lineas
+    * cuyo largo sigue la distribucion configurada.
+    * 
+    * @param filePath La ruta del archivo
+    * @param size El tamaño del archivo, en bytes
+    * @param threadCount El numero de hilos a utilizar
+    * @return El numero de bytes escritos
+    * @throws IOException Si falla la escritura
+    */
+    public long writeText(String filePath, long size, int threadCount) throws IOException {
+        try (FileChannel channel = openForWrite(filePath)) {
+            long blocks = (size + BLOCK_BYTES - 1) / BLOCK_BYTES;
+            long[] written = {0};
+            runBlocks(blocks, threadCount,
+                block -> textBlock(block, (int) Math.min(BLOCK_BYTES, size - block * BLOCK_BYTES)),
+                bytes -> written[0] += write(channel, bytes));
+            return written[0];
+        }
+    }
+    
+    /**
+    * Genera un bloque de lineas de exactamente el numero de bytes pedido;
+    * la ultima linea se recorta y se completa con espacios si es necesario.
+    */
+    private ByteBuffer textBlock(long block, int blockBytes) {
+        SplittableRandom random = blockRandom(block);
+        TextBuffer text = new TextBuffer(blockBytes);
+        TextBuffer line = new TextBuffer(maxLength + 1);
+        while (text.bytes < blockBytes) {
+            line.clear();
+            appendText(random, line, nextLength(random));
+            int remaining = blockBytes - text.bytes - 1;
+            if (line.bytes <= remaining) {
+                text.append(line.chars, 0, line.length);
+            } else {
+                // Ultima linea del bloque: recortarla y completar el tamaño exacto
+                int end = 0;
+                int lineBytes = 0;
+                while (lineBytes + utf8Length(line.chars[end]) <= remaining) {
+                    lineBytes += utf8Length(line.chars[end++]);
+                }
+                text.append(line.chars, 0, end);
+                for (; lineBytes < remaining; lineBytes++) {
+                    text.append(' ');
+                }
+            }
+            text.append('\n');
+        }
+        return text.encode();
+    }
+    
+    /**
+    * Genera los datos del siguiente mensaje de un bloque.
+    */
+    private void nextRecord(SplittableRandom random, Record record) {
+        record.sender = random.nextInt(senderCount);
+        record.recipient = random.nextInt(recipientCount);
+        record.primeCode = PRIME_CODES[random.nextInt(PRIME_CODES.length)];
+        record.content.clear();
+        appendText(random, record.content, nextLength(random));
+        record.encrypted = random.nextDouble() < encryptedRatio;
+        if (record.encrypted) {
+            // Igual que Message.encrypt: la posicion se cuenta desde el inicio del contenido
+            char[] chars = record.content.chars;
+            CipherTable.forEncoding(record.primeCode).apply(chars, 0, chars, 0, record.content.length, 0);
+        }
+    }
+    
+    /**
+    * Elige un largo segun la distribucion configurada.
+    */
+    private int nextLength(SplittableRandom random) {
+        switch (sizeDistribution) {
+            case FIXED:
+                return minLength;
+            case EXPONENTIAL: {
+                double mean = Math.max(1, (maxLength - minLength) / 8.0);
+                double length = minLength - mean * Math.log(1 - random.nextDouble());
+                return (int) Math.min(maxLength, length);
+            }
+            default:
+                return minLength + random.nextInt(maxLength - minLength + 1);
+        }
+    }
+    
+    /**
+    * Agrega palabras separadas por espacios hasta completar exactamente un largo.
+    */
+    private void appendText(SplittableRandom random, TextBuffer text, int length) {
+        int end = text.length + length;
+        while (text.length < end) {
+            if (text.length > 0 && text.chars[text.length - 1] != ' ') {
+                if (random.nextInt(8) == 0) {
+                    text.append(PUNCTUATION[random.nextInt(PUNCTUATION.length)]);
+                }
+                text.append(' ');
+            }
+            CharMix mix = charMix;
+            if (mix == CharMix.MIXED) {
+                int choice = random.nextInt(20);
+                mix = choice < 14 ? CharMix.ASCII : choice < 17 ? CharMix.DIGITS : CharMix.UNICODE;
+            }
+            switch (mix) {
+                case DIGITS:
+                    text.appendNumber(random.nextInt(1_000_000));
+                    break;
+                case UNICODE:
+                    text.append(UNICODE_WORDS[random.nextInt(UNICODE_WORDS.length)]);
+                    break;
+                default:
+                    text.append(ASCII_WORDS[random.nextInt(ASCII_WORDS.length)]);
+            }
+        }
+        text.truncate(end);
+    }
+    
+    /**
+    * Crea el generador de un bloque; solo depende de la semilla y del numero de bloque.
+    */
+    private SplittableRandom blockRandom(long block) {
+        return new SplittableRandom(seed ^ (block * 0x9E3779B97F4A7C15L));
+    }
+    
+    /**
+    * Genera los bloques en paralelo y los entrega en orden desde el hilo que llama.
+    */
+    private static <T> void runBlocks(long blocks, int threadCount, LongFunction<T> generator,
+                                      BlockSink<T> sink) throws IOException {
+        int threads = Math.max(1, threadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayDeque<Future<T>> pending = new ArrayDeque<>();
+            long next = 0;
+            while (next < blocks || !pending.isEmpty()) {
+                while (next < blocks && pending.size() < threads * BLOCKS_PER_THREAD) {
+                    long block = next++;
+                    pending.add(executor.submit(() -> generator.apply(block)));
+                }
+                sink.accept(pending.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Generacion interrumpida");
+        } catch (ExecutionException e) {
+            throw new IOException("Error generando datos: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+    * Recibe cada bloque generado, en orden.
+    */
+    private interface BlockSink<T> {
+        void accept(T block) throws IOException;
+    }
+    
+    /**
+    * Datos de un mensaje generado; se reutiliza para todo un bloque.
+    */
+    private static final class Record {
+        final TextBuffer content = new TextBuffer(64);
+        int sender;
+        int recipient;
+        int primeCode;
+        boolean encrypted;
+    }
+    
+    /**
+    * Arreglo de caracteres que crece y cuenta los bytes UTF-8 de lo agregado.
+    * <p>
+    * Las palabras se copian ya convertidas a caracteres, y el bloque se
+    * codifica una sola vez al final, sin cadenas intermedias.
+    * </p>
+    */
+    private static final class TextBuffer {
+        char[] chars;
+        int length;
+        int bytes;
+        
+        TextBuffer(int capacity) {
+            chars = new char[Math.max(16, capacity)];
+        }
+        
+        void clear() {
+            length = 0;
+            bytes = 0;
+        }
+        
+        void append(char c) {
+            ensureCapacity(1);
+            chars[length++] = c;
+            bytes += utf8Length(c);
+        }
+        
+        void append(Word word) {
+            ensureCapacity(word.chars.length);
+            System.arraycopy(word.chars, 0, chars, length, word.chars.length);
+            length += word.chars.length;
+            bytes += word.bytes;
+        }
+        
+        void append(char[] source, int offset, int count) {
+            ensureCapacity(count);
+            for (int i = 0; i < count; i++) {
+                char c = source[offset + i];
+                chars[length + i] = c;
+                bytes += utf8Length(c);
+            }
+            length += count;
+        }
+        
+        /**
+        * Agrega caracteres escapando los saltos de linea y las barras invertidas,
+        * igual que {@link TextMessageImporter#escape(String)}.
+        */
+        void appendEscaped(char[] source, int offset, int count) {
+            for (int i = 0; i < count; i++) {
+                char c = source[offset + i];
+                if (c == '\\' || c == '\n' || c == '\r') {
+                    append('\\');
+                    append(c == '\n' ? 'n' : c == '\r' ? 'r' : '\\');
+                } else {
+                    append(c);
+                }
+            }
+        }
+        
+        void appendNumber(int value) {
+            int digits = value < 10 ? 1 : (int) Math.log10(value) + 1;
+            ensureCapacity(digits);
+            for (int i = length + digits - 1; i >= length; i--) {
+                chars[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+            length += digits;
+            bytes += digits;
+        }
+        
+        void truncate(int newLength) {
+            for (int i = newLength; i < length; i++) {
+                bytes -= utf8Length(chars[i]);
+            }
+            length = newLength;
+        }
+        
+        ByteBuffer encode() {
+            ByteBuffer out = ByteBuffer.allocate(bytes);
+            CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+            encoder.encode(CharBuffer.wrap(chars, 0, length), out, true);
+            encoder.flush(out);
+            return out.flip();
+        }
+        
+        private void ensureCapacity(int extra) {
+            if (length + extra > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(length + extra, chars.length * 2));
+            }
+        }
+    }
+    
+    /**
+    * Palabra del vocabulario ya convertida a caracteres, con su tamaño en UTF-8.
+    */
+    private static final class Word {
+        final char[] chars;
+        final int bytes;
+        
+        Word(String text) {
+            this.chars = text.toCharArray();
+            this.bytes = text.getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
+    
+    private static Word[] words(String... texts) {
+        Word[] words = new Word[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            words[i] = new Word(texts[i]);
+        }
+        return words;
+    }
+    
+    private static FileChannel openForWrite(String filePath) throws IOException {
+        return FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+    
+    private static long write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long count = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return count;
+    }
+    
+    private static int utf8Length(char c) {
+        return c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+    }
+    
+    private static int[] createPrimeCodes() {
+        LongPrimesList primes = SegmentedSieve.primes(100, 997);
+        int[] codes = new int[primes.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = (int) primes.getLong(i);
+        }
+        return codes;
+    }
+}
\ No newline at end of file